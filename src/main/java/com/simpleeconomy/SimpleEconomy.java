@@ -3,11 +3,15 @@ package com.simpleeconomy;
 import com.simpleeconomy.command.CoinflipCommand;
 import com.simpleeconomy.command.DailyRewardCommand;
 import com.simpleeconomy.command.EconomyCommands;
+import com.simpleeconomy.command.JobCommands;
 import com.simpleeconomy.command.ShopCommands;
 import com.simpleeconomy.config.ModConfig;
+import com.simpleeconomy.data.AsyncSavedData;
+import com.simpleeconomy.data.LedgerReconciler;
 import com.simpleeconomy.data.PlayerDataSavedData;
 import com.simpleeconomy.data.TransactionLog;
 import com.simpleeconomy.economy.EconomyManager;
+import com.simpleeconomy.economy.EconomyService;
 import com.simpleeconomy.util.SoundHelper;
 import net.minecraft.network.chat.Component;
 import net.minecraft.server.level.ServerPlayer;
@@ -19,6 +23,9 @@ import net.neoforged.neoforge.common.NeoForge;
 import net.neoforged.neoforge.event.RegisterCommandsEvent;
 import net.neoforged.neoforge.event.entity.player.PlayerEvent;
 import net.neoforged.neoforge.event.server.ServerStartingEvent;
+import net.neoforged.neoforge.event.server.ServerStoppedEvent;
+import net.neoforged.neoforge.event.server.ServerStoppingEvent;
+import net.neoforged.neoforge.event.tick.ServerTickEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -35,40 +42,75 @@ public class SimpleEconomy {
     @SubscribeEvent
     public void onServerStarting(ServerStartingEvent event) {
         ModConfig.load();
+        EconomyService.start(event.getServer());
+        LedgerReconciler.checkpointIfStale();
         LOGGER.info("SimpleEconomy loaded on server!");
     }
 
+    @SubscribeEvent
+    public void onServerTick(ServerTickEvent.Post event) {
+        EconomyService service = EconomyService.get();
+        if (service.server().getTickCount() % 20 == 0) {
+            DailyRewardCommand.payWeeklyInterest(service.server());
+        }
+        service.jobs().tick(service.economy(), service.transactions());
+
+        // One fsync per tick covers every balance change made during it
+        service.economy().syncStorage();
+        service.transactions().flushSubmitted();
+        service.jobs().saveProgress(service.server());
+    }
+
+    @SubscribeEvent
+    public void onServerStopping(ServerStoppingEvent event) {
+        EconomyService.get().transactions().flushSubmitted();
+        LedgerReconciler.checkpointIfIncomplete();
+        EconomyService.get().transactions().closeStorage();
+        EconomyService.get().economy().closeStorage();
+    }
+
+    @SubscribeEvent
+    public void onServerStopped(ServerStoppedEvent event) {
+        // The final save only queued its writes; make sure they reach disk before the JVM exits
+        AsyncSavedData.awaitPendingWrites();
+        EconomyService.stop();
+    }
+
     @SubscribeEvent
     public void onRegisterCommands(RegisterCommandsEvent event) {
         EconomyCommands.register(event.getDispatcher());
         ShopCommands.register(event.getDispatcher());
         CoinflipCommand.register(event.getDispatcher());
         DailyRewardCommand.register(event.getDispatcher());
+        JobCommands.register(event.getDispatcher());
         LOGGER.info("SimpleEconomy commands registered");
     }
 
     @SubscribeEvent
     public void onPlayerLogin(PlayerEvent.PlayerLoggedInEvent event) {
         if (event.getEntity() instanceof ServerPlayer player) {
-            PlayerDataSavedData playerData = PlayerDataSavedData.get(player.getServer());
+            PlayerDataSavedData playerData = EconomyService.get().playerData();
 
             // Feature 4: Starting balance for new players
             if (!playerData.hasReceivedStartingBalance(player.getUUID())) {
-                double startBal = ModConfig.getStartingBalance();
-                EconomyManager.addBalance(player, startBal);
+                long startBal = ModConfig.getStartingBalance();
                 playerData.markStartingBalanceReceived(player.getUUID());
 
-                // Log the transaction
-                TransactionLog log = TransactionLog.get(player.getServer());
-                log.addTransaction(player.getUUID(), TransactionLog.Transaction.startingBalance(startBal));
+                if (EconomyManager.addBalance(player, startBal)) {
+                    // Log the transaction
+                    TransactionLog log = EconomyService.get().transactions();
+                    log.addTransaction(player.getUUID(), TransactionLog.Transaction.startingBalance(startBal));
 
-                // Notify the player
-                player.sendSystemMessage(Component.literal("Welcome! You received " +
-                    EconomyManager.formatBalance(startBal) +
-                    " " + ModConfig.getCurrencyName() + " as a starting balance!").withStyle(s -> s.withColor(0x55FF55)));
+                    // Notify the player
+                    player.sendSystemMessage(Component.literal("Welcome! You received " +
+                        EconomyManager.formatBalance(startBal) +
+                        " " + ModConfig.getCurrencyName() + " as a starting balance!").withStyle(s -> s.withColor(0x55FF55)));
 
-                SoundHelper.playStartingBalanceSound(player);
-                LOGGER.info("Gave starting balance of {} to new player {}", startBal, player.getName().getString());
+                    SoundHelper.playStartingBalanceSound(player);
+                    LOGGER.info("Gave starting balance of {} to new player {}", EconomyManager.formatBalance(startBal), player.getName().getString());
+                } else {
+                    LOGGER.warn("Could not give starting balance to {}: balance would go past the maximum", player.getName().getString());
+                }
             }
 
             // Feature 2: Offline sales summary
@@ -83,9 +125,6 @@ public class SimpleEconomy {
                     SoundHelper.playSaleSound(player);
                 }
             }
-
-            // Feature: Weekly interest
-            DailyRewardCommand.checkWeeklyInterest(player);
         }
     }
 }
@@ -3,7 +3,10 @@ package com.simpleeconomy.command;
 import com.mojang.brigadier.CommandDispatcher;
 import com.mojang.brigadier.arguments.DoubleArgumentType;
 import com.simpleeconomy.config.ModConfig;
+import com.simpleeconomy.data.TransactionLog;
 import com.simpleeconomy.economy.EconomyManager;
+import com.simpleeconomy.economy.Money;
+import com.simpleeconomy.economy.Settlement;
 import net.minecraft.commands.CommandSourceStack;
 import net.minecraft.commands.Commands;
 import net.minecraft.commands.arguments.EntityArgument;
@@ -18,6 +21,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class CoinflipCommand {
 
@@ -25,6 +29,8 @@ public class CoinflipCommand {
     private static final Map<UUID, Challenge> pendingChallenges = new ConcurrentHashMap<>();
     private static final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
     private static final Random random = new Random();
+    // Flips whose stakes are in the pot; the ledger only hears of a flip once it is paid out
+    private static final AtomicInteger inEscrow = new AtomicInteger();
 
     // Challenge timeout in seconds
     private static final int CHALLENGE_TIMEOUT = 60;
@@ -36,7 +42,7 @@ public class CoinflipCommand {
                     .executes(ctx -> {
                         ServerPlayer challenger = ctx.getSource().getPlayerOrException();
                         ServerPlayer target = EntityArgument.getPlayer(ctx, "player");
-                        double amount = DoubleArgumentType.getDouble(ctx, "amount");
+                        long amount = Money.fromDouble(DoubleArgumentType.getDouble(ctx, "amount"));
                         return challenge(challenger, target, amount);
                     })
                 )
@@ -67,7 +73,7 @@ public class CoinflipCommand {
         );
     }
 
-    private static int challenge(ServerPlayer challenger, ServerPlayer target, double amount) {
+    private static int challenge(ServerPlayer challenger, ServerPlayer target, long amount) {
         // Can't challenge yourself
         if (challenger.getUUID().equals(target.getUUID())) {
             challenger.sendSystemMessage(Component.literal("You can't coinflip yourself!")
@@ -203,9 +209,20 @@ public class CoinflipCommand {
             return 0;
         }
 
-        // Take money from both
-        EconomyManager.removeBalance(challenger, challenge.amount);
-        EconomyManager.removeBalance(player, challenge.amount);
+        // Put both stakes in the pot; the checks above only pick the message, this decides
+        Settlement stakes = Settlement.builder()
+            .debit(challenger.getUUID(), challenge.amount)
+            .debit(player.getUUID(), challenge.amount)
+            .hold(Money.multiply(challenge.amount, 2))
+            .build();
+        if (!EconomyManager.settle(stakes)) {
+            player.sendSystemMessage(Component.literal("Coinflip cancelled - not enough coins!")
+                .withStyle(s -> s.withColor(0xFF5555)));
+            challenger.sendSystemMessage(Component.literal("Coinflip cancelled - not enough coins!")
+                .withStyle(s -> s.withColor(0xFF5555)));
+            return 0;
+        }
+        inEscrow.incrementAndGet();
 
         // Start the flip animation
         startCoinflip(challenger, player, challenge.amount);
@@ -265,8 +282,8 @@ public class CoinflipCommand {
         return 1;
     }
 
-    private static void startCoinflip(ServerPlayer player1, ServerPlayer player2, double amount) {
-        double totalPot = amount * 2;
+    private static void startCoinflip(ServerPlayer player1, ServerPlayer player2, long amount) {
+        long totalPot = Money.multiply(amount, 2);
 
         // Send to both players only
         sendToBoth(player1, player2, Component.literal(""));
@@ -316,8 +333,15 @@ public class CoinflipCommand {
                 .append(Component.literal(" won ").withStyle(s -> s.withColor(0xAAAAAA)))
                 .append(Component.literal(EconomyManager.formatBalance(totalPot) + " " + ModConfig.getCurrencyName() + "!").withStyle(s -> s.withColor(0xFFD700).withBold(true))));
 
-            // Give winner the pot
-            EconomyManager.addBalance(player1.getServer(), winner.getUUID(), totalPot);
+            // Give winner the pot, on the server thread so a reconcile sees the pot either held or paid
+            winner.getServer().execute(() -> {
+                EconomyManager.settle(Settlement.builder()
+                    .release(totalPot)
+                    .credit(winner.getUUID(), totalPot)
+                    .post(TransactionLog.Posting.coinflip(loser.getUUID(), winner.getUUID(), amount))
+                    .build());
+                inEscrow.decrementAndGet();
+            });
 
             // Personal messages
             winner.sendSystemMessage(Component.literal("[COINFLIP] ").withStyle(s -> s.withColor(0xFFD700).withBold(true))
@@ -333,6 +357,13 @@ public class CoinflipCommand {
         }, 2500L, TimeUnit.MILLISECONDS);
     }
 
+    /**
+     * Flips whose stakes have been taken but not yet paid out. Server thread only.
+     */
+    public static int flipsInEscrow() {
+        return inEscrow.get();
+    }
+
     private static void sendToBoth(ServerPlayer p1, ServerPlayer p2, Component message) {
         p1.sendSystemMessage(message);
         p2.sendSystemMessage(message);
@@ -340,6 +371,6 @@ public class CoinflipCommand {
 
     private record Challenge(UUID challengerUUID, String challengerName,
                             UUID targetUUID, String targetName,
-                            double amount, MinecraftServer server) {
+                            long amount, MinecraftServer server) {
     }
 }
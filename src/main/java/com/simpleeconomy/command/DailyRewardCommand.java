@@ -1,16 +1,24 @@
 package com.simpleeconomy.command;
 
 import com.mojang.brigadier.CommandDispatcher;
+import com.simpleeconomy.SimpleEconomy;
 import com.simpleeconomy.config.ModConfig;
 import com.simpleeconomy.data.DailyRewardData;
+import com.simpleeconomy.data.EconomySavedData;
 import com.simpleeconomy.data.TransactionLog;
 import com.simpleeconomy.economy.EconomyManager;
+import com.simpleeconomy.economy.EconomyService;
+import com.simpleeconomy.economy.Money;
 import com.simpleeconomy.util.SoundHelper;
 import net.minecraft.commands.CommandSourceStack;
 import net.minecraft.commands.Commands;
 import net.minecraft.network.chat.Component;
+import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.level.ServerPlayer;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class DailyRewardCommand {
 
     public static void register(CommandDispatcher<CommandSourceStack> dispatcher) {
@@ -39,7 +47,7 @@ public class DailyRewardCommand {
     }
 
     private static int claimDaily(ServerPlayer player) {
-        DailyRewardData data = DailyRewardData.get(player.getServer());
+        DailyRewardData data = EconomyService.get().dailyRewards();
         DailyRewardData.PlayerRewardInfo info = data.getPlayerInfo(player.getUUID());
 
         long currentDay = DailyRewardData.getCurrentDay();
@@ -67,12 +75,16 @@ public class DailyRewardCommand {
         // Calculate reward based on streak
         int reward = ModConfig.getDailyBaseReward() + (newStreak - 1) * ModConfig.getDailyRewardIncrement();
 
-        // Give reward
-        EconomyManager.addBalance(player, reward);
+        // Give reward; the claim is not used up if the balance is already at the maximum
+        if (!EconomyManager.addBalance(player, Money.ofWhole(reward))) {
+            player.sendSystemMessage(Component.literal("[DAILY] ").withStyle(s -> s.withColor(0xFFD700).withBold(true))
+                .append(Component.literal("Your balance is at the maximum, so the reward can't be paid!").withStyle(s -> s.withColor(0xFF5555).withBold(false))));
+            return 0;
+        }
 
         // Log transaction
-        TransactionLog log = TransactionLog.get(player.getServer());
-        log.addTransaction(player.getUUID(), TransactionLog.Transaction.dailyReward(reward, newStreak));
+        TransactionLog log = EconomyService.get().transactions();
+        log.addTransaction(player.getUUID(), TransactionLog.Transaction.dailyReward(Money.ofWhole(reward), newStreak));
 
         // Update data
         info.streak = newStreak;
@@ -109,7 +121,7 @@ public class DailyRewardCommand {
     }
 
     private static int showStreak(ServerPlayer player) {
-        DailyRewardData data = DailyRewardData.get(player.getServer());
+        DailyRewardData data = EconomyService.get().dailyRewards();
         DailyRewardData.PlayerRewardInfo info = data.getPlayerInfo(player.getUUID());
 
         long currentDay = DailyRewardData.getCurrentDay();
@@ -142,59 +154,36 @@ public class DailyRewardCommand {
     }
 
     /**
-     * Check and give weekly interest - call this on player login
+     * Pay weekly interest to every account, online or not, once the week turns over.
+     * Call from the server tick; the payout itself writes no accounts.
      */
-    public static void checkWeeklyInterest(ServerPlayer player) {
-        DailyRewardData data = DailyRewardData.get(player.getServer());
-        DailyRewardData.PlayerRewardInfo info = data.getPlayerInfo(player.getUUID());
-
+    public static void payWeeklyInterest(MinecraftServer server) {
+        EconomySavedData economy = EconomyService.get().economy();
         long currentWeek = DailyRewardData.getCurrentWeek();
-
-        // First time or already claimed this week
-        if (info.lastInterestDay == 0) {
-            info.lastInterestDay = currentWeek;
-            data.updatePlayerInfo(player.getUUID(), info);
+        if (!economy.isInterestDue(currentWeek)) {
             return;
         }
 
-        if (info.lastInterestDay >= currentWeek) {
-            return; // Already got interest this week
-        }
-
-        // Calculate interest
-        double balance = EconomyManager.getBalance(player);
-        if (balance <= 0) {
-            info.lastInterestDay = currentWeek;
-            data.updatePlayerInfo(player.getUUID(), info);
+        List<TransactionLog.Entry> entries = new ArrayList<>();
+        long paid = economy.payInterest(currentWeek, ModConfig.getWeeklyInterestBasisPoints(), ModConfig.getMaxInterestAmount(), entries);
+        if (paid <= 0) {
             return;
         }
-
-        double interest = balance * ModConfig.getWeeklyInterestRate();
-        interest = Math.min(interest, ModConfig.getMaxInterestAmount()); // Cap it
-
-        if (interest < 0.01) {
-            info.lastInterestDay = currentWeek;
-            data.updatePlayerInfo(player.getUUID(), info);
-            return;
+        SimpleEconomy.LOGGER.info("Paid {} coins of weekly interest to {} accounts", Money.format(paid), entries.size());
+        // Every account gets its own log entry, so the ledger accounts for offline players too
+        EconomyService.get().transactions().addTransactions(entries);
+
+        for (TransactionLog.Entry entry : entries) {
+            ServerPlayer player = server.getPlayerList().getPlayer(entry.player());
+            if (player == null) {
+                continue;
+            }
+            String interestStr = EconomyManager.formatBalance(entry.transaction().amount());
+            player.sendSystemMessage(Component.literal("[BANK] ").withStyle(s -> s.withColor(0x55FFFF).withBold(true))
+                .append(Component.literal("Weekly interest: +").withStyle(s -> s.withColor(0x55FF55).withBold(false)))
+                .append(Component.literal(interestStr + " " + ModConfig.getCurrencyName()).withStyle(s -> s.withColor(0xFFD700).withBold(false)))
+                .append(Component.literal(" (" + Math.round(ModConfig.getWeeklyInterestRate() * 100) + "% of balance, max " + EconomyManager.formatBalance(ModConfig.getMaxInterestAmount()) + ")").withStyle(s -> s.withColor(0x888888).withBold(false))));
         }
-
-        // Give interest
-        EconomyManager.addBalance(player, interest);
-
-        // Log it
-        TransactionLog log = TransactionLog.get(player.getServer());
-        log.addTransaction(player.getUUID(), TransactionLog.Transaction.interest(interest));
-
-        // Update
-        info.lastInterestDay = currentWeek;
-        data.updatePlayerInfo(player.getUUID(), info);
-
-        // Notify player
-        String interestStr = EconomyManager.formatBalance(interest);
-        player.sendSystemMessage(Component.literal("[BANK] ").withStyle(s -> s.withColor(0x55FFFF).withBold(true))
-            .append(Component.literal("Weekly interest: +").withStyle(s -> s.withColor(0x55FF55).withBold(false)))
-            .append(Component.literal(interestStr + " " + ModConfig.getCurrencyName()).withStyle(s -> s.withColor(0xFFD700).withBold(false)))
-            .append(Component.literal(" (" + Math.round(ModConfig.getWeeklyInterestRate() * 100) + "% of balance, max " + EconomyManager.formatBalance(ModConfig.getMaxInterestAmount()) + ")").withStyle(s -> s.withColor(0x888888).withBold(false))));
     }
 
 }
@@ -3,18 +3,33 @@ package com.simpleeconomy.command;
 import com.mojang.brigadier.CommandDispatcher;
 import com.mojang.brigadier.arguments.DoubleArgumentType;
 import com.mojang.brigadier.arguments.IntegerArgumentType;
+import com.mojang.brigadier.arguments.StringArgumentType;
+import com.mojang.brigadier.builder.LiteralArgumentBuilder;
+import com.simpleeconomy.SimpleEconomy;
 import com.simpleeconomy.config.ModConfig;
+import com.simpleeconomy.data.BalanceDistribution;
+import com.simpleeconomy.data.EconomyExport;
+import com.simpleeconomy.data.EconomySavedData;
+import com.simpleeconomy.data.LedgerReconciler;
 import com.simpleeconomy.data.TransactionLog;
 import com.simpleeconomy.economy.EconomyManager;
+import com.simpleeconomy.economy.EconomyService;
+import com.simpleeconomy.economy.Money;
+import com.simpleeconomy.economy.Settlement;
 import com.simpleeconomy.util.SoundHelper;
 import net.minecraft.commands.CommandSourceStack;
 import net.minecraft.commands.Commands;
 import net.minecraft.commands.arguments.EntityArgument;
+import net.minecraft.commands.arguments.GameProfileArgument;
+import net.minecraft.network.chat.ClickEvent;
 import net.minecraft.network.chat.Component;
 import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.level.storage.LevelResource;
 
+import java.nio.file.Path;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.CompletionException;
 
 import com.mojang.authlib.GameProfile;
 
@@ -32,32 +47,26 @@ public class EconomyCommands {
                     .executes(ctx -> {
                         ServerPlayer sender = ctx.getSource().getPlayerOrException();
                         ServerPlayer receiver = EntityArgument.getPlayer(ctx, "player");
-                        double amount = DoubleArgumentType.getDouble(ctx, "amount");
+                        long amount = Money.fromDouble(DoubleArgumentType.getDouble(ctx, "amount"));
 
                         if (sender.getUUID().equals(receiver.getUUID())) {
                             ctx.getSource().sendFailure(Component.literal("You cannot pay yourself!"));
                             return 0;
                         }
 
-                        if (!EconomyManager.hasBalance(sender, amount)) {
+                        Settlement payment = Settlement.builder()
+                            .debit(sender.getUUID(), amount)
+                            .credit(receiver.getUUID(), amount)
+                            .post(TransactionLog.Posting.payment(sender.getUUID(), sender.getName().getString(),
+                                receiver.getUUID(), receiver.getName().getString(), amount))
+                            .build();
+                        if (!EconomyManager.settle(payment)) {
                             ctx.getSource().sendFailure(Component.literal(
                                 "Insufficient funds! You only have " + EconomyManager.formatBalance(EconomyManager.getBalance(sender)) + " " + ModConfig.getCurrencyName()
                             ));
                             return 0;
                         }
 
-                        EconomyManager.removeBalance(sender, amount);
-                        EconomyManager.addBalance(receiver, amount);
-
-                        // Log transactions
-                        TransactionLog log = TransactionLog.get(sender.getServer());
-                        log.addTransaction(sender.getUUID(), TransactionLog.Transaction.payment(
-                            amount, receiver.getUUID(), receiver.getName().getString()
-                        ));
-                        log.addTransaction(receiver.getUUID(), TransactionLog.Transaction.received(
-                            amount, sender.getUUID(), sender.getName().getString()
-                        ));
-
                         ctx.getSource().sendSuccess(() -> Component.literal(
                             "Sent " + EconomyManager.formatBalance(amount) + " " + ModConfig.getCurrencyName() + " to " + receiver.getName().getString()
                         ).withStyle(s -> s.withColor(0x55FF55)), false);
@@ -79,15 +88,20 @@ public class EconomyCommands {
             .requires(src -> src.hasPermission(2))
             .then(Commands.literal("add")
                 .then(Commands.argument("player", EntityArgument.player())
-                    .then(Commands.argument("amount", DoubleArgumentType.doubleArg(0))
+                    .then(Commands.argument("amount", DoubleArgumentType.doubleArg(0, Money.toDouble(EconomySavedData.MAX_BALANCE)))
                         .executes(ctx -> {
                             ServerPlayer target = EntityArgument.getPlayer(ctx, "player");
-                            double amount = DoubleArgumentType.getDouble(ctx, "amount");
+                            long amount = Money.fromDouble(DoubleArgumentType.getDouble(ctx, "amount"));
 
-                            EconomyManager.addBalance(target, amount);
+                            if (!EconomyManager.addBalance(target, amount)) {
+                                ctx.getSource().sendFailure(Component.literal(
+                                    target.getName().getString() + "'s balance would go past the maximum of " + EconomyManager.formatBalance(EconomySavedData.MAX_BALANCE)
+                                ));
+                                return 0;
+                            }
 
                             // Log the transaction
-                            TransactionLog log = TransactionLog.get(target.getServer());
+                            TransactionLog log = EconomyService.get().transactions();
                             log.addTransaction(target.getUUID(), TransactionLog.Transaction.adminAdd(amount));
 
                             ctx.getSource().sendSuccess(() -> Component.literal(
@@ -109,14 +123,16 @@ public class EconomyCommands {
                     .then(Commands.argument("amount", DoubleArgumentType.doubleArg(0))
                         .executes(ctx -> {
                             ServerPlayer target = EntityArgument.getPlayer(ctx, "player");
-                            double amount = DoubleArgumentType.getDouble(ctx, "amount");
+                            long amount = Money.fromDouble(DoubleArgumentType.getDouble(ctx, "amount"));
 
-                            double current = EconomyManager.getBalance(target);
-                            double toRemove = Math.min(amount, current);
-                            EconomyManager.removeBalance(target, toRemove);
+                            long toRemove;
+                            do {
+                                // Retry if the balance changed between reading and taking
+                                toRemove = Math.min(amount, EconomyManager.getBalance(target));
+                            } while (!EconomyManager.removeBalance(target, toRemove));
 
                             // Log the transaction
-                            TransactionLog log = TransactionLog.get(target.getServer());
+                            TransactionLog log = EconomyService.get().transactions();
                             log.addTransaction(target.getUUID(), TransactionLog.Transaction.adminRemove(toRemove));
 
                             ctx.getSource().sendSuccess(() -> Component.literal(
@@ -134,17 +150,16 @@ public class EconomyCommands {
                     .then(Commands.argument("amount", DoubleArgumentType.doubleArg(0))
                         .executes(ctx -> {
                             ServerPlayer target = EntityArgument.getPlayer(ctx, "player");
-                            double amount = DoubleArgumentType.getDouble(ctx, "amount");
+                            long amount = Math.min(Money.fromDouble(DoubleArgumentType.getDouble(ctx, "amount")), EconomySavedData.MAX_BALANCE);
 
-                            double oldBalance = EconomyManager.getBalance(target);
-                            EconomyManager.setBalance(target, amount);
+                            long change = EconomyManager.setBalance(target, amount);
 
-                            // Log the transaction
-                            TransactionLog log = TransactionLog.get(target.getServer());
-                            if (amount > oldBalance) {
-                                log.addTransaction(target.getUUID(), TransactionLog.Transaction.adminAdd(amount - oldBalance));
-                            } else if (amount < oldBalance) {
-                                log.addTransaction(target.getUUID(), TransactionLog.Transaction.adminRemove(oldBalance - amount));
+                            // Log the change actually made, which accounts for clamping and concurrent updates
+                            TransactionLog log = EconomyService.get().transactions();
+                            if (change > 0) {
+                                log.addTransaction(target.getUUID(), TransactionLog.Transaction.adminAdd(change));
+                            } else if (change < 0) {
+                                log.addTransaction(target.getUUID(), TransactionLog.Transaction.adminRemove(-change));
                             }
 
                             ctx.getSource().sendSuccess(() -> Component.literal(
@@ -160,25 +175,59 @@ public class EconomyCommands {
                     )
                 )
             )
+            .then(Commands.literal("stats")
+                .executes(ctx -> {
+                    showStats(ctx.getSource());
+                    return 1;
+                })
+            )
+            // /eco ledger <player> [days] - full history from disk, for players offline too
+            .then(Commands.literal("ledger")
+                .then(Commands.argument("player", GameProfileArgument.gameProfile())
+                    .executes(ctx -> showLedger(ctx.getSource(), GameProfileArgument.getGameProfiles(ctx, "player"), 30))
+                    .then(Commands.argument("days", IntegerArgumentType.integer(1))
+                        .executes(ctx -> showLedger(ctx.getSource(), GameProfileArgument.getGameProfiles(ctx, "player"),
+                            IntegerArgumentType.getInteger(ctx, "days")))
+                    )
+                )
+            )
+            // /eco export <balances|transactions|shops> <csv|jsonl> - write a dataset to a file for offline analysis
+            .then(exportCommand())
+            // /eco reconcile [repair] - check balances against the ledger, optionally fixing them
+            .then(Commands.literal("reconcile")
+                .executes(ctx -> {
+                    reconcile(ctx.getSource(), false);
+                    return 1;
+                })
+                .then(Commands.literal("repair")
+                    .executes(ctx -> {
+                        reconcile(ctx.getSource(), true);
+                        return 1;
+                    })
+                )
+            )
         );
 
-        // /transactions - view transaction history in chat
-        dispatcher.register(Commands.literal("transactions")
-            .executes(ctx -> {
-                ServerPlayer player = ctx.getSource().getPlayerOrException();
-                showTransactionHistory(ctx.getSource(), player, 10);
-                return 1;
-            })
-        );
-
+        // /transactions [type:<type>] [with:<player>] [since:<7d>] [after:<n>] - view transaction history in chat
+        registerHistoryCommand(dispatcher, "transactions");
         // /history - alias for /transactions
-        dispatcher.register(Commands.literal("history")
+        registerHistoryCommand(dispatcher, "history");
+
+        // /earnings [hour|day|week|month] - money in and out by source over a recent period
+        LiteralArgumentBuilder<CommandSourceStack> earnings = Commands.literal("earnings")
             .executes(ctx -> {
-                ServerPlayer player = ctx.getSource().getPlayerOrException();
-                showTransactionHistory(ctx.getSource(), player, 10);
+                showEarnings(ctx.getSource(), ctx.getSource().getPlayerOrException(), "week");
                 return 1;
-            })
-        );
+            });
+        for (String period : EARNINGS_PERIODS) {
+            earnings.then(Commands.literal(period)
+                .executes(ctx -> {
+                    showEarnings(ctx.getSource(), ctx.getSource().getPlayerOrException(), period);
+                    return 1;
+                })
+            );
+        }
+        dispatcher.register(earnings);
 
         // /baltop - money leaderboard (standalone alias)
         dispatcher.register(Commands.literal("baltop")
@@ -224,7 +273,7 @@ public class EconomyCommands {
             // /bal — own balance
             .executes(ctx -> {
                 ServerPlayer player = ctx.getSource().getPlayerOrException();
-                double balance = EconomyManager.getBalance(player);
+                long balance = EconomyManager.getBalance(player);
                 ctx.getSource().sendSuccess(() -> Component.literal(
                     "Your balance: " + EconomyManager.formatBalance(balance) + " " + ModConfig.getCurrencyName()
                 ).withStyle(s -> s.withColor(0xFFD700)), false);
@@ -248,7 +297,7 @@ public class EconomyCommands {
             .then(Commands.argument("player", EntityArgument.player())
                 .executes(ctx -> {
                     ServerPlayer target = EntityArgument.getPlayer(ctx, "player");
-                    double balance = EconomyManager.getBalance(target);
+                    long balance = EconomyManager.getBalance(target);
                     ctx.getSource().sendSuccess(() -> Component.literal(
                         target.getName().getString() + "'s balance: " + EconomyManager.formatBalance(balance) + " " + ModConfig.getCurrencyName()
                     ).withStyle(s -> s.withColor(0xFFD700)), false);
@@ -258,16 +307,82 @@ public class EconomyCommands {
         );
     }
 
-    private static void showTransactionHistory(CommandSourceStack source, ServerPlayer player, int limit) {
-        TransactionLog log = TransactionLog.get(player.getServer());
-        List<TransactionLog.Transaction> transactions = log.getRecentTransactions(player.getUUID(), limit);
+    private static void registerHistoryCommand(CommandDispatcher<CommandSourceStack> dispatcher, String name) {
+        dispatcher.register(Commands.literal(name)
+            .executes(ctx -> {
+                ServerPlayer player = ctx.getSource().getPlayerOrException();
+                showTransactionHistory(ctx.getSource(), player, name, "");
+                return 1;
+            })
+            .then(Commands.argument("filters", StringArgumentType.greedyString())
+                .executes(ctx -> {
+                    ServerPlayer player = ctx.getSource().getPlayerOrException();
+                    showTransactionHistory(ctx.getSource(), player, name, StringArgumentType.getString(ctx, "filters"));
+                    return 1;
+                })
+            )
+        );
+    }
+
+    private static final int HISTORY_PAGE_SIZE = 10;
+    private static final String HISTORY_USAGE = "Filters: type:<type> with:<player> since:<30m|12h|7d|2w> after:<n>";
+
+    private static void showTransactionHistory(CommandSourceStack source, ServerPlayer player, String command, String filters) {
+        TransactionLog.TransactionType type = null;
+        UUID otherParty = null;
+        long since = 0;
+        long cursor = -1;
+        List<String> kept = new ArrayList<>();
+        for (String token : filters.trim().split("\\s+")) {
+            if (token.isEmpty()) {
+                continue;
+            }
+            int colon = token.indexOf(':');
+            String key = colon < 0 ? token : token.substring(0, colon).toLowerCase(Locale.ROOT);
+            String value = colon < 0 ? "" : token.substring(colon + 1);
+            String error = switch (key) {
+                case "type" -> {
+                    type = parseType(value);
+                    yield type == null ? "Unknown transaction type: " + value : null;
+                }
+                case "with" -> {
+                    otherParty = source.getServer().getProfileCache().get(value).map(GameProfile::getId).orElse(null);
+                    yield otherParty == null ? "Unknown player: " + value : null;
+                }
+                case "since" -> {
+                    long duration = parseDuration(value);
+                    since = System.currentTimeMillis() - duration;
+                    yield duration < 0 ? "Invalid duration: " + value : null;
+                }
+                case "after" -> {
+                    cursor = parseCursor(value);
+                    yield cursor < 0 ? "Invalid cursor: " + value : null;
+                }
+                default -> "Unknown filter: " + token;
+            };
+            if (error != null) {
+                source.sendFailure(Component.literal(error + ". " + HISTORY_USAGE));
+                return;
+            }
+            if (!key.equals("after")) {
+                kept.add(token);
+            }
+        }
+
+        TransactionLog log = EconomyService.get().transactions();
+        TransactionLog.TransactionFilter filter = new TransactionLog.TransactionFilter(type, otherParty, since);
+        boolean first = cursor < 0;
+        TransactionLog.TransactionPage page = log.findTransactions(player.getUUID(), filter, cursor, HISTORY_PAGE_SIZE);
+        List<TransactionLog.Transaction> transactions = page.transactions();
 
         if (transactions.isEmpty()) {
-            source.sendSuccess(() -> Component.literal("No transactions found.").withStyle(s -> s.withColor(0x888888)), false);
+            source.sendSuccess(() -> Component.literal(first ? "No transactions found." : "No older transactions.")
+                .withStyle(s -> s.withColor(0x888888)), false);
             return;
         }
 
-        source.sendSuccess(() -> Component.literal("=== Transaction History ===").withStyle(s -> s.withBold(true).withColor(0xFFD700)), false);
+        String title = first ? "=== Transaction History ===" : "=== Transaction History (older) ===";
+        source.sendSuccess(() -> Component.literal(title).withStyle(s -> s.withBold(true).withColor(0xFFD700)), false);
         SimpleDateFormat sdf = new SimpleDateFormat("MM/dd HH:mm");
         for (TransactionLog.Transaction t : transactions) {
             String amountStr = (t.amount() >= 0 ? "+" : "") + EconomyManager.formatBalance(t.amount());
@@ -276,23 +391,283 @@ public class EconomyCommands {
                 " " + sdf.format(new Date(t.timestamp())) + " | " + t.description() + " | " + amountStr
             ).withStyle(s -> s.withColor(color)), false);
         }
+
+        if (page.next() >= 0) {
+            kept.add("after:" + page.next());
+            String next = "/" + command + " " + String.join(" ", kept);
+            source.sendSuccess(() -> Component.literal("Older")
+                .withStyle(s -> s.withColor(0xAAAAAA))
+                .append(Component.literal(" - " + next)
+                    .withStyle(s -> s.withColor(0x888888)
+                        .withClickEvent(new ClickEvent(ClickEvent.Action.RUN_COMMAND, next)))), false);
+        }
+    }
+
+    private static final String[] EARNINGS_PERIODS = {"hour", "day", "week", "month"};
+
+    private static void showEarnings(CommandSourceStack source, ServerPlayer player, String period) {
+        long length = switch (period) {
+            case "hour" -> 3_600_000L;
+            case "day" -> 86_400_000L;
+            case "month" -> 30 * 86_400_000L;
+            default -> 7 * 86_400_000L;
+        };
+        TransactionLog.Earnings earnings = EconomyService.get().transactions()
+            .getEarnings(player.getUUID(), System.currentTimeMillis() - length);
+
+        source.sendSuccess(() -> Component.literal("=== Earnings (last " + period + ") ===")
+            .withStyle(s -> s.withBold(true).withColor(0xFFD700)), false);
+        boolean any = false;
+        for (TransactionLog.TransactionType type : TransactionLog.TransactionType.values()) {
+            long in = earnings.inflow(type);
+            long out = earnings.outflow(type);
+            if (in == 0 && out == 0) {
+                continue;
+            }
+            any = true;
+            String line = " " + type.name() + ": " + (in > 0 ? "+" + EconomyManager.formatBalance(in) : "")
+                + (in > 0 && out > 0 ? " / " : "") + (out > 0 ? "-" + EconomyManager.formatBalance(out) : "");
+            int color = in >= out ? 0x55FF55 : 0xFF5555;
+            source.sendSuccess(() -> Component.literal(line).withStyle(s -> s.withColor(color)), false);
+        }
+        if (!any) {
+            source.sendSuccess(() -> Component.literal(" No money in or out.").withStyle(s -> s.withColor(0x888888)), false);
+            return;
+        }
+        long net = earnings.net();
+        source.sendSuccess(() -> Component.literal(" Net: " + (net >= 0 ? "+" : "") + EconomyManager.formatBalance(net) + " " + ModConfig.getCurrencyName())
+            .withStyle(s -> s.withBold(true).withColor(0xFFFF55)), false);
+    }
+
+    private static TransactionLog.TransactionType parseType(String value) {
+        for (TransactionLog.TransactionType type : TransactionLog.TransactionType.values()) {
+            if (type.name().equalsIgnoreCase(value)) {
+                return type;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Milliseconds in a duration such as 30m, 12h, 7d or 2w, or -1 if it is not one
+     */
+    private static long parseDuration(String value) {
+        if (value.length() < 2) {
+            return -1;
+        }
+        long unit = switch (Character.toLowerCase(value.charAt(value.length() - 1))) {
+            case 'm' -> 60_000L;
+            case 'h' -> 3_600_000L;
+            case 'd' -> 86_400_000L;
+            case 'w' -> 604_800_000L;
+            default -> 0;
+        };
+        try {
+            long amount = Long.parseLong(value.substring(0, value.length() - 1));
+            return unit == 0 || amount < 0 || amount > Long.MAX_VALUE / unit ? -1 : amount * unit;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static long parseCursor(String value) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static final int LEDGER_LINES = 50;
+
+    private static int showLedger(CommandSourceStack source, Collection<GameProfile> profiles, int days) {
+        long since = System.currentTimeMillis() - days * 86_400_000L;
+        for (GameProfile profile : profiles) {
+            EconomyService.get().transactions().queryLedger(profile.getId(), since, LEDGER_LINES)
+                .whenComplete((transactions, error) -> source.getServer().execute(() -> {
+                    if (error != null) {
+                        SimpleEconomy.LOGGER.error("Failed to read transaction ledger", error);
+                        source.sendFailure(Component.literal("Could not read the transaction ledger. See the server log."));
+                        return;
+                    }
+                    sendLedger(source, profile.getName(), days, transactions);
+                }));
+        }
+        return profiles.size();
+    }
+
+    private static void sendLedger(CommandSourceStack source, String name, int days, List<TransactionLog.Transaction> transactions) {
+        if (transactions.isEmpty()) {
+            source.sendSuccess(() -> Component.literal("No transactions for " + name + " in the last " + days + " days.")
+                .withStyle(s -> s.withColor(0x888888)), false);
+            return;
+        }
+
+        source.sendSuccess(() -> Component.literal("=== Ledger: " + name + " (last " + days + " days) ===")
+            .withStyle(s -> s.withBold(true).withColor(0xFFD700)), false);
+        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm");
+        for (TransactionLog.Transaction t : transactions) {
+            String amountStr = (t.amount() >= 0 ? "+" : "") + EconomyManager.formatBalance(t.amount());
+            int color = t.amount() >= 0 ? 0x55FF55 : 0xFF5555;
+            source.sendSuccess(() -> Component.literal(
+                " " + sdf.format(new Date(t.timestamp())) + " | " + t.description() + " | " + amountStr
+            ).withStyle(s -> s.withColor(color)), false);
+        }
+        if (transactions.size() == LEDGER_LINES) {
+            source.sendSuccess(() -> Component.literal("Showing the newest " + LEDGER_LINES + " entries.")
+                .withStyle(s -> s.withColor(0x888888)), false);
+        }
+    }
+
+    private static LiteralArgumentBuilder<CommandSourceStack> exportCommand() {
+        LiteralArgumentBuilder<CommandSourceStack> export = Commands.literal("export");
+        for (EconomyExport.Dataset dataset : EconomyExport.Dataset.values()) {
+            LiteralArgumentBuilder<CommandSourceStack> datasetNode = Commands.literal(dataset.name().toLowerCase(Locale.ROOT));
+            for (EconomyExport.Format format : EconomyExport.Format.values()) {
+                datasetNode.then(Commands.literal(format.name().toLowerCase(Locale.ROOT))
+                    .executes(ctx -> {
+                        startExport(ctx.getSource(), dataset, format);
+                        return 1;
+                    })
+                );
+            }
+            export.then(datasetNode);
+        }
+        return export;
+    }
+
+    private static void startExport(CommandSourceStack source, EconomyExport.Dataset dataset, EconomyExport.Format format) {
+        var server = source.getServer();
+        source.sendSuccess(() -> Component.literal("Exporting " + dataset.name().toLowerCase(Locale.ROOT) + "...")
+            .withStyle(s -> s.withColor(0xAAAAAA)), false);
+        EconomyExport.start(server, dataset, format)
+            .whenComplete((result, error) -> server.execute(() -> {
+                if (error != null) {
+                    if (error instanceof IllegalStateException) {
+                        source.sendFailure(Component.literal(error.getMessage() + ", try again when it finishes."));
+                        return;
+                    }
+                    SimpleEconomy.LOGGER.error("Failed to export {}", dataset, error);
+                    source.sendFailure(Component.literal("Export failed. See the server log."));
+                    return;
+                }
+                Path file = server.getWorldPath(LevelResource.ROOT).relativize(result.file());
+                source.sendSuccess(() -> Component.literal("Exported " + result.rows() + " rows to " + file)
+                    .withStyle(s -> s.withColor(0x55FF55)), true);
+            }));
+    }
+
+    private static final int RECONCILE_LINES = 10;
+
+    private static void reconcile(CommandSourceStack source, boolean repair) {
+        var server = source.getServer();
+        if (repair && CoinflipCommand.flipsInEscrow() > 0) {
+            // The stakes are out of both balances but have no ledger entries until the payout
+            source.sendFailure(Component.literal("A coinflip is in progress, try again when it finishes."));
+            return;
+        }
+        source.sendSuccess(() -> Component.literal("Replaying the ledger...").withStyle(s -> s.withColor(0xAAAAAA)), false);
+        LedgerReconciler.run(repair)
+            .whenComplete((report, error) -> server.execute(() -> {
+                if (error != null) {
+                    Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                    if (cause instanceof IllegalStateException) {
+                        source.sendFailure(Component.literal(cause.getMessage() + "."));
+                        return;
+                    }
+                    SimpleEconomy.LOGGER.error("Failed to reconcile balances", cause);
+                    source.sendFailure(Component.literal("Reconcile failed. See the server log."));
+                    return;
+                }
+                sendReconcileReport(source, report);
+            }));
+    }
+
+    private static void sendReconcileReport(CommandSourceStack source, LedgerReconciler.Report report) {
+        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm");
+        source.sendSuccess(() -> Component.literal("=== Reconcile ===").withStyle(s -> s.withBold(true).withColor(0xFFD700)), false);
+        source.sendSuccess(() -> Component.literal(" " + report.entries() + " entries in " + report.segments()
+            + " segments since " + sdf.format(new Date(report.baselineTime())) + ", " + report.accounts()
+            + " accounts, " + report.millis() + " ms").withStyle(s -> s.withColor(0xAAAAAA)), false);
+
+        List<LedgerReconciler.Discrepancy> discrepancies = report.discrepancies();
+        if (discrepancies.isEmpty()) {
+            source.sendSuccess(() -> Component.literal(" Every balance matches the ledger.").withStyle(s -> s.withColor(0x55FF55)), true);
+            return;
+        }
+        for (LedgerReconciler.Discrepancy d : discrepancies.subList(0, Math.min(RECONCILE_LINES, discrepancies.size()))) {
+            String name = source.getServer().getProfileCache().get(d.player()).map(GameProfile::getName).orElse(d.player().toString());
+            String line = " " + name + ": stored " + EconomyManager.formatBalance(d.stored()) + ", ledger "
+                + EconomyManager.formatBalance(d.expected()) + " (" + (d.difference() >= 0 ? "+" : "")
+                + EconomyManager.formatBalance(d.difference()) + ")";
+            source.sendSuccess(() -> Component.literal(line).withStyle(s -> s.withColor(0xFF5555)), false);
+        }
+        String summary = " " + discrepancies.size() + " accounts differ";
+        if (report.droppedEntries() > 0) {
+            summary += ". The ledger dropped " + report.droppedEntries() + " entries this session, which also show here,"
+                + " so repair is off until the server restarts";
+        } else if (report.repaired() > 0) {
+            summary += ", " + report.repaired() + " repaired";
+        } else {
+            summary += ". Use /eco reconcile repair to fix them";
+        }
+        String text = summary + ".";
+        source.sendSuccess(() -> Component.literal(text).withStyle(s -> s.withColor(0xFFFF55)), true);
+    }
+
+    private static void showStats(CommandSourceStack source) {
+        BalanceDistribution distribution = EconomyService.get().economy().getDistribution();
+        TransactionLog log = EconomyService.get().transactions();
+        String currency = ModConfig.getCurrencyName();
+
+        source.sendSuccess(() -> Component.literal("=== Economy Stats ===").withStyle(s -> s.withBold(true).withColor(0xFFD700)), false);
+        List<String> lines = new ArrayList<>();
+        lines.add("Money supply: " + EconomyManager.formatBalance(distribution.supply()) + " " + currency);
+        lines.add("Accounts: " + distribution.accounts());
+        lines.add("Mean: " + EconomyManager.formatBalance(distribution.mean())
+            + " | Median: ~" + EconomyManager.formatBalance(distribution.quantile(0.5))
+            + " | Top 10%: ~" + EconomyManager.formatBalance(distribution.quantile(0.9)));
+        lines.add(String.format("Gini: %.3f", distribution.gini()));
+        lines.add("Created: +" + EconomyManager.formatBalance(log.getMoneyCreated())
+            + " | Destroyed: -" + EconomyManager.formatBalance(log.getMoneyDestroyed()));
+        TransactionLog.LedgerStats ledger = log.getLedgerStats();
+        if (ledger == null) {
+            lines.add("Ledger: not open");
+        } else {
+            lines.add("Ledger: " + ledger.written() + " written in " + ledger.batches() + " batches (largest " + ledger.largestBatch()
+                + ") | Queue: " + ledger.queued() + "/" + ledger.capacity() + " | Spilled: " + ledger.spilled()
+                + " | Dropped: " + ledger.dropped());
+        }
+        for (String line : lines) {
+            source.sendSuccess(() -> Component.literal(" " + line).withStyle(s -> s.withColor(0xFFFF55)), false);
+        }
+
+        for (TransactionLog.TransactionType type : TransactionLog.TransactionType.values()) {
+            long count = log.getTransactionCount(type);
+            if (count == 0) {
+                continue;
+            }
+            String line = " " + type.name() + " x" + count + ": +" + EconomyManager.formatBalance(log.getInflow(type))
+                + " / -" + EconomyManager.formatBalance(log.getOutflow(type));
+            source.sendSuccess(() -> Component.literal(line).withStyle(s -> s.withColor(0xAAAAAA)), false);
+        }
     }
 
     private static final int ENTRIES_PER_PAGE = 10;
 
     private static void showLeaderboard(CommandSourceStack source, int page) {
         var server = source.getServer();
-        List<Map.Entry<UUID, Double>> topBalances = EconomyManager.getTopBalances(server);
+        int accountCount = EconomyManager.getAccountCount();
 
-        if (topBalances.isEmpty()) {
+        if (accountCount == 0) {
             source.sendSuccess(() -> Component.literal("No players with balances found!").withStyle(s -> s.withColor(0xFF5555)), false);
             return;
         }
 
-        int totalPages = (int) Math.ceil((double) topBalances.size() / ENTRIES_PER_PAGE);
+        int totalPages = (int) Math.ceil((double) accountCount / ENTRIES_PER_PAGE);
         page = Math.min(page, totalPages);
         int startIdx = (page - 1) * ENTRIES_PER_PAGE;
-        int endIdx = Math.min(startIdx + ENTRIES_PER_PAGE, topBalances.size());
+        List<Map.Entry<UUID, Long>> topBalances = EconomyManager.getTopBalances(startIdx + 1, ENTRIES_PER_PAGE);
 
         // Header
         source.sendSuccess(() -> Component.literal(""), false);
@@ -300,11 +675,11 @@ public class EconomyCommands {
             .withStyle(s -> s.withColor(0xFFD700).withBold(true)), false);
 
         // Entries
-        for (int i = startIdx; i < endIdx; i++) {
-            Map.Entry<UUID, Double> entry = topBalances.get(i);
-            int rank = i + 1;
+        for (int i = 0; i < topBalances.size(); i++) {
+            Map.Entry<UUID, Long> entry = topBalances.get(i);
+            int rank = startIdx + i + 1;
             String playerName = getPlayerName(server, entry.getKey());
-            double balance = entry.getValue();
+            long balance = entry.getValue();
 
             int nameColor;
             if (rank == 1) {
@@ -341,8 +716,8 @@ public class EconomyCommands {
         // Show requester's rank if they're a player and not in top 10
         try {
             ServerPlayer player = source.getPlayerOrException();
-            int playerRank = EconomyManager.getPlayerRank(server, player.getUUID());
-            double playerBalance = EconomyManager.getBalance(player);
+            int playerRank = EconomyManager.getPlayerRank(player.getUUID());
+            long playerBalance = EconomyManager.getBalance(player);
 
             if (playerRank > ENTRIES_PER_PAGE || page > 1) {
                 source.sendSuccess(() -> Component.literal("Your rank: #" + playerRank + " (" +
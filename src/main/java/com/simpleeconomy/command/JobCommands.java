@@ -0,0 +1,97 @@
+package com.simpleeconomy.command;
+
+import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.arguments.DoubleArgumentType;
+import com.mojang.brigadier.arguments.IntegerArgumentType;
+import com.simpleeconomy.economy.EconomyService;
+import com.simpleeconomy.economy.Money;
+import com.simpleeconomy.job.AddToAllJob;
+import com.simpleeconomy.job.EconomyJob;
+import com.simpleeconomy.job.InflationJob;
+import com.simpleeconomy.job.PurgeEmptyJob;
+import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.commands.Commands;
+import net.minecraft.network.chat.Component;
+
+import java.util.List;
+
+/**
+ * /eco job - bulk operations over every account, run in the background a little each tick
+ */
+public class JobCommands {
+
+    public static void register(CommandDispatcher<CommandSourceStack> dispatcher) {
+        dispatcher.register(Commands.literal("eco")
+            .requires(src -> src.hasPermission(2))
+            .then(Commands.literal("job")
+                .then(Commands.literal("start")
+                    .then(Commands.literal("addall")
+                        .then(Commands.argument("amount", DoubleArgumentType.doubleArg(0.01))
+                            .executes(ctx -> start(ctx.getSource(),
+                                new AddToAllJob(Money.fromDouble(DoubleArgumentType.getDouble(ctx, "amount")))))
+                        )
+                    )
+                    .then(Commands.literal("inflate")
+                        .then(Commands.argument("percent", DoubleArgumentType.doubleArg(-100, 1000))
+                            .executes(ctx -> start(ctx.getSource(),
+                                new InflationJob(Math.round(DoubleArgumentType.getDouble(ctx, "percent") * 100))))
+                        )
+                    )
+                    .then(Commands.literal("purgezero")
+                        .executes(ctx -> start(ctx.getSource(), new PurgeEmptyJob()))
+                    )
+                )
+                .then(Commands.literal("list")
+                    .executes(ctx -> list(ctx.getSource()))
+                )
+                .then(Commands.literal("cancel")
+                    .then(Commands.argument("id", IntegerArgumentType.integer(1))
+                        .executes(ctx -> cancel(ctx.getSource(), IntegerArgumentType.getInteger(ctx, "id")))
+                    )
+                )
+            )
+        );
+    }
+
+    private static int start(CommandSourceStack source, EconomyJob job) {
+        EconomyService service = EconomyService.get();
+        service.jobs().submit(job, service.economy());
+        source.sendSuccess(() -> Component.literal(
+            "Started job #" + job.id() + ": " + job.describe() + " (" + job.total() + " accounts)"
+        ).withStyle(s -> s.withColor(0x55FF55)), true);
+        return job.id();
+    }
+
+    private static int list(CommandSourceStack source) {
+        List<EconomyJob> jobs = EconomyService.get().jobs().getJobs();
+        if (jobs.isEmpty()) {
+            source.sendSuccess(() -> Component.literal("No jobs.").withStyle(s -> s.withColor(0x888888)), false);
+            return 0;
+        }
+
+        source.sendSuccess(() -> Component.literal("=== Jobs ===").withStyle(s -> s.withBold(true).withColor(0xFFD700)), false);
+        for (EconomyJob job : jobs) {
+            int color = switch (job.status()) {
+                case RUNNING -> 0xFFFF55;
+                case FINISHED -> 0x55FF55;
+                case CANCELLED -> 0xFF5555;
+            };
+            String line = " #" + job.id() + " " + job.describe() + " | " + job.status().name().toLowerCase()
+                + " | " + job.processed() + "/" + job.total() + " (" + job.percentDone() + "%), " + job.changed() + " changed";
+            source.sendSuccess(() -> Component.literal(line).withStyle(s -> s.withColor(color)), false);
+        }
+        return jobs.size();
+    }
+
+    private static int cancel(CommandSourceStack source, int id) {
+        EconomyJob job = EconomyService.get().jobs().cancel(id);
+        if (job == null) {
+            source.sendFailure(Component.literal("No running job #" + id));
+            return 0;
+        }
+        source.sendSuccess(() -> Component.literal(
+            "Cancelled job #" + id + " after " + job.processed() + " of " + job.total() + " accounts"
+        ).withStyle(s -> s.withColor(0xFFAA00)), true);
+        return 1;
+    }
+}
@@ -5,8 +5,11 @@ import com.mojang.brigadier.arguments.DoubleArgumentType;
 import com.mojang.brigadier.arguments.IntegerArgumentType;
 import com.mojang.brigadier.arguments.StringArgumentType;
 import com.simpleeconomy.data.ShopSavedData;
-import com.simpleeconomy.menu.ShopBrowserMenu;
+import com.simpleeconomy.economy.EconomyManager;
+import com.simpleeconomy.economy.EconomyService;
+import com.simpleeconomy.economy.Money;
 import com.simpleeconomy.menu.MyShopMenu;
+import com.simpleeconomy.menu.ShopBrowserMenu;
 import com.simpleeconomy.shop.Shop;
 import com.simpleeconomy.shop.ShopManager;
 import net.minecraft.commands.CommandSourceStack;
@@ -24,7 +27,7 @@ public class ShopCommands {
 
     // Suggestion provider for shop names (for tab completion)
     private static final SuggestionProvider<CommandSourceStack> SHOP_SUGGESTIONS = (ctx, builder) -> {
-        ShopSavedData data = ShopSavedData.get(ctx.getSource().getServer());
+        ShopSavedData data = EconomyService.get().shops();
         for (Shop shop : data.getAllShops()) {
             // Quote names with spaces
             String name = shop.getShopName();
@@ -84,7 +87,7 @@ public class ShopCommands {
             .then(Commands.literal("list")
                 .executes(ctx -> {
                     ServerPlayer player = ctx.getSource().getPlayerOrException();
-                    List<Shop> shops = ShopSavedData.get(player.getServer()).getShopsByOwner(player.getUUID());
+                    List<Shop> shops = EconomyService.get().shops().getShopsByOwner(player.getUUID());
 
                     if (shops.isEmpty()) {
                         ctx.getSource().sendSuccess(() -> Component.literal(
@@ -109,10 +112,10 @@ public class ShopCommands {
                         .executes(ctx -> {
                             ServerPlayer player = ctx.getSource().getPlayerOrException();
                             int quantity = IntegerArgumentType.getInteger(ctx, "quantity");
-                            double price = DoubleArgumentType.getDouble(ctx, "price");
+                            long price = Money.fromDouble(DoubleArgumentType.getDouble(ctx, "price"));
 
                             // Get player's shop
-                            List<Shop> shops = ShopSavedData.get(player.getServer()).getShopsByOwner(player.getUUID());
+                            List<Shop> shops = EconomyService.get().shops().getShopsByOwner(player.getUUID());
                             if (shops.isEmpty()) {
                                 player.sendSystemMessage(Component.literal("[ERROR] ")
                                     .withStyle(s -> s.withColor(0xFF5555).withBold(true))
@@ -163,7 +166,7 @@ public class ShopCommands {
                             if (ShopManager.addItemToShop(player, shop.getShopId(), shopStack, price)) {
                                 player.sendSystemMessage(Component.literal("[INFO] ")
                                     .withStyle(s -> s.withColor(0xFFFF55).withBold(true))
-                                    .append(Component.literal("Added " + actualQty + "x " + shopStack.getHoverName().getString() + " at " + String.format("%.2f", price) + " coins each!")
+                                    .append(Component.literal("Added " + actualQty + "x " + shopStack.getHoverName().getString() + " at " + EconomyManager.formatBalance(price) + " coins each!")
                                         .withStyle(s -> s.withColor(0xFFFF55).withBold(false))));
                                 return 1;
                             } else {
@@ -189,7 +192,7 @@ public class ShopCommands {
             .then(Commands.literal("delete")
                 .executes(ctx -> {
                     ServerPlayer player = ctx.getSource().getPlayerOrException();
-                    List<Shop> shops = ShopSavedData.get(player.getServer()).getShopsByOwner(player.getUUID());
+                    List<Shop> shops = EconomyService.get().shops().getShopsByOwner(player.getUUID());
 
                     if (shops.isEmpty()) {
                         ctx.getSource().sendFailure(Component.literal("You don't have a shop to delete!"));
@@ -215,7 +218,7 @@ public class ShopCommands {
                         }
                     }
 
-                    ShopSavedData data = ShopSavedData.get(player.getServer());
+                    ShopSavedData data = EconomyService.get().shops();
                     data.removeShop(shop.getShopId());
 
                     ctx.getSource().sendSuccess(() -> Component.literal(
@@ -243,7 +246,7 @@ public class ShopCommands {
                     .suggests(SHOP_SUGGESTIONS)
                     .executes(ctx -> {
                         String shopNameOrId = StringArgumentType.getString(ctx, "shop");
-                        ShopSavedData data = ShopSavedData.get(ctx.getSource().getServer());
+                        ShopSavedData data = EconomyService.get().shops();
 
                         Shop shop = findShop(data, shopNameOrId);
                         if (shop == null) {
@@ -253,8 +256,7 @@ public class ShopCommands {
 
                         // Toggle featured status
                         boolean newFeatured = !shop.isFeatured();
-                        shop.setFeatured(newFeatured);
-                        data.setDirty();
+                        data.setFeatured(shop, newFeatured);
 
                         final String shopName = shop.getShopName();
                         final String status = newFeatured ? "featured" : "unfeatured";
@@ -270,7 +272,7 @@ public class ShopCommands {
             .then(Commands.literal("listall")
                 .requires(src -> src.hasPermission(2))
                 .executes(ctx -> {
-                    ShopSavedData data = ShopSavedData.get(ctx.getSource().getServer());
+                    ShopSavedData data = EconomyService.get().shops();
                     List<Shop> shops = data.getAllShops();
 
                     if (shops.isEmpty()) {
@@ -295,7 +297,7 @@ public class ShopCommands {
                     .suggests(SHOP_SUGGESTIONS)
                     .executes(ctx -> {
                         String shopNameOrId = StringArgumentType.getString(ctx, "shop");
-                        ShopSavedData data = ShopSavedData.get(ctx.getSource().getServer());
+                        ShopSavedData data = EconomyService.get().shops();
 
                         Shop shop = findShop(data, shopNameOrId);
                         if (shop == null) {
@@ -327,7 +329,7 @@ public class ShopCommands {
                     .suggests(SHOP_SUGGESTIONS)
                     .executes(ctx -> {
                         String shopNameOrId = StringArgumentType.getString(ctx, "shop");
-                        ShopSavedData data = ShopSavedData.get(ctx.getSource().getServer());
+                        ShopSavedData data = EconomyService.get().shops();
 
                         Shop shop = findShop(data, shopNameOrId);
                         if (shop == null) {
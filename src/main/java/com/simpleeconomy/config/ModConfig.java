@@ -3,6 +3,7 @@ package com.simpleeconomy.config;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.simpleeconomy.SimpleEconomy;
+import com.simpleeconomy.economy.Money;
 
 import java.io.IOException;
 import java.io.Reader;
@@ -28,6 +29,11 @@ public class ModConfig {
         double weeklyInterestRate = 0.10;
         double maxInterestAmount = 500.0;
         double killRewardPercent = 0.0;
+        String storageMode = "nbt";
+        int jobTickBudgetMicros = 2000;
+        int transactionHistoryDepth = 50;
+        int ledgerRetentionDays = 90;
+        int ledgerQueueCapacity = 65536;
     }
 
     public static void load() {
@@ -74,20 +80,31 @@ public class ModConfig {
         if (data.maxInterestAmount < 0) data.maxInterestAmount = 0;
         if (data.killRewardPercent < 0) data.killRewardPercent = 0;
         if (data.killRewardPercent > 1) data.killRewardPercent = 1;
+        if (data.storageMode == null || !(data.storageMode.equalsIgnoreCase("nbt") || data.storageMode.equalsIgnoreCase("mapped"))) {
+            data.storageMode = "nbt";
+        }
+        if (data.jobTickBudgetMicros < 100) data.jobTickBudgetMicros = 100;
+        if (data.transactionHistoryDepth < 1) data.transactionHistoryDepth = 1;
+        if (data.ledgerRetentionDays < 0) data.ledgerRetentionDays = 0;
+        if (data.ledgerQueueCapacity < 1024) data.ledgerQueueCapacity = 1024;
     }
 
     public static String getCurrencyName() {
         return data.currencyName;
     }
 
-    public static double getStartingBalance() {
-        return data.startingBalance;
+    public static long getStartingBalance() {
+        return Money.fromDouble(data.startingBalance);
     }
 
     public static double getTaxRate() {
         return data.taxRate;
     }
 
+    public static long getTaxBasisPoints() {
+        return Money.toBasisPoints(data.taxRate);
+    }
+
     public static int getDailyBaseReward() {
         return data.dailyBaseReward;
     }
@@ -104,11 +121,54 @@ public class ModConfig {
         return data.weeklyInterestRate;
     }
 
-    public static double getMaxInterestAmount() {
-        return data.maxInterestAmount;
+    public static long getWeeklyInterestBasisPoints() {
+        return Money.toBasisPoints(data.weeklyInterestRate);
+    }
+
+    public static long getMaxInterestAmount() {
+        return Money.fromDouble(data.maxInterestAmount);
     }
 
     public static double getKillRewardPercent() {
         return data.killRewardPercent;
     }
+
+    public static long getKillRewardBasisPoints() {
+        return Money.toBasisPoints(data.killRewardPercent);
+    }
+
+    /**
+     * Whether balances live in a memory-mapped account file instead of the NBT save
+     */
+    public static boolean isMappedStorage() {
+        return data.storageMode.equalsIgnoreCase("mapped");
+    }
+
+    /**
+     * How many transactions are kept per player
+     */
+    public static int getTransactionHistoryDepth() {
+        return data.transactionHistoryDepth;
+    }
+
+    /**
+     * Days of full transaction history kept on disk, or 0 to keep it forever
+     */
+    public static int getLedgerRetentionDays() {
+        return data.ledgerRetentionDays;
+    }
+
+    /**
+     * Transactions that may wait for the ledger writer before new ones are left out of the ledger
+     */
+    public static int getLedgerQueueCapacity() {
+        return data.ledgerQueueCapacity;
+    }
+
+    /**
+     * Time background jobs may use each tick, in nanoseconds
+     */
+    public static long getJobTickBudgetNanos() {
+        return data.jobTickBudgetMicros * 1000L;
+    }
 }
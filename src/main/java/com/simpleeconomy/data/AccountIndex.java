@@ -0,0 +1,72 @@
+package com.simpleeconomy.data;
+
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.IntSupplier;
+
+/**
+ * UUID -> slot lookup shared by the account stores.
+ * Lookups are optimistic and only fall back to a read lock if a new account was added meanwhile;
+ * adding an account, which happens once per player, takes the write lock.
+ */
+class AccountIndex {
+
+    private final BalanceTable slots;
+    private final StampedLock lock = new StampedLock();
+
+    AccountIndex(int expectedAccounts) {
+        this.slots = new BalanceTable(expectedAccounts);
+    }
+
+    int size() {
+        long stamp = lock.readLock();
+        try {
+            return slots.size();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    int find(long msb, long lsb) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                int slot = (int) slots.get(msb, lsb, AccountStore.NO_SLOT);
+                if (lock.validate(stamp)) {
+                    return slot;
+                }
+            } catch (ArrayIndexOutOfBoundsException ignored) {
+                // Saw the table halfway through a resize; retry under the lock
+            }
+        }
+
+        stamp = lock.readLock();
+        try {
+            return (int) slots.get(msb, lsb, AccountStore.NO_SLOT);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Find an account, or add it with a slot from the allocator. The allocator runs under the
+     * write lock, so it may assume it is the only one handing out slots.
+     */
+    int findOrAdd(long msb, long lsb, IntSupplier allocator) {
+        int slot = find(msb, lsb);
+        if (slot != AccountStore.NO_SLOT) {
+            return slot;
+        }
+
+        long stamp = lock.writeLock();
+        try {
+            slot = (int) slots.get(msb, lsb, AccountStore.NO_SLOT);
+            if (slot == AccountStore.NO_SLOT) {
+                slot = allocator.getAsInt();
+                slots.put(msb, lsb, slot);
+            }
+            return slot;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.simpleeconomy.data;
+
+/**
+ * Where account balances live: on the heap ({@link HeapAccountStore}) or in a
+ * memory-mapped file ({@link MappedAccountStore}).
+ * An account gets a slot the first time it is touched and keeps it for the rest of the session;
+ * slots are never reused, so any thread can hold one and read or compare-and-set its balance.
+ */
+public interface AccountStore {
+
+    int NO_SLOT = -1;
+
+    int size();
+
+    /**
+     * One past the highest slot handed out. Every slot below it holds an account.
+     */
+    int slotLimit();
+
+    /**
+     * Slot of an existing account, or {@link #NO_SLOT}
+     */
+    int slotOf(long msb, long lsb);
+
+    /**
+     * Slot of an account, creating it with a zero balance if needed
+     */
+    int slotFor(long msb, long lsb);
+
+    long mostBitsAt(int slot);
+
+    long leastBitsAt(int slot);
+
+    long balanceAt(int slot);
+
+    boolean compareAndSet(int slot, long expected, long value);
+
+    long getAndSet(int slot, long value);
+
+    /**
+     * Id of the last bulk job that changed the account, or 0. Server thread only.
+     */
+    int jobAt(int slot);
+
+    void setJobAt(int slot, int job);
+}
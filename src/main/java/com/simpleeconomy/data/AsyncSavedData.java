@@ -0,0 +1,94 @@
+package com.simpleeconomy.data;
+
+import com.simpleeconomy.SimpleEconomy;
+import net.minecraft.core.HolderLookup;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.NbtIo;
+import net.minecraft.nbt.NbtUtils;
+import net.minecraft.world.level.saveddata.SavedData;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * SavedData that only copies its state on the server thread during autosave.
+ * Building the NBT tree, compressing and writing happen on a single background thread,
+ * in submission order, and land on disk with an atomic rename.
+ */
+public abstract class AsyncSavedData extends SavedData {
+
+    private static final ExecutorService SAVE_EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "SimpleEconomy-Save");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicBoolean writeFailed = new AtomicBoolean();
+
+    /**
+     * State captured on the server thread. Must not share anything mutable with the live data.
+     */
+    protected interface Snapshot {
+        CompoundTag encode(CompoundTag tag);
+
+        /**
+         * Runs on the save thread once the file has been written
+         */
+        default void onWritten() {
+        }
+    }
+
+    protected abstract Snapshot snapshot(HolderLookup.Provider provider);
+
+    @Override
+    public CompoundTag save(CompoundTag tag, HolderLookup.Provider provider) {
+        return snapshot(provider).encode(tag);
+    }
+
+    @Override
+    public void save(File file, HolderLookup.Provider provider) {
+        // A failed background write is retried on the next autosave
+        if (!isDirty() && !writeFailed.getAndSet(false)) {
+            return;
+        }
+        Snapshot snapshot = snapshot(provider);
+        setDirty(false);
+        SAVE_EXECUTOR.execute(() -> write(file.toPath(), snapshot));
+    }
+
+    private void write(Path path, Snapshot snapshot) {
+        try {
+            CompoundTag root = new CompoundTag();
+            root.put("data", snapshot.encode(new CompoundTag()));
+            NbtUtils.addCurrentDataVersion(root);
+
+            Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+            NbtIo.writeCompressed(root, temp);
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            snapshot.onWritten();
+        } catch (IOException | RuntimeException e) {
+            SimpleEconomy.LOGGER.error("Could not save data {}", path, e);
+            writeFailed.set(true);
+        }
+    }
+
+    /**
+     * Block until every queued write is on disk. Called once the server has done its final save.
+     */
+    public static void awaitPendingWrites() {
+        try {
+            SAVE_EXECUTOR.submit(() -> { }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            SimpleEconomy.LOGGER.error("Failed waiting for data saves", e);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.simpleeconomy.data;
+
+import java.util.Arrays;
+
+/**
+ * Money supply and a histogram of balances, kept up to date as balances change so that
+ * totals, quantiles and the Gini coefficient cost the same however many accounts there are.
+ * Buckets are powers of two in minor units: bucket 0 holds empty accounts, bucket k balances
+ * in [2^(k-1), 2^k). Server thread only.
+ */
+public class BalanceDistribution {
+
+    private static final int BUCKETS = 64;
+
+    private final long[] counts = new long[BUCKETS];
+    private final long[] sums = new long[BUCKETS];
+    private long accounts;
+    private long supply;
+
+    void add(long balance) {
+        int bucket = bucketOf(balance);
+        counts[bucket]++;
+        sums[bucket] += balance;
+        accounts++;
+        supply += balance;
+    }
+
+    void remove(long balance) {
+        int bucket = bucketOf(balance);
+        counts[bucket]--;
+        sums[bucket] -= balance;
+        accounts--;
+        supply -= balance;
+    }
+
+    void clear() {
+        Arrays.fill(counts, 0);
+        Arrays.fill(sums, 0);
+        accounts = 0;
+        supply = 0;
+    }
+
+    public long supply() {
+        return supply;
+    }
+
+    public long accounts() {
+        return accounts;
+    }
+
+    public long mean() {
+        return accounts == 0 ? 0 : supply / accounts;
+    }
+
+    /**
+     * Balance at the given quantile (0 to 1), interpolated within its bucket
+     */
+    public long quantile(double q) {
+        if (accounts == 0) {
+            return 0;
+        }
+        double target = Math.min(Math.max(q, 0), 1) * (accounts - 1);
+        long below = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            if (counts[bucket] == 0) {
+                continue;
+            }
+            if (below + counts[bucket] > target) {
+                if (bucket == 0) {
+                    return 0;
+                }
+                long low = 1L << (bucket - 1);
+                double position = counts[bucket] == 1 ? 0.5 : Math.min(1, (target - below) / (counts[bucket] - 1));
+                return low + (long) (low * position);
+            }
+            below += counts[bucket];
+        }
+        return 0;
+    }
+
+    /**
+     * Gini coefficient from 0 (everyone equal) to 1. Accounts sharing a bucket are treated as
+     * equal, so this slightly understates inequality within a bucket.
+     */
+    public double gini() {
+        if (accounts == 0 || supply <= 0) {
+            return 0;
+        }
+        double area = 0;
+        double share = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            if (counts[bucket] == 0) {
+                continue;
+            }
+            double population = (double) counts[bucket] / accounts;
+            double next = share + (double) sums[bucket] / supply;
+            area += population * (share + next);
+            share = next;
+        }
+        return 1 - area;
+    }
+
+    private static int bucketOf(long balance) {
+        return balance <= 0 ? 0 : 64 - Long.numberOfLeadingZeros(balance);
+    }
+}
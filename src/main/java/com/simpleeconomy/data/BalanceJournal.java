@@ -0,0 +1,258 @@
+package com.simpleeconomy.data;
+
+import com.simpleeconomy.SimpleEconomy;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of balance changes written between checkpoints.
+ * Each record holds the account's new absolute balance and the last bulk job that changed it,
+ * so replaying a record twice is harmless.
+ * Files are numbered by generation; a checkpoint rotates to a new generation, and once the
+ * checkpoint is on disk every older generation can be deleted.
+ */
+public class BalanceJournal implements Closeable {
+
+    // Files start with a magic number and format. Files written before records carried the
+    // job have no header and 28-byte records without it.
+    private static final int MAGIC = 0x53454A4C; // "SEJL"
+    private static final int FORMAT_VERSION = 2;
+    private static final int HEADER_SIZE = 8;
+    // msb, lsb, balance, job, crc32 of the first 28 bytes
+    private static final int RECORD_SIZE = 32;
+    private static final int LEGACY_RECORD_SIZE = 28;
+    private static final int BUFFER_RECORDS = 2048;
+    private static final String EXTENSION = ".journal";
+
+    private final Path directory;
+    private final String baseName;
+    private final ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE * BUFFER_RECORDS);
+    private final CRC32 crc = new CRC32();
+    private FileChannel channel;
+    private long generation;
+    private int records;
+    private boolean unsynced;
+
+    @FunctionalInterface
+    public interface RecordVisitor {
+        void accept(long msb, long lsb, long balance, int job);
+    }
+
+    private BalanceJournal(Path directory, String baseName) {
+        this.directory = directory;
+        this.baseName = baseName;
+    }
+
+    /**
+     * Replay every generation at or after the checkpoint's generation, delete older ones,
+     * and start a fresh generation for new writes.
+     */
+    public static BalanceJournal open(Path directory, String baseName, long checkpointGeneration,
+                                      RecordVisitor visitor) throws IOException {
+        BalanceJournal journal = new BalanceJournal(directory, baseName);
+        Files.createDirectories(directory);
+
+        long lastGeneration = checkpointGeneration - 1;
+        for (long gen : journal.listGenerations()) {
+            if (gen < checkpointGeneration) {
+                Files.deleteIfExists(journal.pathFor(gen));
+            } else {
+                journal.records += journal.replay(gen, visitor);
+                lastGeneration = gen;
+            }
+        }
+
+        // Never append to a replayed file: its tail may be a torn write
+        journal.generation = lastGeneration + 1;
+        journal.channel = journal.openChannel(journal.generation);
+        return journal;
+    }
+
+    /**
+     * First generation number after every journal file on disk, or the given minimum if none are newer
+     */
+    public static long nextGeneration(Path directory, String baseName, long minimum) {
+        long next = minimum;
+        try {
+            for (long gen : new BalanceJournal(directory, baseName).listGenerations()) {
+                next = Math.max(next, gen + 1);
+            }
+        } catch (IOException e) {
+            SimpleEconomy.LOGGER.warn("Failed to list balance journals", e);
+        }
+        return next;
+    }
+
+    public long generation() {
+        return generation;
+    }
+
+    /**
+     * Records written since the last rotation (including any replayed on open)
+     */
+    public int recordCount() {
+        return records;
+    }
+
+    public void append(long msb, long lsb, long balance, int job) throws IOException {
+        if (buffer.remaining() < RECORD_SIZE) {
+            drain();
+        }
+        int start = buffer.position();
+        buffer.putLong(msb).putLong(lsb).putLong(balance).putInt(job);
+        crc.reset();
+        crc.update(buffer.array(), start, RECORD_SIZE - Integer.BYTES);
+        buffer.putInt((int) crc.getValue());
+        records++;
+    }
+
+    /**
+     * Write buffered records and fsync. Called once per tick so a batch of changes shares one sync.
+     */
+    public void sync() throws IOException {
+        drain();
+        if (unsynced) {
+            channel.force(false);
+            unsynced = false;
+        }
+    }
+
+    /**
+     * Close the current generation and start the next one
+     */
+    public void rotate() throws IOException {
+        sync();
+        channel.close();
+        generation++;
+        channel = openChannel(generation);
+        records = 0;
+    }
+
+    /**
+     * Delete generations a checkpoint has made obsolete
+     */
+    public void deleteBefore(long checkpointGeneration) {
+        try {
+            for (long gen : listGenerations()) {
+                if (gen < checkpointGeneration) {
+                    Files.deleteIfExists(pathFor(gen));
+                }
+            }
+        } catch (IOException e) {
+            SimpleEconomy.LOGGER.warn("Failed to delete old balance journals", e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            sync();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void drain() throws IOException {
+        if (buffer.position() == 0) {
+            return;
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+        unsynced = true;
+    }
+
+    private int replay(long gen, RecordVisitor visitor) throws IOException {
+        int count = 0;
+        ByteBuffer in = ByteBuffer.allocate(RECORD_SIZE * BUFFER_RECORDS);
+        CRC32 check = new CRC32();
+        try (FileChannel file = FileChannel.open(pathFor(gen), StandardOpenOption.READ)) {
+            int recordSize = readHeader(file) ? RECORD_SIZE : LEGACY_RECORD_SIZE;
+            while (file.read(in) > 0 || in.position() > 0) {
+                in.flip();
+                while (in.remaining() >= recordSize) {
+                    int start = in.position();
+                    long msb = in.getLong();
+                    long lsb = in.getLong();
+                    long balance = in.getLong();
+                    int job = recordSize == RECORD_SIZE ? in.getInt() : 0;
+                    check.reset();
+                    check.update(in.array(), start, recordSize - Integer.BYTES);
+                    if (in.getInt() != (int) check.getValue()) {
+                        SimpleEconomy.LOGGER.warn("Balance journal {} has a corrupt record after {} entries, ignoring the rest",
+                            pathFor(gen).getFileName(), count);
+                        return count;
+                    }
+                    visitor.accept(msb, lsb, balance, job);
+                    count++;
+                }
+                if (in.hasRemaining() && file.position() == file.size()) {
+                    // Partial record at the end of the file: a write cut short by a crash
+                    return count;
+                }
+                in.compact();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Skip the header if the file has one. A file without one is read from the start.
+     */
+    private static boolean readHeader(FileChannel file) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        while (header.hasRemaining() && file.read(header) > 0) {
+            // Keep reading until the header is complete or the file ends
+        }
+        if (!header.hasRemaining() && header.getInt(0) == MAGIC && header.getInt(4) == FORMAT_VERSION) {
+            return true;
+        }
+        file.position(0);
+        return false;
+    }
+
+    private List<Long> listGenerations() throws IOException {
+        List<Long> generations = new ArrayList<>();
+        String prefix = baseName + ".";
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, prefix + "*" + EXTENSION)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                String number = name.substring(prefix.length(), name.length() - EXTENSION.length());
+                try {
+                    generations.add(Long.parseLong(number));
+                } catch (NumberFormatException ignored) {
+                    // Not one of ours
+                }
+            }
+        }
+        generations.sort(null);
+        return generations;
+    }
+
+    private FileChannel openChannel(long gen) throws IOException {
+        FileChannel file = FileChannel.open(pathFor(gen), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(FORMAT_VERSION).flip();
+        while (header.hasRemaining()) {
+            file.write(header);
+        }
+        unsynced = true;
+        return file;
+    }
+
+    private Path pathFor(long gen) {
+        return directory.resolve(baseName + "." + gen + EXTENSION);
+    }
+}
@@ -0,0 +1,196 @@
+package com.simpleeconomy.data;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Open-addressing hash table from player UUID to a long, such as a balance or an account slot.
+ * Keys are kept as the two UUID longs and values as primitives, so an account costs
+ * three array slots instead of a UUID, a boxed Long and a map node.
+ */
+public class BalanceTable {
+
+    private static final int MIN_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private long[] mostBits;
+    private long[] leastBits;
+    private long[] values;
+    private boolean[] used;
+    private int size;
+    private int mask;
+    private int resizeThreshold;
+
+    public BalanceTable() {
+        this(MIN_CAPACITY);
+    }
+
+    public BalanceTable(int expectedSize) {
+        allocate(tableSizeFor(expectedSize));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean contains(UUID uuid) {
+        return contains(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+    }
+
+    public boolean contains(long msb, long lsb) {
+        return indexOf(msb, lsb) >= 0;
+    }
+
+    public long get(UUID uuid, long defaultValue) {
+        return get(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), defaultValue);
+    }
+
+    public long get(long msb, long lsb, long defaultValue) {
+        int index = indexOf(msb, lsb);
+        return index >= 0 ? values[index] : defaultValue;
+    }
+
+    public void put(UUID uuid, long value) {
+        put(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), value);
+    }
+
+    public void put(long msb, long lsb, long value) {
+        int index = hash(msb, lsb) & mask;
+        while (used[index]) {
+            if (mostBits[index] == msb && leastBits[index] == lsb) {
+                values[index] = value;
+                return;
+            }
+            index = (index + 1) & mask;
+        }
+
+        used[index] = true;
+        mostBits[index] = msb;
+        leastBits[index] = lsb;
+        values[index] = value;
+        if (++size > resizeThreshold) {
+            resize(used.length << 1);
+        }
+    }
+
+    public boolean remove(UUID uuid) {
+        int index = indexOf(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+        if (index < 0) {
+            return false;
+        }
+
+        // Backward-shift deletion keeps probe chains intact without tombstones
+        int hole = index;
+        int next = (hole + 1) & mask;
+        while (used[next]) {
+            int home = hash(mostBits[next], leastBits[next]) & mask;
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                mostBits[hole] = mostBits[next];
+                leastBits[hole] = leastBits[next];
+                values[hole] = values[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        used[hole] = false;
+        size--;
+        return true;
+    }
+
+    public void clear() {
+        Arrays.fill(used, false);
+        size = 0;
+    }
+
+    /**
+     * Walk every account without allocating entries.
+     * The cursor is invalidated by any put or remove on this table.
+     */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    private int indexOf(long msb, long lsb) {
+        int index = hash(msb, lsb) & mask;
+        while (used[index]) {
+            if (mostBits[index] == msb && leastBits[index] == lsb) {
+                return index;
+            }
+            index = (index + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void resize(int newCapacity) {
+        long[] oldMost = mostBits;
+        long[] oldLeast = leastBits;
+        long[] oldValues = values;
+        boolean[] oldUsed = used;
+
+        allocate(newCapacity);
+        for (int i = 0; i < oldUsed.length; i++) {
+            if (oldUsed[i]) {
+                int index = hash(oldMost[i], oldLeast[i]) & mask;
+                while (used[index]) {
+                    index = (index + 1) & mask;
+                }
+                used[index] = true;
+                mostBits[index] = oldMost[i];
+                leastBits[index] = oldLeast[i];
+                values[index] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        mostBits = new long[capacity];
+        leastBits = new long[capacity];
+        values = new long[capacity];
+        used = new boolean[capacity];
+        mask = capacity - 1;
+        resizeThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private static int tableSizeFor(int expectedSize) {
+        int needed = (int) Math.ceil(Math.max(expectedSize, 1) / LOAD_FACTOR);
+        return Math.max(MIN_CAPACITY, Integer.highestOneBit(needed - 1) << 1);
+    }
+
+    static int hash(long msb, long lsb) {
+        // Random UUIDs are already well mixed, but offline-mode ones are not
+        long h = msb * 0x9E3779B97F4A7C15L ^ lsb;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+
+    public class Cursor {
+        private int index = -1;
+
+        public boolean next() {
+            while (++index < used.length) {
+                if (used[index]) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        public long mostBits() {
+            return mostBits[index];
+        }
+
+        public long leastBits() {
+            return leastBits[index];
+        }
+
+        public UUID uuid() {
+            return new UUID(mostBits[index], leastBits[index]);
+        }
+
+        public long value() {
+            return values[index];
+        }
+    }
+}
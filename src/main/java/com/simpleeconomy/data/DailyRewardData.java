@@ -4,7 +4,6 @@ import com.simpleeconomy.SimpleEconomy;
 import net.minecraft.core.HolderLookup;
 import net.minecraft.nbt.CompoundTag;
 import net.minecraft.server.MinecraftServer;
-import net.minecraft.world.level.saveddata.SavedData;
 import net.minecraft.world.level.storage.DimensionDataStorage;
 
 import java.time.LocalDate;
@@ -13,7 +12,7 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
 
-public class DailyRewardData extends SavedData {
+public class DailyRewardData extends AsyncSavedData {
 
     private static final String DATA_NAME = SimpleEconomy.MOD_ID + "_daily_rewards";
 
@@ -34,9 +33,8 @@ public class DailyRewardData extends SavedData {
 
                 int streak = playerTag.getInt("streak");
                 long lastClaimDay = playerTag.getLong("lastClaimDay");
-                long lastInterestDay = playerTag.getLong("lastInterestDay");
 
-                data.playerData.put(uuid, new PlayerRewardInfo(streak, lastClaimDay, lastInterestDay));
+                data.playerData.put(uuid, new PlayerRewardInfo(streak, lastClaimDay));
             } catch (IllegalArgumentException e) {
                 SimpleEconomy.LOGGER.warn("Invalid UUID in daily reward data: {}", key);
             }
@@ -46,23 +44,31 @@ public class DailyRewardData extends SavedData {
     }
 
     @Override
-    public CompoundTag save(CompoundTag tag, HolderLookup.Provider provider) {
-        CompoundTag playersTag = new CompoundTag();
-
+    protected Snapshot snapshot(HolderLookup.Provider provider) {
+        // PlayerRewardInfo is mutable, so copy each entry
+        Map<UUID, PlayerRewardInfo> copy = new HashMap<>(playerData.size());
         for (Map.Entry<UUID, PlayerRewardInfo> entry : playerData.entrySet()) {
-            CompoundTag playerTag = new CompoundTag();
-            playerTag.putInt("streak", entry.getValue().streak);
-            playerTag.putLong("lastClaimDay", entry.getValue().lastClaimDay);
-            playerTag.putLong("lastInterestDay", entry.getValue().lastInterestDay);
-            playersTag.put(entry.getKey().toString(), playerTag);
+            PlayerRewardInfo info = entry.getValue();
+            copy.put(entry.getKey(), new PlayerRewardInfo(info.streak, info.lastClaimDay));
         }
 
-        tag.put("players", playersTag);
-        return tag;
+        return tag -> {
+            CompoundTag playersTag = new CompoundTag();
+
+            for (Map.Entry<UUID, PlayerRewardInfo> entry : copy.entrySet()) {
+                CompoundTag playerTag = new CompoundTag();
+                playerTag.putInt("streak", entry.getValue().streak);
+                playerTag.putLong("lastClaimDay", entry.getValue().lastClaimDay);
+                playersTag.put(entry.getKey().toString(), playerTag);
+            }
+
+            tag.put("players", playersTag);
+            return tag;
+        };
     }
 
     public PlayerRewardInfo getPlayerInfo(UUID playerUUID) {
-        return playerData.computeIfAbsent(playerUUID, k -> new PlayerRewardInfo(0, 0, 0));
+        return playerData.computeIfAbsent(playerUUID, k -> new PlayerRewardInfo(0, 0));
     }
 
     public void updatePlayerInfo(UUID playerUUID, PlayerRewardInfo info) {
@@ -90,12 +96,10 @@ public class DailyRewardData extends SavedData {
     public static class PlayerRewardInfo {
         public int streak;
         public long lastClaimDay;
-        public long lastInterestDay;
 
-        public PlayerRewardInfo(int streak, long lastClaimDay, long lastInterestDay) {
+        public PlayerRewardInfo(int streak, long lastClaimDay) {
             this.streak = streak;
             this.lastClaimDay = lastClaimDay;
-            this.lastInterestDay = lastInterestDay;
         }
     }
 }
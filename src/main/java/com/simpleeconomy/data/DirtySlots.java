@@ -0,0 +1,67 @@
+package com.simpleeconomy.data;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Concurrent bitmap of account slots changed since the last drain.
+ * Any thread may mark; draining is done by one thread at a time.
+ */
+class DirtySlots {
+
+    private static final int PAGE_SHIFT = 16;
+    private static final int WORDS_PER_PAGE = (1 << PAGE_SHIFT) >>> 6;
+    private static final int MAX_PAGES = 1 << (31 - PAGE_SHIFT);
+
+    private static final VarHandle WORD = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private final AtomicReferenceArray<long[]> pages = new AtomicReferenceArray<>(MAX_PAGES);
+    private final AtomicInteger highestPage = new AtomicInteger(-1);
+
+    @FunctionalInterface
+    interface SlotVisitor {
+        void accept(int slot);
+    }
+
+    void mark(int slot) {
+        int pageIndex = slot >>> PAGE_SHIFT;
+        long[] page = pages.get(pageIndex);
+        if (page == null) {
+            pages.compareAndSet(pageIndex, null, new long[WORDS_PER_PAGE]);
+            page = pages.get(pageIndex);
+            highestPage.accumulateAndGet(pageIndex, Math::max);
+        }
+        int bit = slot & ((1 << PAGE_SHIFT) - 1);
+        WORD.getAndBitwiseOr(page, bit >>> 6, 1L << bit);
+    }
+
+    /**
+     * Visit and clear every marked slot. A slot marked again while this runs is either
+     * visited now or left marked for the next drain.
+     */
+    int drain(SlotVisitor visitor) {
+        int visited = 0;
+        int highest = highestPage.get();
+        for (int p = 0; p <= highest; p++) {
+            long[] page = pages.get(p);
+            if (page == null) {
+                continue;
+            }
+            for (int w = 0; w < WORDS_PER_PAGE; w++) {
+                if ((long) WORD.getVolatile(page, w) == 0) {
+                    continue;
+                }
+                long bits = (long) WORD.getAndSet(page, w, 0L);
+                int base = (p << PAGE_SHIFT) + (w << 6);
+                while (bits != 0) {
+                    visitor.accept(base + Long.numberOfTrailingZeros(bits));
+                    bits &= bits - 1;
+                    visited++;
+                }
+            }
+        }
+        return visited;
+    }
+}
@@ -0,0 +1,192 @@
+package com.simpleeconomy.data;
+
+import net.minecraft.nbt.CompoundTag;
+
+import java.util.Arrays;
+
+/**
+ * One player's money in and out per transaction type, in hourly buckets for the last two days
+ * and daily buckets for the month before that. Hours fold into their day as they age, so the
+ * totals for any recent period are a sum over a bounded number of buckets however many
+ * transactions went into them. Only types and hours that saw activity take up a bucket.
+ * Server thread only.
+ */
+class EarningsRollup {
+
+    static final int HOURS_KEPT = 48;
+    static final int DAYS_KEPT = 31;
+    private static final long MILLIS_PER_HOUR = 3_600_000L;
+
+    private final Buckets hours;
+    private final Buckets days;
+
+    EarningsRollup() {
+        this(new Buckets(), new Buckets());
+    }
+
+    private EarningsRollup(Buckets hours, Buckets days) {
+        this.hours = hours;
+        this.days = days;
+    }
+
+    /**
+     * Count an amount toward its hour. An entry logged late counts toward the newest hour, so
+     * buckets stay in time order.
+     */
+    void add(TransactionLog.TransactionType type, long amount, long timestamp) {
+        long hour = Math.max(Math.floorDiv(timestamp, MILLIS_PER_HOUR), hours.newest());
+        compact(hour);
+        hours.add(hour, type.ordinal(), Math.max(amount, 0), Math.max(-amount, 0));
+    }
+
+    /**
+     * Add every bucket from {@code since} on to the per-type totals. Within the last two days
+     * this is exact to the hour; before that whole days are counted.
+     */
+    void sum(long since, long[] inflow, long[] outflow) {
+        long sinceHour = Math.floorDiv(since, MILLIS_PER_HOUR);
+        hours.sum(sinceHour, inflow, outflow);
+        days.sum(Math.floorDiv(sinceHour, 24), inflow, outflow);
+    }
+
+    boolean isEmpty() {
+        return hours.count == 0 && days.count == 0;
+    }
+
+    /**
+     * Fold hours older than two days into their days and drop days past the month
+     */
+    void compact(long hour) {
+        int folded = 0;
+        while (folded < hours.count && hours.starts[folded] <= hour - HOURS_KEPT) {
+            days.add(Math.floorDiv(hours.starts[folded], 24), hours.types[folded],
+                hours.inflow[folded], hours.outflow[folded]);
+            folded++;
+        }
+        hours.removeFirst(folded);
+
+        long day = Math.floorDiv(hour, 24);
+        int expired = 0;
+        while (expired < days.count && days.starts[expired] <= day - DAYS_KEPT) {
+            expired++;
+        }
+        days.removeFirst(expired);
+    }
+
+    EarningsRollup copy() {
+        return new EarningsRollup(hours.copy(), days.copy());
+    }
+
+    CompoundTag save() {
+        CompoundTag tag = new CompoundTag();
+        tag.put("hours", hours.save());
+        tag.put("days", days.save());
+        return tag;
+    }
+
+    static EarningsRollup load(CompoundTag tag) {
+        return new EarningsRollup(Buckets.load(tag.getCompound("hours")), Buckets.load(tag.getCompound("days")));
+    }
+
+    /**
+     * Totals per period and type, oldest first, as parallel arrays
+     */
+    private static final class Buckets {
+        private long[] starts;
+        private byte[] types;
+        private long[] inflow;
+        private long[] outflow;
+        private int count;
+
+        Buckets() {
+            this(new long[4], new byte[4], new long[4], new long[4], 0);
+        }
+
+        private Buckets(long[] starts, byte[] types, long[] inflow, long[] outflow, int count) {
+            this.starts = starts;
+            this.types = types;
+            this.inflow = inflow;
+            this.outflow = outflow;
+            this.count = count;
+        }
+
+        long newest() {
+            return count == 0 ? Long.MIN_VALUE : starts[count - 1];
+        }
+
+        void add(long start, int type, long in, long out) {
+            // Buckets for the newest period are at the end, at most one per type
+            for (int i = count - 1; i >= 0 && starts[i] == start; i--) {
+                if (types[i] == type) {
+                    inflow[i] += in;
+                    outflow[i] += out;
+                    return;
+                }
+            }
+            if (count == starts.length) {
+                int capacity = count * 2;
+                starts = Arrays.copyOf(starts, capacity);
+                types = Arrays.copyOf(types, capacity);
+                inflow = Arrays.copyOf(inflow, capacity);
+                outflow = Arrays.copyOf(outflow, capacity);
+            }
+            starts[count] = start;
+            types[count] = (byte) type;
+            inflow[count] = in;
+            outflow[count] = out;
+            count++;
+        }
+
+        void sum(long since, long[] totalIn, long[] totalOut) {
+            for (int i = count - 1; i >= 0 && starts[i] >= since; i--) {
+                totalIn[types[i]] += inflow[i];
+                totalOut[types[i]] += outflow[i];
+            }
+        }
+
+        void removeFirst(int removed) {
+            if (removed == 0) {
+                return;
+            }
+            count -= removed;
+            System.arraycopy(starts, removed, starts, 0, count);
+            System.arraycopy(types, removed, types, 0, count);
+            System.arraycopy(inflow, removed, inflow, 0, count);
+            System.arraycopy(outflow, removed, outflow, 0, count);
+        }
+
+        Buckets copy() {
+            return new Buckets(Arrays.copyOf(starts, count), Arrays.copyOf(types, count),
+                Arrays.copyOf(inflow, count), Arrays.copyOf(outflow, count), count);
+        }
+
+        CompoundTag save() {
+            CompoundTag tag = new CompoundTag();
+            tag.putLongArray("starts", Arrays.copyOf(starts, count));
+            tag.putByteArray("types", Arrays.copyOf(types, count));
+            tag.putLongArray("inflow", Arrays.copyOf(inflow, count));
+            tag.putLongArray("outflow", Arrays.copyOf(outflow, count));
+            return tag;
+        }
+
+        static Buckets load(CompoundTag tag) {
+            long[] starts = tag.getLongArray("starts");
+            byte[] types = tag.getByteArray("types");
+            long[] inflow = tag.getLongArray("inflow");
+            long[] outflow = tag.getLongArray("outflow");
+            int count = starts.length;
+            if (types.length != count || inflow.length != count || outflow.length != count) {
+                throw new IllegalArgumentException("Earnings buckets differ in length");
+            }
+            for (byte type : types) {
+                if (type < 0 || type >= TransactionLog.TransactionType.values().length) {
+                    throw new IllegalArgumentException("Unknown transaction type " + type);
+                }
+            }
+            // Room to add to without copying straight away
+            int capacity = Math.max(4, count);
+            return new Buckets(Arrays.copyOf(starts, capacity), Arrays.copyOf(types, capacity),
+                Arrays.copyOf(inflow, capacity), Arrays.copyOf(outflow, capacity), count);
+        }
+    }
+}
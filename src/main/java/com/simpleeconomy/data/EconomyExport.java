@@ -0,0 +1,293 @@
+package com.simpleeconomy.data;
+
+import com.simpleeconomy.SimpleEconomy;
+import com.simpleeconomy.economy.EconomyService;
+import com.simpleeconomy.economy.Money;
+import com.simpleeconomy.shop.Shop;
+import com.simpleeconomy.shop.ShopItem;
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.level.storage.LevelResource;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Writes balances, recent transactions or shop listings to a CSV or JSON Lines file for
+ * offline analysis. The data is copied on the server thread, as for an autosave, and then
+ * written row by row from a virtual thread, so the server never waits on the disk and the
+ * output is never held in memory. The file appears under its final name only once complete.
+ */
+public final class EconomyExport {
+
+    private static final String DIRECTORY = SimpleEconomy.MOD_ID + "_exports";
+    private static final DateTimeFormatter FILE_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm-ss");
+    private static final AtomicBoolean RUNNING = new AtomicBoolean();
+
+    public enum Dataset {
+        BALANCES,
+        TRANSACTIONS,
+        SHOPS
+    }
+
+    public enum Format {
+        CSV,
+        JSONL
+    }
+
+    /**
+     * A finished export: where it went and how many records it holds
+     */
+    public record Result(Path file, long rows) {
+    }
+
+    private EconomyExport() {
+    }
+
+    /**
+     * Copy the dataset and start writing it out. Completes with the file once written, or
+     * fails if another export is still running. Server thread only.
+     */
+    public static CompletableFuture<Result> start(MinecraftServer server, Dataset dataset, Format format) {
+        if (!RUNNING.compareAndSet(false, true)) {
+            return CompletableFuture.failedFuture(new IllegalStateException("An export is already running"));
+        }
+        CompletableFuture<Result> result = new CompletableFuture<>();
+        try {
+            EconomyService service = EconomyService.get();
+            RowSource source = switch (dataset) {
+                case BALANCES -> balances(service.economy().copyBalances());
+                case TRANSACTIONS -> transactions(service.transactions().copyHistory());
+                case SHOPS -> shops(copyShops(service.shops()));
+            };
+            String name = dataset.name().toLowerCase(Locale.ROOT) + "-" + LocalDateTime.now().format(FILE_TIME)
+                + "." + format.name().toLowerCase(Locale.ROOT);
+            Path file = server.getWorldPath(LevelResource.ROOT).resolve(DIRECTORY).resolve(name);
+
+            Thread.ofVirtual().name("SimpleEconomy-Export").start(() -> {
+                try {
+                    result.complete(new Result(file, write(file, format, source)));
+                } catch (IOException | RuntimeException e) {
+                    result.completeExceptionally(e);
+                } finally {
+                    RUNNING.set(false);
+                }
+            });
+        } catch (RuntimeException e) {
+            RUNNING.set(false);
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    private static long write(Path file, Format format, RowSource source) throws IOException {
+        Files.createDirectories(file.getParent());
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        long rows;
+        try (BufferedWriter writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+            Rows out = format == Format.CSV ? new CsvRows(writer) : new JsonRows(writer);
+            source.writeTo(out);
+            rows = out.count;
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE);
+        return rows;
+    }
+
+    private static List<Shop> copyShops(ShopSavedData shops) {
+        List<Shop> live = shops.getAllShops();
+        List<Shop> copy = new ArrayList<>(live.size());
+        for (Shop shop : live) {
+            copy.add(shop.copy());
+        }
+        return copy;
+    }
+
+    private static RowSource balances(long[] triples) {
+        return out -> {
+            out.header("player", "balance");
+            for (int i = 0; i + 2 < triples.length; i += 3) {
+                out.row(new UUID(triples[i], triples[i + 1]), money(triples[i + 2]));
+            }
+        };
+    }
+
+    /**
+     * One row per entry, each player's oldest first
+     */
+    private static RowSource transactions(Map<UUID, TransactionRing> history) {
+        return out -> {
+            out.header("player", "time", "type", "amount", "other_party", "description");
+            for (Map.Entry<UUID, TransactionRing> entry : history.entrySet()) {
+                List<TransactionLog.Transaction> transactions = entry.getValue().newestFirst();
+                for (int i = transactions.size() - 1; i >= 0; i--) {
+                    TransactionLog.Transaction t = transactions.get(i);
+                    out.row(entry.getKey(), Instant.ofEpochMilli(t.timestamp()), t.type(), money(t.amount()),
+                        t.otherParty(), t.description());
+                }
+            }
+        };
+    }
+
+    /**
+     * One row per listing, with its shop's details repeated
+     */
+    private static RowSource shops(List<Shop> shops) {
+        return out -> {
+            out.header("shop", "shop_name", "owner", "owner_name", "featured", "listing", "item", "item_name",
+                "count", "price", "stock", "sold");
+            for (Shop shop : shops) {
+                for (ShopItem item : shop.getItems()) {
+                    ItemStack stack = item.getItemStack();
+                    out.row(shop.getShopId(), shop.getShopName(), shop.getOwnerUUID(), shop.getOwnerName(),
+                        shop.isFeatured(), item.getItemId(), BuiltInRegistries.ITEM.getKey(stack.getItem()),
+                        stack.getHoverName().getString(), stack.getCount(), money(item.getPrice()),
+                        item.isInfiniteStock() ? null : item.getStock(), item.getTotalSold());
+                }
+            }
+        };
+    }
+
+    /**
+     * Plain decimal with no grouping, so spreadsheets read it as a number
+     */
+    private static BigDecimal money(long amount) {
+        return BigDecimal.valueOf(amount, Money.DECIMALS);
+    }
+
+    @FunctionalInterface
+    private interface RowSource {
+        void writeTo(Rows out) throws IOException;
+    }
+
+    /**
+     * Formats rows into one reused buffer. Numbers and booleans are written bare, null as an
+     * empty field, and anything else as text.
+     */
+    private abstract static class Rows {
+        protected final Writer writer;
+        protected final StringBuilder line = new StringBuilder(256);
+        protected String[] columns;
+        long count;
+
+        Rows(Writer writer) {
+            this.writer = writer;
+        }
+
+        void header(String... columns) throws IOException {
+            this.columns = columns;
+        }
+
+        void row(Object... values) throws IOException {
+            line.setLength(0);
+            format(values);
+            line.append('\n');
+            writer.append(line);
+            count++;
+        }
+
+        protected abstract void format(Object[] values);
+    }
+
+    private static final class CsvRows extends Rows {
+        CsvRows(Writer writer) {
+            super(writer);
+        }
+
+        @Override
+        void header(String... columns) throws IOException {
+            super.header(columns);
+            writer.write(String.join(",", columns));
+            writer.write('\n');
+        }
+
+        @Override
+        protected void format(Object[] values) {
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    line.append(',');
+                }
+                Object value = values[i];
+                if (value == null) {
+                    continue;
+                }
+                String text = value instanceof BigDecimal decimal ? decimal.toPlainString() : value.toString();
+                if (text.indexOf(',') >= 0 || text.indexOf('"') >= 0 || text.indexOf('\n') >= 0 || text.indexOf('\r') >= 0) {
+                    line.append('"').append(text.replace("\"", "\"\"")).append('"');
+                } else {
+                    line.append(text);
+                }
+            }
+        }
+    }
+
+    private static final class JsonRows extends Rows {
+        JsonRows(Writer writer) {
+            super(writer);
+        }
+
+        @Override
+        protected void format(Object[] values) {
+            line.append('{');
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    line.append(',');
+                }
+                quote(columns[i]);
+                line.append(':');
+                Object value = values[i];
+                if (value == null) {
+                    line.append("null");
+                } else if (value instanceof BigDecimal decimal) {
+                    line.append(decimal.toPlainString());
+                } else if (value instanceof Number || value instanceof Boolean) {
+                    line.append(value);
+                } else {
+                    quote(value.toString());
+                }
+            }
+            line.append('}');
+        }
+
+        private void quote(String text) {
+            line.append('"');
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                switch (c) {
+                    case '"' -> line.append("\\\"");
+                    case '\\' -> line.append("\\\\");
+                    case '\n' -> line.append("\\n");
+                    case '\r' -> line.append("\\r");
+                    case '\t' -> line.append("\\t");
+                    default -> {
+                        if (c < 0x20) {
+                            line.append(String.format("\\u%04x", (int) c));
+                        } else {
+                            line.append(c);
+                        }
+                    }
+                }
+            }
+            line.append('"');
+        }
+    }
+}
@@ -1,70 +1,744 @@
 package com.simpleeconomy.data;
 
 import com.simpleeconomy.SimpleEconomy;
+import com.simpleeconomy.config.ModConfig;
+import com.simpleeconomy.economy.Money;
 import net.minecraft.core.HolderLookup;
 import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.Tag;
 import net.minecraft.server.MinecraftServer;
-import net.minecraft.world.level.saveddata.SavedData;
 import net.minecraft.world.level.storage.DimensionDataStorage;
+import net.minecraft.world.level.storage.LevelResource;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
 import java.util.UUID;
+import java.util.function.LongUnaryOperator;
 
-public class EconomySavedData extends SavedData {
+/**
+ * Player balances. Reading and changing a balance is safe from any thread: each account is a
+ * cell updated with compare-and-set, and changed accounts are flagged in a concurrent bitmap.
+ * A cell holds a balance together with the interest epoch it was written in (see
+ * {@link InterestIndex}); cells are stored and journaled as they are.
+ * The server thread drains those flags at the end of every tick to update the leaderboard and
+ * journal, which are not thread-safe themselves.
+ */
+public class EconomySavedData extends AsyncSavedData {
 
     private static final String DATA_NAME = SimpleEconomy.MOD_ID + "_economy";
 
-    private final Map<UUID, Double> balances = new HashMap<>();
+    private static final int MIN_CHECKPOINT_RECORDS = 10_000;
+
+    private static final String STORAGE_NBT = "nbt";
+    private static final String STORAGE_MAPPED = "mapped";
+
+    /**
+     * Largest balance an account can hold
+     */
+    public static final long MAX_BALANCE = InterestIndex.MAX_BALANCE;
+
+    private AccountStore accounts;
+    private final DirtySlots changed = new DirtySlots();
+
+    // Server thread only: the balance each listed slot has in the leaderboard
+    private final LeaderboardIndex leaderboard = new LeaderboardIndex();
+    private final BitSet listed = new BitSet();
+    // Server thread only: slots a bulk job changed since the last publish
+    private final BitSet stamped = new BitSet();
+    private int lastJob;
+    private long[] published = new long[0];
+    private final BalanceDistribution distribution = new BalanceDistribution();
+
+    private volatile InterestIndex interest = InterestIndex.NONE;
+    private long interestWeek;
+
+    private BalanceJournal journal;
+    private MappedAccountStore mappedStore;
+    private boolean attached;
+    private long journalGeneration;
+    // Where the accounts were when this data was last saved
+    private String storedIn = STORAGE_NBT;
 
     public EconomySavedData() {
+        this.accounts = new HeapAccountStore();
     }
 
-    public static EconomySavedData load(CompoundTag tag, HolderLookup.Provider provider) {
-        EconomySavedData data = new EconomySavedData();
+    private EconomySavedData(int expectedAccounts) {
+        this.accounts = new HeapAccountStore(expectedAccounts);
+    }
 
-        CompoundTag balancesTag = tag.getCompound("balances");
-        for (String key : balancesTag.getAllKeys()) {
-            try {
-                UUID uuid = UUID.fromString(key);
-                double balance = balancesTag.getDouble(key);
-                data.balances.put(uuid, balance);
-            } catch (IllegalArgumentException e) {
-                SimpleEconomy.LOGGER.warn("Invalid UUID in economy data: {}", key);
+    public static EconomySavedData load(CompoundTag tag, HolderLookup.Provider provider) {
+        EconomySavedData data;
+        // Saves from before interest epochs hold plain balances, which only need clamping
+        boolean packed = tag.contains("interest", Tag.TAG_COMPOUND);
+        if (tag.contains("accounts", Tag.TAG_LONG_ARRAY)) {
+            // msb, lsb, cell triples, and the last job to change each account
+            long[] accounts = tag.getLongArray("accounts");
+            int[] jobs = tag.getIntArray("jobs");
+            data = new EconomySavedData(accounts.length / 3);
+            for (int i = 0; i + 2 < accounts.length; i += 3) {
+                long cell = packed ? accounts[i + 2] : InterestIndex.clamp(accounts[i + 2]);
+                put(data.accounts, accounts[i], accounts[i + 1], cell, i / 3 < jobs.length ? jobs[i / 3] : 0);
             }
+        } else {
+            // Written before the journal existed: one entry per UUID string
+            CompoundTag balancesTag = tag.getCompound("balances");
+            data = new EconomySavedData(balancesTag.size());
+            for (String key : balancesTag.getAllKeys()) {
+                try {
+                    UUID uuid = UUID.fromString(key);
+                    long balance = InterestIndex.clamp(Money.read(balancesTag, key));
+                    put(data.accounts, uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), balance, 0);
+                } catch (IllegalArgumentException e) {
+                    SimpleEconomy.LOGGER.warn("Invalid UUID in economy data: {}", key);
+                }
+            }
+        }
+        data.journalGeneration = tag.getLong("journalGeneration");
+        if (packed) {
+            data.interest = InterestIndex.load(tag.getCompound("interest"));
+        }
+        data.interestWeek = tag.getLong("interestWeek");
+        if (tag.getString("storage").equals(STORAGE_MAPPED)) {
+            // Accounts are in the mapped file and get picked up when storage is attached
+            data.storedIn = STORAGE_MAPPED;
         }
 
         return data;
     }
 
+    /**
+     * Checkpoint. The journal is rotated first so the snapshot covers every older generation,
+     * and those are only deleted once the snapshot is safely on disk.
+     * In mapped mode the accounts are already on disk and only the metadata is saved.
+     */
     @Override
-    public CompoundTag save(CompoundTag tag, HolderLookup.Provider provider) {
-        CompoundTag balancesTag = new CompoundTag();
-        for (Map.Entry<UUID, Double> entry : balances.entrySet()) {
-            balancesTag.putDouble(entry.getKey().toString(), entry.getValue());
+    protected Snapshot snapshot(HolderLookup.Provider provider) {
+        publish();
+        InterestIndex index = interest;
+        long week = interestWeek;
+        if (mappedStore != null) {
+            mappedStore.sync();
+            long generation = journalGeneration;
+            return tag -> {
+                tag.putString("storage", STORAGE_MAPPED);
+                tag.putLong("journalGeneration", generation);
+                saveInterest(tag, index, week);
+                return tag;
+            };
+        }
+
+        if (journal != null) {
+            try {
+                journal.rotate();
+                journalGeneration = journal.generation();
+            } catch (IOException e) {
+                abandonJournal("Failed to rotate balance journal", e);
+            }
+        }
+
+        // Balances changed by other threads from here on are still flagged, so they reach
+        // the new journal generation at the next publish
+        int limit = accounts.slotLimit();
+        long[] triples = new long[limit * 3];
+        int[] jobs = new int[limit];
+        int i = 0;
+        for (int slot = 0; slot < limit; slot++) {
+            long cell = accounts.balanceAt(slot);
+            if (!listed.get(slot) && index.settle(cell) == 0) {
+                // Purged, or created since the publish above and journaled at the next one
+                continue;
+            }
+            jobs[i / 3] = accounts.jobAt(slot);
+            triples[i++] = accounts.mostBitsAt(slot);
+            triples[i++] = accounts.leastBitsAt(slot);
+            triples[i++] = cell;
+        }
+        long[] saved = i == triples.length ? triples : Arrays.copyOf(triples, i);
+        int[] savedJobs = i == triples.length ? jobs : Arrays.copyOf(jobs, i / 3);
+        long checkpointGeneration = journalGeneration;
+        BalanceJournal checkpointed = journal;
+
+        return new Snapshot() {
+            @Override
+            public CompoundTag encode(CompoundTag tag) {
+                tag.putString("storage", STORAGE_NBT);
+                tag.putLongArray("accounts", saved);
+                tag.putIntArray("jobs", savedJobs);
+                tag.putLong("journalGeneration", checkpointGeneration);
+                saveInterest(tag, index, week);
+                return tag;
+            }
+
+            @Override
+            public void onWritten() {
+                if (checkpointed != null) {
+                    checkpointed.deleteBefore(checkpointGeneration);
+                }
+            }
+        };
+    }
+
+    public long getBalance(UUID playerUUID) {
+        int slot = accounts.slotOf(playerUUID.getMostSignificantBits(), playerUUID.getLeastSignificantBits());
+        return slot == AccountStore.NO_SLOT ? 0 : interest.settle(accounts.balanceAt(slot));
+    }
+
+    /**
+     * Set a balance, clamped to zero and {@link #MAX_BALANCE}. Returns the change made, taken
+     * in the same step as the set, so it is right even if another thread moved the balance.
+     */
+    public long setBalance(UUID playerUUID, long amount) {
+        long clamped = Math.max(0, Math.min(amount, MAX_BALANCE));
+        return updateBalanceAt(slotFor(playerUUID), current -> clamped);
+    }
+
+    /**
+     * Add to a balance. Throws ArithmeticException, leaving the balance alone, if it would go
+     * past {@link #MAX_BALANCE}.
+     */
+    public void credit(UUID playerUUID, long amount) {
+        add(slotFor(playerUUID), amount);
+    }
+
+    /**
+     * Take from a balance if it covers the amount
+     */
+    public boolean debit(UUID playerUUID, long amount) {
+        return take(accounts.slotOf(playerUUID.getMostSignificantBits(), playerUUID.getLeastSignificantBits()), amount);
+    }
+
+    /**
+     * Apply net changes to several balances, all or none of them, without a global lock.
+     * Credits are checked for room first, then debits are taken and handed back if any one is
+     * not covered, and credits are only made once every debit went through. A credit is only
+     * undone if another thread fills its account in between, and then it is taken back like a
+     * debit. Other threads can briefly see money in flight, but never a negative balance.
+     */
+    public boolean apply(UUID[] players, long[] deltas) {
+        int[] slots = new int[players.length];
+        for (int i = 0; i < players.length; i++) {
+            if (deltas[i] <= 0) {
+                continue;
+            }
+            slots[i] = slotFor(players[i]);
+            if (interest.settle(accounts.balanceAt(slots[i])) > MAX_BALANCE - deltas[i]) {
+                return false;
+            }
+        }
+        for (int i = 0; i < players.length; i++) {
+            if (deltas[i] >= 0) {
+                continue;
+            }
+            slots[i] = accounts.slotOf(players[i].getMostSignificantBits(), players[i].getLeastSignificantBits());
+            if (!take(slots[i], -deltas[i])) {
+                refundDebits(slots, deltas, i);
+                return false;
+            }
+        }
+        for (int i = 0; i < players.length; i++) {
+            if (deltas[i] <= 0) {
+                continue;
+            }
+            try {
+                add(slots[i], deltas[i]);
+            } catch (ArithmeticException e) {
+                // Another thread filled the account since the check above
+                reclaimCredits(players, slots, deltas, i);
+                refundDebits(slots, deltas, players.length);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Bring the leaderboard and journal up to date with balances changed since the last call.
+     * Server thread only.
+     */
+    public void publish() {
+        int drained = changed.drain(this::publishSlot);
+        if (drained == 0 || mappedStore != null) {
+            return;
+        }
+        // Compact once the journal is as long as the account list, so checkpoint cost
+        // stays proportional to the number of changes
+        if (journal == null || journal.recordCount() >= Math.max(MIN_CHECKPOINT_RECORDS, accounts.size())) {
+            setDirty();
+        }
+    }
+
+    /**
+     * Publish this tick's balance changes and make them durable
+     */
+    public void syncStorage() {
+        publish();
+        if (mappedStore != null) {
+            mappedStore.sync();
+        } else if (journal != null) {
+            try {
+                journal.sync();
+            } catch (IOException e) {
+                abandonJournal("Failed to sync balance journal", e);
+            }
+        }
+    }
+
+    /**
+     * Release the journal or account file before the final save. Without a journal that save
+     * records a generation past it, since anything changed afterwards is only in the snapshot.
+     */
+    public void closeStorage() {
+        if (mappedStore != null) {
+            try {
+                mappedStore.close();
+            } catch (IOException e) {
+                SimpleEconomy.LOGGER.error("Failed to close account file", e);
+            }
+            return;
+        }
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.close();
+        } catch (IOException e) {
+            SimpleEconomy.LOGGER.error("Failed to close balance journal", e);
+        }
+        journalGeneration = journal.generation() + 1;
+        journal = null;
+        setDirty();
+    }
+
+    /**
+     * A payout landing mid-loop is harmless: the cell is stamped with the epoch its balance was
+     * settled to, so the payout still applies to it on the next read
+     */
+    private void add(int slot, long amount) {
+        long cell;
+        InterestIndex index;
+        long next;
+        do {
+            index = interest;
+            cell = accounts.balanceAt(slot);
+            next = checked(Money.add(index.settle(cell), amount));
+        } while (!accounts.compareAndSet(slot, cell, index.pack(next)));
+        changed.mark(slot);
+    }
+
+    private boolean take(int slot, long amount) {
+        if (slot == AccountStore.NO_SLOT) {
+            return amount == 0;
+        }
+        long cell;
+        InterestIndex index;
+        long current;
+        do {
+            index = interest;
+            cell = accounts.balanceAt(slot);
+            current = index.settle(cell);
+            if (current < amount) {
+                return false;
+            }
+        } while (!accounts.compareAndSet(slot, cell, index.pack(current - amount)));
+        changed.mark(slot);
+        return true;
+    }
+
+    private static long checked(long balance) {
+        if (balance > MAX_BALANCE) {
+            throw new ArithmeticException("Balance above maximum");
+        }
+        return balance;
+    }
+
+    private static void saveInterest(CompoundTag tag, InterestIndex index, long week) {
+        CompoundTag interestTag = new CompoundTag();
+        index.save(interestTag);
+        tag.put("interest", interestTag);
+        tag.putLong("interestWeek", week);
+    }
+
+    /**
+     * Hand back the debits taken from the first {@code count} slots
+     */
+    private void refundDebits(int[] slots, long[] deltas, int count) {
+        for (int i = 0; i < count; i++) {
+            if (deltas[i] < 0) {
+                add(slots[i], -deltas[i]);
+            }
+        }
+    }
+
+    /**
+     * Take back the credits made to the first {@code count} slots, the way a debit is taken,
+     * so a credit already spent is never pushed below zero
+     */
+    private void reclaimCredits(UUID[] players, int[] slots, long[] deltas, int count) {
+        for (int i = 0; i < count; i++) {
+            if (deltas[i] > 0 && !take(slots[i], deltas[i])) {
+                SimpleEconomy.LOGGER.error("Could not take back {} from {} after a failed settlement; it was already spent",
+                    Money.format(deltas[i]), players[i]);
+            }
+        }
+    }
+
+    private int slotFor(UUID playerUUID) {
+        return accounts.slotFor(playerUUID.getMostSignificantBits(), playerUUID.getLeastSignificantBits());
+    }
+
+    private static void put(AccountStore store, long msb, long lsb, long balance, int job) {
+        int slot = store.slotFor(msb, lsb);
+        store.getAndSet(slot, balance);
+        store.setJobAt(slot, job);
+    }
+
+    private void publishSlot(int slot) {
+        long msb = accounts.mostBitsAt(slot);
+        long lsb = accounts.leastBitsAt(slot);
+        long cell = accounts.balanceAt(slot);
+        long balance = interest.settle(cell);
+        if (slot >= published.length) {
+            published = Arrays.copyOf(published, Math.max(slot + 1, published.length * 2));
+        }
+        // A job's change still needs journaling if the balance is back where it was
+        boolean restamped = stamped.get(slot);
+        if (listed.get(slot)) {
+            if (published[slot] == balance && !restamped) {
+                return;
+            }
+            leaderboard.remove(msb, lsb, published[slot]);
+            distribution.remove(published[slot]);
+        }
+        leaderboard.insert(msb, lsb, balance);
+        distribution.add(balance);
+        published[slot] = balance;
+        listed.set(slot);
+
+        stamped.clear(slot);
+        if (journal != null) {
+            try {
+                journal.append(msb, lsb, cell, accounts.jobAt(slot));
+            } catch (IOException e) {
+                abandonJournal("Failed to write balance journal", e);
+            }
+        }
+    }
+
+    private void rebuildLeaderboard() {
+        leaderboard.clear();
+        distribution.clear();
+        listed.clear();
+        int limit = accounts.slotLimit();
+        published = new long[limit];
+        for (int slot = 0; slot < limit; slot++) {
+            long balance = interest.settle(accounts.balanceAt(slot));
+            leaderboard.insert(accounts.mostBitsAt(slot), accounts.leastBitsAt(slot), balance);
+            distribution.add(balance);
+            published[slot] = balance;
+            lastJob = Math.max(lastJob, accounts.jobAt(slot));
+        }
+        listed.set(0, limit);
+    }
+
+    private static void copy(AccountStore from, AccountStore to) {
+        int limit = from.slotLimit();
+        for (int slot = 0; slot < limit; slot++) {
+            put(to, from.mostBitsAt(slot), from.leastBitsAt(slot), from.balanceAt(slot), from.jobAt(slot));
+        }
+    }
+
+    /**
+     * Connect to the on-disk storage the config asks for, moving accounts over if the
+     * mode changed since the last save.
+     */
+    private void attach(Path directory) {
+        attached = true;
+        Path accountFile = directory.resolve(DATA_NAME + ".accounts");
+
+        if (storedIn.equals(STORAGE_MAPPED)) {
+            MappedAccountStore store;
+            try {
+                store = MappedAccountStore.open(accountFile, false);
+            } catch (IOException e) {
+                // Carrying on would save every balance as zero
+                throw new UncheckedIOException("Failed to open account file " + accountFile, e);
+            }
+            if (ModConfig.isMappedStorage()) {
+                mappedStore = store;
+                accounts = store;
+                rebuildLeaderboard();
+                SimpleEconomy.LOGGER.info("Opened account file with {} accounts", store.size());
+                return;
+            }
+
+            // Back to NBT. The file stays until it is next truncated, so a crash before
+            // the next save still finds it.
+            HeapAccountStore heap = new HeapAccountStore(store.size());
+            copy(store, heap);
+            accounts = heap;
+            try {
+                store.close();
+            } catch (IOException e) {
+                SimpleEconomy.LOGGER.warn("Failed to close account file", e);
+            }
+            storedIn = STORAGE_NBT;
+            SimpleEconomy.LOGGER.info("Moved {} accounts from the account file to the world save", heap.size());
+            openJournal(directory);
+            rebuildLeaderboard();
+            setDirty();
+            return;
+        }
+
+        openJournal(directory);
+        if (ModConfig.isMappedStorage()) {
+            moveToMappedFile(accountFile);
+        }
+        rebuildLeaderboard();
+    }
+
+    /**
+     * Until the next save records the move, a restart replays the journal again and redoes it.
+     */
+    private void moveToMappedFile(Path accountFile) {
+        MappedAccountStore store;
+        try {
+            store = MappedAccountStore.open(accountFile, true);
+        } catch (IOException e) {
+            SimpleEconomy.LOGGER.error("Failed to create account file, keeping balances in the world save", e);
+            return;
+        }
+        copy(accounts, store);
+        store.sync();
+        if (journal != null) {
+            // Supersede the journal: its records are all in the file now
+            closeStorage();
+        } else {
+            setDirty();
+        }
+        mappedStore = store;
+        accounts = store;
+        storedIn = STORAGE_MAPPED;
+        SimpleEconomy.LOGGER.info("Moved {} accounts to the account file", store.size());
+    }
+
+    private void openJournal(Path directory) {
+        try {
+            journal = BalanceJournal.open(directory, DATA_NAME, journalGeneration,
+                (msb, lsb, balance, job) -> put(accounts, msb, lsb, balance, job));
+            if (journal.recordCount() > 0) {
+                SimpleEconomy.LOGGER.info("Replayed {} balance changes from the journal", journal.recordCount());
+            }
+        } catch (IOException e) {
+            SimpleEconomy.LOGGER.error("Failed to open balance journal, falling back to full saves", e);
+            journalGeneration = BalanceJournal.nextGeneration(directory, DATA_NAME, journalGeneration);
+            setDirty();
+        }
+    }
+
+    /**
+     * Stop journaling after an I/O error. The next full save records a generation past every
+     * existing journal file, so stale records are never replayed over newer balances.
+     */
+    private void abandonJournal(String message, IOException e) {
+        SimpleEconomy.LOGGER.error("{}, falling back to full saves", message, e);
+        journalGeneration = journal.generation() + 1;
+        try {
+            journal.close();
+        } catch (IOException ignored) {
+            // Already failing; the full save below is what matters now
+        }
+        journal = null;
+        setDirty();
+    }
+
+    /**
+     * Accounts on the leaderboard, which leaves out purged empty accounts. Server thread only.
+     */
+    public int getAccountCount() {
+        publish();
+        return leaderboard.size();
+    }
+
+    /**
+     * Accounts occupy slots 0 up to this limit. Slots are never reused within a session, but
+     * a restart may number them differently, so a slot is not a cursor to save.
+     */
+    public int getSlotLimit() {
+        return accounts.slotLimit();
+    }
+
+    public UUID getAccountAt(int slot) {
+        return new UUID(accounts.mostBitsAt(slot), accounts.leastBitsAt(slot));
+    }
+
+    /**
+     * Replace the balance in a slot with {@code update(balance)}, retrying if another thread
+     * changes it meanwhile. Returns the change made. Exceptions from the update leave the
+     * balance alone.
+     */
+    public long updateBalanceAt(int slot, LongUnaryOperator update) {
+        long cell;
+        long current;
+        long next;
+        InterestIndex index;
+        do {
+            index = interest;
+            cell = accounts.balanceAt(slot);
+            current = index.settle(cell);
+            next = checked(update.applyAsLong(current));
+        } while (!accounts.compareAndSet(slot, cell, index.pack(next)));
+        if (next != current) {
+            changed.mark(slot);
         }
-        tag.put("balances", balancesTag);
-        return tag;
+        return next - current;
     }
 
-    public double getBalance(UUID playerUUID) {
-        return balances.getOrDefault(playerUUID, 0.0);
+    /**
+     * Like {@link #updateBalanceAt}, for bulk job {@code job}: an account the job already
+     * changed is left alone. The account is marked with the job, and the mark is journaled and
+     * saved with its new balance, so a job resumed after a restart or crash never applies to
+     * an account twice. Returns the change made. Server thread only.
+     */
+    public long updateBalanceForJob(int slot, int job, LongUnaryOperator update) {
+        if (accounts.jobAt(slot) == job) {
+            return 0;
+        }
+        long delta = updateBalanceAt(slot, update);
+        if (delta != 0) {
+            accounts.setJobAt(slot, job);
+            stamped.set(slot);
+            changed.mark(slot);
+            lastJob = Math.max(lastJob, job);
+        }
+        return delta;
     }
 
-    public void setBalance(UUID playerUUID, double amount) {
-        balances.put(playerUUID, amount);
+    /**
+     * Highest job id any account is marked with, so new jobs never reuse one. Server thread only.
+     */
+    public int getLastJobId() {
+        return lastJob;
+    }
+
+    /**
+     * Every listed account as msb, lsb and settled balance triples, in slot order. Server
+     * thread only.
+     */
+    long[] copyBalances() {
+        publish();
+        long[] triples = new long[listed.cardinality() * 3];
+        int i = 0;
+        for (int slot = listed.nextSetBit(0); slot >= 0; slot = listed.nextSetBit(slot + 1)) {
+            triples[i++] = accounts.mostBitsAt(slot);
+            triples[i++] = accounts.leastBitsAt(slot);
+            triples[i++] = published[slot];
+        }
+        return triples;
+    }
+
+    /**
+     * Take an empty account off the leaderboard and out of the stats until its balance next
+     * changes. With NBT storage it is also left out of the next save. Server thread only.
+     */
+    public boolean unlistIfEmpty(int slot) {
+        // A change not yet published is still flagged, and relists the account when it is
+        if (!listed.get(slot) || published[slot] != 0) {
+            return false;
+        }
+        leaderboard.remove(accounts.mostBitsAt(slot), accounts.leastBitsAt(slot), 0);
+        distribution.remove(0);
+        listed.clear(slot);
+        return true;
+    }
+
+    /**
+     * 1-based leaderboard position, or 0 if the player has no account. Server thread only.
+     */
+    public int getRank(UUID playerUUID) {
+        publish();
+        long msb = playerUUID.getMostSignificantBits();
+        long lsb = playerUUID.getLeastSignificantBits();
+        int slot = accounts.slotOf(msb, lsb);
+        if (slot == AccountStore.NO_SLOT || !listed.get(slot)) {
+            return 0;
+        }
+        return leaderboard.rankOf(msb, lsb, published[slot]);
+    }
+
+    public boolean isInterestDue(long currentWeek) {
+        return interestWeek < currentWeek;
+    }
+
+    /**
+     * Pay a week's interest to every account: the rate grows each balance by up to {@code cap}.
+     * An account that missed earlier payouts gets them compounded now, within their caps.
+     * Weeks the server was down are not made up, and the first week seen only starts the clock.
+     * Adds an interest entry to {@code paid} for every account that earned any, and returns the
+     * total paid. Server thread only.
+     */
+    public long payInterest(long currentWeek, long basisPoints, long cap, List<TransactionLog.Entry> paid) {
+        if (interestWeek >= currentWeek) {
+            return 0;
+        }
+        boolean firstWeek = interestWeek == 0;
+        interestWeek = currentWeek;
         setDirty();
+        if (firstWeek || basisPoints <= 0 || cap <= 0) {
+            return 0;
+        }
+
+        // The accounts stay as they are; only the index and the published copies move on
+        publish();
+        InterestIndex previous = interest;
+        interest = previous.next(basisPoints, cap);
+        long before = distribution.supply();
+        distribution.clear();
+        for (int slot = listed.nextSetBit(0); slot >= 0; slot = listed.nextSetBit(slot + 1)) {
+            // What this payout adds to the balance the cell held, however many it missed before
+            long cell = accounts.balanceAt(slot);
+            long earned = interest.settle(cell) - previous.settle(cell);
+            if (earned > 0) {
+                published[slot] += earned;
+                UUID uuid = new UUID(accounts.mostBitsAt(slot), accounts.leastBitsAt(slot));
+                paid.add(new TransactionLog.Entry(uuid, TransactionLog.Transaction.interest(earned)));
+            }
+            distribution.add(published[slot]);
+        }
+        leaderboard.rescale((msb, lsb, balance) -> published[accounts.slotOf(msb, lsb)]);
+        return distribution.supply() - before;
     }
 
-    public Map<UUID, Double> getAllBalances() {
-        return new HashMap<>(balances);
+    /**
+     * Money supply and balance spread as of now. Server thread only.
+     */
+    public BalanceDistribution getDistribution() {
+        publish();
+        return distribution;
+    }
+
+    /**
+     * Walk accounts from richest to poorest starting at a 1-based rank. Server thread only;
+     * do not publish while the cursor is in use.
+     */
+    public LeaderboardIndex.Cursor leaderboardFrom(int rank) {
+        publish();
+        return leaderboard.cursor(rank);
     }
 
     public static EconomySavedData get(MinecraftServer server) {
         DimensionDataStorage storage = server.overworld().getDataStorage();
-        return storage.computeIfAbsent(
+        EconomySavedData data = storage.computeIfAbsent(
             new Factory<>(EconomySavedData::new, EconomySavedData::load),
             DATA_NAME
         );
+        if (!data.attached) {
+            data.attach(server.getWorldPath(LevelResource.ROOT).resolve("data"));
+        }
+        return data;
     }
 }
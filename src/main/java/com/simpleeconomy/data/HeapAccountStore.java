@@ -0,0 +1,109 @@
+package com.simpleeconomy.data;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+/**
+ * Accounts held on the heap. Balances sit in fixed-size pages of longs so growing never moves
+ * a cell another thread may be updating.
+ */
+public class HeapAccountStore implements AccountStore {
+
+    private static final int PAGE_SHIFT = 12;
+    private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    private static final VarHandle CELL = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private final AccountIndex index;
+    // Written under the index's write lock, published through slotLimit
+    private volatile long[][] balancePages = new long[0][];
+    private volatile long[][] keyPages = new long[0][];
+    private volatile int[][] jobPages = new int[0][];
+    private volatile int slotLimit;
+
+    public HeapAccountStore() {
+        this(16);
+    }
+
+    public HeapAccountStore(int expectedAccounts) {
+        this.index = new AccountIndex(expectedAccounts);
+    }
+
+    @Override
+    public int size() {
+        return slotLimit;
+    }
+
+    @Override
+    public int slotLimit() {
+        return slotLimit;
+    }
+
+    @Override
+    public int slotOf(long msb, long lsb) {
+        return index.find(msb, lsb);
+    }
+
+    @Override
+    public int slotFor(long msb, long lsb) {
+        return index.findOrAdd(msb, lsb, () -> allocate(msb, lsb));
+    }
+
+    @Override
+    public long mostBitsAt(int slot) {
+        return keyPages[slot >>> PAGE_SHIFT][(slot & PAGE_MASK) << 1];
+    }
+
+    @Override
+    public long leastBitsAt(int slot) {
+        return keyPages[slot >>> PAGE_SHIFT][((slot & PAGE_MASK) << 1) + 1];
+    }
+
+    @Override
+    public long balanceAt(int slot) {
+        return (long) CELL.getVolatile(balancePages[slot >>> PAGE_SHIFT], slot & PAGE_MASK);
+    }
+
+    @Override
+    public boolean compareAndSet(int slot, long expected, long value) {
+        return CELL.compareAndSet(balancePages[slot >>> PAGE_SHIFT], slot & PAGE_MASK, expected, value);
+    }
+
+    @Override
+    public long getAndSet(int slot, long value) {
+        return (long) CELL.getAndSet(balancePages[slot >>> PAGE_SHIFT], slot & PAGE_MASK, value);
+    }
+
+    @Override
+    public int jobAt(int slot) {
+        return jobPages[slot >>> PAGE_SHIFT][slot & PAGE_MASK];
+    }
+
+    @Override
+    public void setJobAt(int slot, int job) {
+        jobPages[slot >>> PAGE_SHIFT][slot & PAGE_MASK] = job;
+    }
+
+    private int allocate(long msb, long lsb) {
+        int slot = slotLimit;
+        int page = slot >>> PAGE_SHIFT;
+        if (page == balancePages.length) {
+            long[][] balances = Arrays.copyOf(balancePages, page + 1);
+            long[][] keys = Arrays.copyOf(keyPages, page + 1);
+            int[][] jobs = Arrays.copyOf(jobPages, page + 1);
+            balances[page] = new long[PAGE_SIZE];
+            keys[page] = new long[PAGE_SIZE << 1];
+            jobs[page] = new int[PAGE_SIZE];
+            balancePages = balances;
+            keyPages = keys;
+            jobPages = jobs;
+        }
+        long[] keys = keyPages[page];
+        keys[(slot & PAGE_MASK) << 1] = msb;
+        keys[((slot & PAGE_MASK) << 1) + 1] = lsb;
+        slotLimit = slot + 1;
+        return slot;
+    }
+}
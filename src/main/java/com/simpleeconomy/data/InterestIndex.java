@@ -0,0 +1,141 @@
+package com.simpleeconomy.data;
+
+import net.minecraft.nbt.CompoundTag;
+
+import java.util.Arrays;
+
+/**
+ * Interest paid to every account at once. Each payout starts a new epoch, and an account cell
+ * packs the epoch it was last written in with its balance as of then; reading a balance applies
+ * the payouts since. Paying interest therefore writes no accounts at all.
+ *
+ * The index keeps, for every epoch, the compounded growth of all payouts before it and the sum
+ * of their caps. A balance read some payouts after it was written grows by the compounded rate
+ * of those payouts, but by no more than the sum of their caps, and never past
+ * {@link #MAX_BALANCE}: one lookup at each end, however many payouts it missed.
+ *
+ * Immutable; each payout makes a new index. Payouts are appended to arrays shared with the
+ * index before, which only ever reads the part it already had.
+ */
+final class InterestIndex {
+
+    private static final int BALANCE_BITS = 48;
+    // The top bit stays clear so cells are never negative
+    private static final int MAX_EPOCH = (1 << (63 - BALANCE_BITS)) - 1;
+    private static final double BASIS_POINTS = 10_000.0;
+
+    /**
+     * Largest balance a cell can hold, about 2.8 trillion whole units
+     */
+    static final long MAX_BALANCE = (1L << BALANCE_BITS) - 1;
+
+    static final InterestIndex NONE = new InterestIndex(new History(16), 0);
+
+    /**
+     * Payout i takes balances from epoch i to epoch i + 1. Growth and cap sums are indexed
+     * by epoch, starting at 1 and 0 for epoch 0.
+     */
+    private static final class History {
+        final long[] rates;
+        final long[] caps;
+        final double[] growth;
+        final long[] capSums;
+        // Epochs written so far; only the newest index appends
+        int size;
+
+        History(int capacity) {
+            rates = new long[capacity];
+            caps = new long[capacity];
+            growth = new double[capacity + 1];
+            capSums = new long[capacity + 1];
+            growth[0] = 1.0;
+        }
+
+        History grow(int epochs) {
+            History grown = new History(rates.length * 2);
+            System.arraycopy(rates, 0, grown.rates, 0, epochs);
+            System.arraycopy(caps, 0, grown.caps, 0, epochs);
+            System.arraycopy(growth, 0, grown.growth, 0, epochs + 1);
+            System.arraycopy(capSums, 0, grown.capSums, 0, epochs + 1);
+            grown.size = epochs;
+            return grown;
+        }
+    }
+
+    private final History history;
+    private final int epoch;
+
+    private InterestIndex(History history, int epoch) {
+        this.history = history;
+        this.epoch = epoch;
+    }
+
+    int epoch() {
+        return epoch;
+    }
+
+    /**
+     * A cell holding the given balance as of the current epoch
+     */
+    long pack(long balance) {
+        return ((long) epoch << BALANCE_BITS) | clamp(balance);
+    }
+
+    /**
+     * The balance a cell holds now
+     */
+    long settle(long cell) {
+        long balance = cell & MAX_BALANCE;
+        int from = (int) (cell >>> BALANCE_BITS);
+        if (from >= epoch || balance == 0) {
+            // Nothing paid since, or written by another thread after this index was replaced
+            return balance;
+        }
+        // The cast saturates, and the minimum below brings it back in range
+        long grown = (long) (balance * (history.growth[epoch] / history.growth[from]));
+        long capped = balance + (history.capSums[epoch] - history.capSums[from]);
+        return Math.min(MAX_BALANCE, Math.min(grown, capped));
+    }
+
+    /**
+     * Start a new epoch, paying the given rate with at most {@code cap} per account
+     */
+    InterestIndex next(long basisPoints, long cap) {
+        if (epoch == MAX_EPOCH) {
+            throw new IllegalStateException("Interest epochs exhausted");
+        }
+        History target = history;
+        if (target.size != epoch || epoch == target.rates.length) {
+            target = target.grow(epoch);
+        }
+        target.rates[epoch] = basisPoints;
+        target.caps[epoch] = cap;
+        target.growth[epoch + 1] = target.growth[epoch] * (1.0 + basisPoints / BASIS_POINTS);
+        // Saturates well past any balance, so the cap sum never wraps
+        target.capSums[epoch + 1] = Math.min(MAX_BALANCE, target.capSums[epoch] + Math.min(cap, MAX_BALANCE));
+        target.size = epoch + 1;
+        return new InterestIndex(target, epoch + 1);
+    }
+
+    void save(CompoundTag tag) {
+        tag.putLongArray("rates", Arrays.copyOf(history.rates, epoch));
+        tag.putLongArray("caps", Arrays.copyOf(history.caps, epoch));
+    }
+
+    static InterestIndex load(CompoundTag tag) {
+        long[] rates = tag.getLongArray("rates");
+        long[] caps = tag.getLongArray("caps");
+        if (rates.length != caps.length) {
+            throw new IllegalArgumentException("Interest history is corrupt");
+        }
+        InterestIndex index = new InterestIndex(new History(Math.max(16, rates.length)), 0);
+        for (int i = 0; i < rates.length; i++) {
+            index = index.next(rates[i], caps[i]);
+        }
+        return index;
+    }
+
+    static long clamp(long balance) {
+        return Math.max(0, Math.min(balance, MAX_BALANCE));
+    }
+}
@@ -0,0 +1,59 @@
+package com.simpleeconomy.data;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Gives each distinct value a small id so that values repeated across many records, such as
+ * item and player names, are held once. Id -1 stands for null. Ids are never reused; values
+ * nothing refers to any more are dropped the next time the owner is loaded. Server thread only.
+ */
+final class Interner<T> {
+
+    private final List<T> values = new ArrayList<>();
+    private final Map<T, Integer> ids = new HashMap<>();
+
+    int id(T value) {
+        if (value == null) {
+            return -1;
+        }
+        Integer id = ids.get(value);
+        if (id == null) {
+            id = values.size();
+            values.add(value);
+            ids.put(value, id);
+        }
+        return id;
+    }
+
+    /**
+     * The id of a value already interned, or -1
+     */
+    int find(T value) {
+        Integer id = value == null ? null : ids.get(value);
+        return id == null ? -1 : id;
+    }
+
+    T get(int id) {
+        return id < 0 ? null : values.get(id);
+    }
+
+    /**
+     * An independent copy with the same ids, for reading off the server thread
+     */
+    Interner<T> copy() {
+        Interner<T> copy = new Interner<>();
+        copy.values.addAll(values);
+        copy.ids.putAll(ids);
+        return copy;
+    }
+
+    /**
+     * Every value in id order
+     */
+    List<T> values() {
+        return values;
+    }
+}
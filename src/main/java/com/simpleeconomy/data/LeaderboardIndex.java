@@ -0,0 +1,250 @@
+package com.simpleeconomy.data;
+
+import java.util.SplittableRandom;
+import java.util.UUID;
+
+/**
+ * Accounts ordered by balance (highest first, ties broken by UUID).
+ * A counted skip list: every forward link also stores how many accounts it skips,
+ * so rank lookups and "jump to rank N" are O(log n) instead of a full sort.
+ */
+public class LeaderboardIndex {
+
+    private static final int MAX_LEVEL = 32;
+    private static final int LEVEL_UP_CHANCE = 4; // 1 in 4 nodes is promoted to the next level
+
+    private final Node head = new Node(MAX_LEVEL, 0, 0, 0);
+    private final SplittableRandom random = new SplittableRandom();
+    private int level = 1;
+    private int size;
+
+    public int size() {
+        return size;
+    }
+
+    public void insert(long msb, long lsb, long balance) {
+        Node[] update = new Node[MAX_LEVEL];
+        int[] rank = new int[MAX_LEVEL];
+        Node x = head;
+        for (int i = level - 1; i >= 0; i--) {
+            rank[i] = i == level - 1 ? 0 : rank[i + 1];
+            while (x.next[i] != null && x.next[i].isBefore(balance, msb, lsb)) {
+                rank[i] += x.span[i];
+                x = x.next[i];
+            }
+            update[i] = x;
+        }
+
+        int nodeLevel = randomLevel();
+        if (nodeLevel > level) {
+            for (int i = level; i < nodeLevel; i++) {
+                rank[i] = 0;
+                update[i] = head;
+                head.span[i] = size;
+            }
+            level = nodeLevel;
+        }
+
+        Node node = new Node(nodeLevel, msb, lsb, balance);
+        for (int i = 0; i < nodeLevel; i++) {
+            node.next[i] = update[i].next[i];
+            update[i].next[i] = node;
+            node.span[i] = update[i].span[i] - (rank[0] - rank[i]);
+            update[i].span[i] = rank[0] - rank[i] + 1;
+        }
+        for (int i = nodeLevel; i < level; i++) {
+            update[i].span[i]++;
+        }
+        size++;
+    }
+
+    /**
+     * Remove an account. The balance must be the one it was inserted with.
+     */
+    public boolean remove(long msb, long lsb, long balance) {
+        Node[] update = new Node[MAX_LEVEL];
+        Node x = head;
+        for (int i = level - 1; i >= 0; i--) {
+            while (x.next[i] != null && x.next[i].isBefore(balance, msb, lsb)) {
+                x = x.next[i];
+            }
+            update[i] = x;
+        }
+
+        Node target = x.next[0];
+        if (target == null || !target.is(balance, msb, lsb)) {
+            return false;
+        }
+
+        for (int i = 0; i < level; i++) {
+            if (update[i].next[i] == target) {
+                update[i].span[i] += target.span[i] - 1;
+                update[i].next[i] = target.next[i];
+            } else {
+                update[i].span[i]--;
+            }
+        }
+        while (level > 1 && head.next[level - 1] == null) {
+            level--;
+        }
+        size--;
+        return true;
+    }
+
+    /**
+     * 1-based rank of an account, or 0 if it is not in the index
+     */
+    public int rankOf(long msb, long lsb, long balance) {
+        Node x = head;
+        int rank = 0;
+        for (int i = level - 1; i >= 0; i--) {
+            while (x.next[i] != null && !x.next[i].isAfter(balance, msb, lsb)) {
+                rank += x.span[i];
+                x = x.next[i];
+            }
+            if (x != head && x.is(balance, msb, lsb)) {
+                return rank;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Walk accounts in leaderboard order starting at the given 1-based rank
+     */
+    public Cursor cursor(int fromRank) {
+        return new Cursor(nodeAt(fromRank));
+    }
+
+    /**
+     * Replace every balance with {@code update.apply(msb, lsb, balance)}. Balances are updated in
+     * place while the order holds; if any two accounts swap places, the index is rebuilt.
+     */
+    public void rescale(Update update) {
+        boolean unordered = false;
+        Node previous = null;
+        for (Node x = head.next[0]; x != null; previous = x, x = x.next[0]) {
+            x.balance = update.apply(x.msb, x.lsb, x.balance);
+            if (previous != null && !previous.isBefore(x.balance, x.msb, x.lsb)) {
+                unordered = true;
+            }
+        }
+        if (unordered) {
+            rebuild();
+        }
+    }
+
+    private void rebuild() {
+        long[][] accounts = new long[size][];
+        int i = 0;
+        for (Node x = head.next[0]; x != null; x = x.next[0]) {
+            accounts[i++] = new long[] {x.msb, x.lsb, x.balance};
+        }
+        clear();
+        for (long[] account : accounts) {
+            insert(account[0], account[1], account[2]);
+        }
+    }
+
+    public void clear() {
+        for (int i = 0; i < MAX_LEVEL; i++) {
+            head.next[i] = null;
+            head.span[i] = 0;
+        }
+        level = 1;
+        size = 0;
+    }
+
+    private Node nodeAt(int rank) {
+        if (rank < 1 || rank > size) {
+            return null;
+        }
+        Node x = head;
+        int traversed = 0;
+        for (int i = level - 1; i >= 0; i--) {
+            while (x.next[i] != null && traversed + x.span[i] <= rank) {
+                traversed += x.span[i];
+                x = x.next[i];
+            }
+            if (traversed == rank) {
+                return x;
+            }
+        }
+        return null;
+    }
+
+    private int randomLevel() {
+        int nodeLevel = 1;
+        while (nodeLevel < MAX_LEVEL && random.nextInt(LEVEL_UP_CHANCE) == 0) {
+            nodeLevel++;
+        }
+        return nodeLevel;
+    }
+
+    private static final class Node {
+        final long msb;
+        final long lsb;
+        long balance;
+        final Node[] next;
+        final int[] span;
+
+        Node(int level, long msb, long lsb, long balance) {
+            this.msb = msb;
+            this.lsb = lsb;
+            this.balance = balance;
+            this.next = new Node[level];
+            this.span = new int[level];
+        }
+
+        int compareTo(long otherBalance, long otherMsb, long otherLsb) {
+            if (balance != otherBalance) {
+                return balance > otherBalance ? -1 : 1;
+            }
+            int cmp = Long.compare(msb, otherMsb);
+            return cmp != 0 ? cmp : Long.compare(lsb, otherLsb);
+        }
+
+        boolean isBefore(long otherBalance, long otherMsb, long otherLsb) {
+            return compareTo(otherBalance, otherMsb, otherLsb) < 0;
+        }
+
+        boolean isAfter(long otherBalance, long otherMsb, long otherLsb) {
+            return compareTo(otherBalance, otherMsb, otherLsb) > 0;
+        }
+
+        boolean is(long otherBalance, long otherMsb, long otherLsb) {
+            return balance == otherBalance && msb == otherMsb && lsb == otherLsb;
+        }
+    }
+
+    @FunctionalInterface
+    public interface Update {
+        long apply(long msb, long lsb, long balance);
+    }
+
+    public static class Cursor {
+        private Node upcoming;
+        private Node current;
+
+        private Cursor(Node first) {
+            this.upcoming = first;
+        }
+
+        public boolean next() {
+            if (upcoming == null) {
+                return false;
+            }
+            current = upcoming;
+            upcoming = current.next[0];
+            return true;
+        }
+
+        public UUID uuid() {
+            return new UUID(current.msb, current.lsb);
+        }
+
+        public long balance() {
+            return current.balance;
+        }
+    }
+}
@@ -0,0 +1,431 @@
+package com.simpleeconomy.data;
+
+import com.simpleeconomy.SimpleEconomy;
+import com.simpleeconomy.config.ModConfig;
+import com.simpleeconomy.economy.EconomyService;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+/**
+ * Checks stored balances against the transaction ledger. A balance should equal its value in
+ * the last baseline plus every ledger entry since. The baseline is a copy of every balance,
+ * taken when there is none yet or the ledger no longer reaches back to it, and at shutdown if
+ * the ledger dropped entries. It is tied to the ledger by sequence number: balances are copied
+ * on the server thread and a mark queued behind the entries sent so far, and the ledger's
+ * sequence number at that mark splits the entries the copy has from those it does not.
+ *
+ * A check copies the balances on the server thread and replays the ledger on a fork/join pool
+ * using every core: one task per segment sums amounts per account, then one task per partition
+ * of the accounts adds up the segments and compares. It runs as a task on the ledger's
+ * background thread, so segments are not sealed or deleted underneath it.
+ */
+public final class LedgerReconciler {
+
+    private static final String BASELINE_FILE = "baseline.dat";
+    // Version 1 baselines were cut by timestamp and are replaced at the next start
+    private static final int BASELINE_MAGIC_V1 = 0x42534C31;
+    private static final int BASELINE_MAGIC = 0x42534C32;
+    private static final int PARTITION_BITS = 6;
+    private static final int PARTITIONS = 1 << PARTITION_BITS;
+
+    /**
+     * An account whose stored balance is not what the ledger says
+     */
+    public record Discrepancy(UUID player, long stored, long expected) {
+        public long difference() {
+            return expected - stored;
+        }
+    }
+
+    /**
+     * The outcome of a check. Discrepancies are largest first. Entries the ledger dropped
+     * because its queue was full show up as discrepancies too, which is why a ledger that
+     * dropped any is never used to repair or as a new baseline.
+     */
+    public record Report(long baselineTime, int accounts, long entries, int segments, List<Discrepancy> discrepancies,
+                         int repaired, long droppedEntries, long millis) {
+    }
+
+    private record Baseline(long time, long sequence, long[] triples) {
+    }
+
+    private LedgerReconciler() {
+    }
+
+    /**
+     * Take a new baseline from the current balances. Completes once it is written. Server
+     * thread only.
+     */
+    public static CompletableFuture<Void> checkpoint() {
+        EconomyService service = EconomyService.get();
+        Path directory = service.transactions().ledgerDirectory();
+        if (directory == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        // Settlements made this tick are in the balances already, so their entries go in first
+        service.transactions().flushSubmitted();
+        long time = System.currentTimeMillis();
+        CompletableFuture<Long> mark = service.transactions().markLedger();
+        long[] triples = service.economy().copyBalances();
+        return mark.thenAcceptAsync(sequence -> {
+            try {
+                writeBaseline(directory, new Baseline(time, sequence, triples));
+            } catch (IOException e) {
+                SimpleEconomy.LOGGER.error("Failed to write balance baseline", e);
+            }
+        }, TransactionLedger.BACKGROUND).exceptionally(e -> {
+            SimpleEconomy.LOGGER.error("Failed to take balance baseline", e);
+            return null;
+        });
+    }
+
+    /**
+     * Take a baseline before the server stops if the ledger dropped entries this session, as
+     * the next session would otherwise replay a ledger with gaps in it and not know. Call
+     * before the ledger is closed. Server thread only; waits for the write.
+     */
+    public static void checkpointIfIncomplete() {
+        if (dropped(EconomyService.get().transactions()) > 0) {
+            checkpoint().join();
+        }
+    }
+
+    /**
+     * Take a baseline at startup if there is none, or if the ledger no longer reaches back to
+     * it. Server thread only.
+     */
+    public static void checkpointIfStale() {
+        Path directory = EconomyService.get().transactions().ledgerDirectory();
+        if (directory == null) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(directory.resolve(BASELINE_FILE)))) {
+            if (in.readInt() == BASELINE_MAGIC) {
+                in.readLong();
+                if (!expired(in.readLong(), System.currentTimeMillis())) {
+                    return;
+                }
+            }
+        } catch (NoSuchFileException e) {
+            // First start with the ledger
+        } catch (IOException e) {
+            SimpleEconomy.LOGGER.warn("Unreadable balance baseline, taking a new one", e);
+        }
+        checkpoint();
+    }
+
+    /**
+     * Replay the ledger and compare. With {@code repair}, each account found wrong is moved
+     * by the difference, keeping changes made while the check ran; this is refused once the
+     * ledger has dropped entries. A clean or fully repaired result becomes the new baseline,
+     * unless entries were dropped. Server thread only; repairs are made on the server thread
+     * before the report completes.
+     */
+    public static CompletableFuture<Report> run(boolean repair) {
+        EconomyService service = EconomyService.get();
+        TransactionLog log = service.transactions();
+        EconomySavedData economy = service.economy();
+        Path directory = log.ledgerDirectory();
+        // Settlements made this tick are in the balances already, so their entries go in first
+        log.flushSubmitted();
+        if (directory == null) {
+            return CompletableFuture.failedFuture(new IllegalStateException("The transaction ledger is not open"));
+        }
+
+        long dropped = dropped(log);
+        if (repair && dropped > 0) {
+            return CompletableFuture.failedFuture(new IllegalStateException("The ledger dropped " + dropped
+                + " entries this session, so it cannot be used to repair balances; a new baseline is taken when the server stops"));
+        }
+
+        // Balances and the entries up to now, cut at the same point in the ledger
+        long cut = System.currentTimeMillis();
+        CompletableFuture<Long> mark = log.markLedger();
+        long[] stored = economy.copyBalances();
+
+        CompletableFuture<Replay> replay = mark.thenApplyAsync(sequence -> {
+            try {
+                return replay(directory, sequence, stored);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, TransactionLedger.BACKGROUND);
+
+        return replay.thenApplyAsync(result -> {
+            // Entries dropped while the replay ran are missing from it too
+            if (repair && dropped(log) > 0) {
+                throw new IllegalStateException("The ledger dropped entries while the check ran, so nothing was repaired");
+            }
+            int repaired = repair ? repair(economy, result.discrepancies) : 0;
+            if (result.discrepancies.size() == repaired && dropped(log) == 0) {
+                Baseline next = new Baseline(cut, result.sequence, result.expected);
+                TransactionLedger.BACKGROUND.execute(() -> {
+                    try {
+                        writeBaseline(directory, next);
+                    } catch (IOException e) {
+                        SimpleEconomy.LOGGER.error("Failed to write balance baseline", e);
+                    }
+                });
+            }
+            return new Report(result.baselineTime, result.accounts, result.entries, result.segments,
+                result.discrepancies, repaired, dropped(log), System.currentTimeMillis() - cut);
+        }, service.server());
+    }
+
+    private static long dropped(TransactionLog log) {
+        TransactionLog.LedgerStats stats = log.getLedgerStats();
+        return stats == null ? 0 : stats.dropped();
+    }
+
+    private record Replay(long baselineTime, long sequence, int accounts, long entries, int segments,
+                          List<Discrepancy> discrepancies, long[] expected) {
+    }
+
+    /**
+     * Replay the entries from the baseline's sequence number up to {@code cut}
+     */
+    private static Replay replay(Path directory, long cut, long[] stored) throws IOException {
+        Baseline baseline = readBaseline(directory);
+        if (baseline == null) {
+            throw new IllegalStateException("There is no balance baseline yet; one is taken at the next server start");
+        }
+        if (expired(baseline.sequence, System.currentTimeMillis())
+            || TransactionLedger.oldestDay(directory) > baseline.sequence >>> 32) {
+            throw new IllegalStateException("The ledger no longer reaches back to the balance baseline;"
+                + " a new one is taken at the next server start");
+        }
+
+        List<Path> segments = TransactionLedger.segmentsFrom(directory, baseline.sequence);
+        BalanceTable[][] sums = new BalanceTable[segments.size()][];
+        long[] counts = new long[segments.size()];
+        List<Discrepancy>[] found = newLists(PARTITIONS);
+        long[][] expected = new long[PARTITIONS][];
+        BalanceTable[] baselineParts = partition(baseline.triples);
+        BalanceTable[] storedParts = partition(stored);
+
+        ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        try {
+            pool.invoke(new Split(0, segments.size(), i -> {
+                BalanceTable[] parts = newTables();
+                long[] count = new long[1];
+                try {
+                    TransactionLedger.visitAmounts(segments.get(i), (msb, lsb, sequence, amount) -> {
+                        if (sequence >= baseline.sequence && sequence < cut) {
+                            BalanceTable part = parts[partitionOf(msb, lsb)];
+                            part.put(msb, lsb, part.get(msb, lsb, 0) + amount);
+                            count[0]++;
+                        }
+                    });
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                sums[i] = parts;
+                counts[i] = count[0];
+            }));
+            pool.invoke(new Split(0, PARTITIONS, p -> {
+                BalanceTable balances = baselineParts[p];
+                for (BalanceTable[] segment : sums) {
+                    for (BalanceTable.Cursor cursor = segment[p].cursor(); cursor.next(); ) {
+                        long msb = cursor.mostBits();
+                        long lsb = cursor.leastBits();
+                        balances.put(msb, lsb, balances.get(msb, lsb, 0) + cursor.value());
+                    }
+                }
+                long[] triples = new long[balances.size() * 3];
+                int t = 0;
+                for (BalanceTable.Cursor cursor = balances.cursor(); cursor.next(); ) {
+                    long value = storedParts[p].get(cursor.mostBits(), cursor.leastBits(), 0);
+                    if (value != cursor.value()) {
+                        found[p].add(new Discrepancy(cursor.uuid(), value, cursor.value()));
+                    }
+                    triples[t++] = cursor.mostBits();
+                    triples[t++] = cursor.leastBits();
+                    triples[t++] = cursor.value();
+                }
+                // Money the ledger has no record of at all
+                for (BalanceTable.Cursor cursor = storedParts[p].cursor(); cursor.next(); ) {
+                    if (cursor.value() != 0 && !balances.contains(cursor.mostBits(), cursor.leastBits())) {
+                        found[p].add(new Discrepancy(cursor.uuid(), cursor.value(), 0));
+                    }
+                }
+                expected[p] = triples;
+            }));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            pool.shutdown();
+        }
+
+        List<Discrepancy> discrepancies = new ArrayList<>();
+        int accounts = 0;
+        int length = 0;
+        for (int p = 0; p < PARTITIONS; p++) {
+            discrepancies.addAll(found[p]);
+            accounts += baselineParts[p].size();
+            length += expected[p].length;
+        }
+        discrepancies.sort(Comparator.comparingLong((Discrepancy d) -> Math.abs(d.difference())).reversed());
+        long[] next = new long[length];
+        int offset = 0;
+        for (long[] part : expected) {
+            System.arraycopy(part, 0, next, offset, part.length);
+            offset += part.length;
+        }
+        long entries = 0;
+        for (long count : counts) {
+            entries += count;
+        }
+        return new Replay(baseline.time, cut, accounts, entries, segments.size(), discrepancies, next);
+    }
+
+    private static int repair(EconomySavedData economy, List<Discrepancy> discrepancies) {
+        int repaired = 0;
+        for (Discrepancy discrepancy : discrepancies) {
+            long difference = discrepancy.difference();
+            boolean applied;
+            if (difference > 0) {
+                try {
+                    economy.credit(discrepancy.player(), difference);
+                    applied = true;
+                } catch (ArithmeticException e) {
+                    applied = false;
+                }
+            } else {
+                applied = economy.debit(discrepancy.player(), -difference);
+            }
+            if (applied) {
+                repaired++;
+                SimpleEconomy.LOGGER.info("Reconcile moved {} by {} to match the ledger", discrepancy.player(), difference);
+            } else {
+                SimpleEconomy.LOGGER.warn("Reconcile could not move {} by {}", discrepancy.player(), difference);
+            }
+        }
+        return repaired;
+    }
+
+    /**
+     * Whether retention may have deleted segments written since the baseline's sequence number
+     */
+    private static boolean expired(long baselineSequence, long now) {
+        int retentionDays = ModConfig.getLedgerRetentionDays();
+        return retentionDays > 0 && baselineSequence >>> 32 <= TransactionLedger.dayOf(now) - retentionDays;
+    }
+
+    private static int partitionOf(long msb, long lsb) {
+        // The high bits, which the tables themselves do not index by
+        return BalanceTable.hash(msb, lsb) >>> (Integer.SIZE - PARTITION_BITS);
+    }
+
+    private static BalanceTable[] partition(long[] triples) {
+        BalanceTable[] parts = newTables();
+        for (int i = 0; i + 2 < triples.length; i += 3) {
+            parts[partitionOf(triples[i], triples[i + 1])].put(triples[i], triples[i + 1], triples[i + 2]);
+        }
+        return parts;
+    }
+
+    private static BalanceTable[] newTables() {
+        BalanceTable[] tables = new BalanceTable[PARTITIONS];
+        for (int p = 0; p < PARTITIONS; p++) {
+            tables[p] = new BalanceTable();
+        }
+        return tables;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Discrepancy>[] newLists(int count) {
+        List<Discrepancy>[] lists = new List[count];
+        for (int i = 0; i < count; i++) {
+            lists[i] = new ArrayList<>();
+        }
+        return lists;
+    }
+
+    /**
+     * The balances as of the last checkpoint, or null if there is none
+     */
+    private static Baseline readBaseline(Path directory) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+            Files.newInputStream(directory.resolve(BASELINE_FILE))))) {
+            int magic = in.readInt();
+            if (magic == BASELINE_MAGIC_V1) {
+                return null;
+            }
+            if (magic != BASELINE_MAGIC) {
+                throw new IOException("Not a balance baseline");
+            }
+            long time = in.readLong();
+            long sequence = in.readLong();
+            int count = in.readInt();
+            if (count < 0 || count > Integer.MAX_VALUE / 3) {
+                throw new IOException("Corrupt balance baseline");
+            }
+            long[] triples = new long[count * 3];
+            for (int i = 0; i < triples.length; i++) {
+                triples[i] = in.readLong();
+            }
+            return new Baseline(time, sequence, triples);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    private static void writeBaseline(Path directory, Baseline baseline) throws IOException {
+        Path file = directory.resolve(BASELINE_FILE);
+        Path temporary = directory.resolve(BASELINE_FILE + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            out.writeInt(BASELINE_MAGIC);
+            out.writeLong(baseline.time);
+            out.writeLong(baseline.sequence);
+            out.writeInt(baseline.triples.length / 3);
+            for (long value : baseline.triples) {
+                out.writeLong(value);
+            }
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Runs an action for every index in a range, halving the range until it is one index
+     */
+    private static final class Split extends RecursiveAction {
+        private final int from;
+        private final int to;
+        private final IntConsumer action;
+
+        Split(int from, int to, IntConsumer action) {
+            this.from = from;
+            this.to = to;
+            this.action = action;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= 1) {
+                if (to > from) {
+                    action.accept(from);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new Split(from, middle, action), new Split(middle, to, action));
+        }
+    }
+}
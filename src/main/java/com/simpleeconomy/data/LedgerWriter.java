@@ -0,0 +1,224 @@
+package com.simpleeconomy.data;
+
+import com.simpleeconomy.SimpleEconomy;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Feeds the {@link TransactionLedger} from its own thread. Callers only put entries on a
+ * bounded queue; the writer takes whatever has piled up since its last pass, appends it and
+ * syncs once for the whole batch, so a burst costs one fsync rather than one per entry.
+ *
+ * A full queue means the disk is not keeping up. Entries that do not fit spill to an unbounded
+ * overflow list, which the writer empties together with the queue, so callers never wait and
+ * no entry is lost; only an I/O error makes the ledger drop entries.
+ */
+class LedgerWriter {
+
+    private static final int MAX_BATCH = 4096;
+    // Queued by close() after the last real entry
+    private static final TransactionLog.Record CLOSE = new TransactionLog.Entry(null, null);
+    // Queued by mark(), one for each waiting future
+    private static final TransactionLog.Record MARK = new TransactionLog.Entry(null, null);
+
+    private final BlockingQueue<TransactionLog.Record> queue;
+    // Entries the full queue could not take, in the order they came; guarded by itself
+    private final ArrayDeque<TransactionLog.Record> overflow = new ArrayDeque<>();
+    private final Thread thread;
+    // Completed in the order their marks are written; guarded by itself while queueing
+    private final Queue<CompletableFuture<Long>> marks = new ConcurrentLinkedQueue<>();
+    private final AtomicLong spilled = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    // Set while the overflow list has entries, so later ones queue up behind them
+    private volatile boolean spilling;
+    // Written only by the writer thread
+    private volatile long written;
+    private volatile long batches;
+    private volatile int largestBatch;
+    private volatile boolean warned;
+    // Owned by the writer thread once started
+    private TransactionLedger ledger;
+
+    private LedgerWriter(TransactionLedger ledger, int capacity) {
+        this.ledger = ledger;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.thread = new Thread(this::run, "SimpleEconomy-Ledger-Writer");
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * Open the ledger on the calling thread, so a failure shows up straight away, then start writing
+     */
+    static LedgerWriter start(Path directory, int retentionDays, int capacity) throws IOException {
+        LedgerWriter writer = new LedgerWriter(TransactionLedger.open(directory, retentionDays), capacity);
+        writer.thread.start();
+        return writer;
+    }
+
+    /**
+     * Queue a record without waiting. Safe from any thread.
+     */
+    void offer(TransactionLog.Record record) {
+        enqueue(record);
+    }
+
+    private void enqueue(TransactionLog.Record record) {
+        if (!spilling && queue.offer(record)) {
+            return;
+        }
+        synchronized (overflow) {
+            if (overflow.isEmpty() && queue.offer(record)) {
+                return;
+            }
+            overflow.add(record);
+            spilling = true;
+        }
+        spilled.incrementAndGet();
+        if (!warned) {
+            warned = true;
+            SimpleEconomy.LOGGER.warn("Transaction ledger queue is full, holding ledger entries in memory until it catches up");
+        }
+    }
+
+    /**
+     * The ledger's sequence number just after every record queued so far, once they are all
+     * on disk. Fails if the ledger stopped after an I/O error.
+     */
+    CompletableFuture<Long> mark() {
+        CompletableFuture<Long> mark = new CompletableFuture<>();
+        synchronized (marks) {
+            marks.add(mark);
+            enqueue(MARK);
+        }
+        return mark;
+    }
+
+    /**
+     * Write everything queued so far, close the ledger and stop the thread
+     */
+    void close() {
+        try {
+            enqueue(CLOSE);
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    TransactionLog.LedgerStats stats() {
+        int overflowed;
+        synchronized (overflow) {
+            overflowed = overflow.size();
+        }
+        return new TransactionLog.LedgerStats(queue.size() + overflowed, queue.size() + queue.remainingCapacity(),
+            written, batches, largestBatch, spilled.get(), dropped.get());
+    }
+
+    private void run() {
+        List<TransactionLog.Record> batch = new ArrayList<>();
+        boolean closing = false;
+        while (!closing) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                break;
+            }
+            queue.drainTo(batch, MAX_BATCH - 1);
+            if (spilling) {
+                // The queue holds entries that came before the overflow, and the lock keeps
+                // new ones out until both are taken
+                synchronized (overflow) {
+                    queue.drainTo(batch);
+                    batch.addAll(overflow);
+                    overflow.clear();
+                    spilling = false;
+                }
+            }
+
+            List<Long> sequences = new ArrayList<>();
+            for (TransactionLog.Record record : batch) {
+                if (record == CLOSE) {
+                    closing = true;
+                } else if (record == MARK) {
+                    sequences.add(ledger == null ? -1 : ledger.sequence());
+                } else {
+                    write(record);
+                }
+            }
+            commit(batch.size());
+            batch.clear();
+            // Only once the records before them are synced
+            for (long sequence : sequences) {
+                CompletableFuture<Long> mark = marks.poll();
+                if (sequence >= 0 && ledger != null) {
+                    mark.complete(sequence);
+                } else {
+                    mark.completeExceptionally(new IllegalStateException("The transaction ledger stopped after a write error"));
+                }
+            }
+            if (warned && !spilling && queue.isEmpty()) {
+                warned = false;
+            }
+        }
+
+        if (ledger != null) {
+            try {
+                ledger.close();
+            } catch (IOException e) {
+                SimpleEconomy.LOGGER.error("Failed to close transaction ledger", e);
+            }
+            ledger = null;
+        }
+    }
+
+    private void write(TransactionLog.Record record) {
+        if (ledger == null) {
+            dropped.incrementAndGet();
+            return;
+        }
+        try {
+            ledger.append(record);
+            written++;
+        } catch (IOException e) {
+            fail(e);
+            dropped.incrementAndGet();
+        }
+    }
+
+    private void commit(int size) {
+        if (ledger == null) {
+            return;
+        }
+        try {
+            ledger.sync();
+        } catch (IOException e) {
+            fail(e);
+            return;
+        }
+        batches++;
+        largestBatch = Math.max(largestBatch, size);
+    }
+
+    /**
+     * Stop writing after an I/O error. Recent history and flow totals carry on without the ledger.
+     */
+    private void fail(IOException e) {
+        SimpleEconomy.LOGGER.error("Failed to write transaction ledger, keeping only recent history from now on", e);
+        try {
+            ledger.close();
+        } catch (IOException ignored) {
+            // Already failing
+        }
+        ledger = null;
+    }
+}
@@ -0,0 +1,290 @@
+package com.simpleeconomy.data;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Accounts stored as fixed-size records in a memory-mapped file.
+ * Only a UUID -> slot index is kept on the heap; balances are read and compare-and-set
+ * straight in the mapping and the OS page cache decides what stays in memory.
+ *
+ * Layout: a 64-byte header, then 40-byte records of
+ * msb, lsb, balance, version (bumped on every write), flags and the last bulk job to change
+ * the account. Files from before the job was kept have zero there, which means none.
+ */
+public class MappedAccountStore implements AccountStore, Closeable {
+
+    private static final int MAGIC = 0x53454143; // "SEAC"
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int HEADER_MAGIC = 0;
+    private static final int HEADER_FORMAT = 4;
+    private static final int HEADER_RECORD_SIZE = 8;
+    private static final int HEADER_SLOTS = 12;
+
+    // Every long field is 8-byte aligned, which atomic access to a mapped buffer requires
+    private static final int RECORD_SIZE = 40;
+    private static final int MSB = 0;
+    private static final int LSB = 8;
+    private static final int BALANCE = 16;
+    private static final int VERSION = 24;
+    private static final int FLAGS = 32;
+    private static final int JOB = 36;
+    private static final int FLAG_ACTIVE = 1;
+
+    // 40 MiB per mapping; a single MappedByteBuffer cannot exceed 2 GiB
+    private static final int RECORDS_PER_SEGMENT = 1 << 20;
+    private static final long SEGMENT_BYTES = (long) RECORD_SIZE * RECORDS_PER_SEGMENT;
+
+    private static final VarHandle LONG = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+    private final FileChannel channel;
+    private final MappedByteBuffer header;
+    private final AccountIndex index;
+    // Grown under the index's write lock, published through slots
+    private volatile Segment[] segments = new Segment[0];
+    private volatile int slots;
+    private volatile boolean headerDirty;
+    private boolean closed;
+
+    private static final class Segment {
+        final MappedByteBuffer buffer;
+        volatile boolean dirty;
+
+        Segment(MappedByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+    }
+
+    private MappedAccountStore(FileChannel channel, MappedByteBuffer header, int slots) {
+        this.channel = channel;
+        this.header = header;
+        this.slots = slots;
+        this.index = new AccountIndex(slots);
+    }
+
+    /**
+     * Open (or create) the account file and rebuild the slot index from it.
+     * With {@code truncate} any existing file is discarded first.
+     */
+    public static MappedAccountStore open(Path file, boolean truncate) throws IOException {
+        FileChannel channel = truncate
+            ? FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)
+            : FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+            if (header.getInt(HEADER_MAGIC) == 0) {
+                header.putInt(HEADER_MAGIC, MAGIC);
+                header.putInt(HEADER_FORMAT, FORMAT_VERSION);
+                header.putInt(HEADER_RECORD_SIZE, RECORD_SIZE);
+                header.putInt(HEADER_SLOTS, 0);
+            } else if (header.getInt(HEADER_MAGIC) != MAGIC
+                || header.getInt(HEADER_FORMAT) != FORMAT_VERSION
+                || header.getInt(HEADER_RECORD_SIZE) != RECORD_SIZE) {
+                throw new IOException("Unrecognised account file " + file);
+            }
+
+            MappedAccountStore store = new MappedAccountStore(channel, header, header.getInt(HEADER_SLOTS));
+            store.rebuildIndex();
+            return store;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public int size() {
+        return index.size();
+    }
+
+    @Override
+    public int slotLimit() {
+        return slots;
+    }
+
+    @Override
+    public int slotOf(long msb, long lsb) {
+        return index.find(msb, lsb);
+    }
+
+    @Override
+    public int slotFor(long msb, long lsb) {
+        return index.findOrAdd(msb, lsb, () -> allocate(msb, lsb));
+    }
+
+    @Override
+    public long mostBitsAt(int slot) {
+        return segmentOf(slot).buffer.getLong(offsetOf(slot) + MSB);
+    }
+
+    @Override
+    public long leastBitsAt(int slot) {
+        return segmentOf(slot).buffer.getLong(offsetOf(slot) + LSB);
+    }
+
+    @Override
+    public long balanceAt(int slot) {
+        return (long) LONG.getVolatile(segmentOf(slot).buffer, offsetOf(slot) + BALANCE);
+    }
+
+    @Override
+    public boolean compareAndSet(int slot, long expected, long value) {
+        Segment segment = segmentOf(slot);
+        int offset = offsetOf(slot);
+        if (!LONG.compareAndSet(segment.buffer, offset + BALANCE, expected, value)) {
+            return false;
+        }
+        written(segment, offset);
+        return true;
+    }
+
+    @Override
+    public long getAndSet(int slot, long value) {
+        Segment segment = segmentOf(slot);
+        int offset = offsetOf(slot);
+        long previous = (long) LONG.getAndSet(segment.buffer, offset + BALANCE, value);
+        written(segment, offset);
+        return previous;
+    }
+
+    @Override
+    public int jobAt(int slot) {
+        return segmentOf(slot).buffer.getInt(offsetOf(slot) + JOB);
+    }
+
+    @Override
+    public void setJobAt(int slot, int job) {
+        Segment segment = segmentOf(slot);
+        segment.buffer.putInt(offsetOf(slot) + JOB, job);
+        segment.dirty = true;
+    }
+
+    /**
+     * Flush pages written since the last sync to disk
+     */
+    public void sync() {
+        if (closed) {
+            return;
+        }
+        for (Segment segment : segments) {
+            if (segment.dirty) {
+                segment.dirty = false;
+                segment.buffer.force();
+            }
+        }
+        if (headerDirty) {
+            headerDirty = false;
+            header.force();
+        }
+    }
+
+    /**
+     * Flush and release the file. Writes to existing accounts still land in the mapping
+     * afterwards, but are no longer synced.
+     */
+    @Override
+    public void close() throws IOException {
+        sync();
+        closed = true;
+        // The mappings themselves are released when garbage collected
+        channel.close();
+    }
+
+    private void written(Segment segment, int offset) {
+        LONG.getAndAdd(segment.buffer, offset + VERSION, 1L);
+        segment.dirty = true;
+    }
+
+    private int allocate(long msb, long lsb) {
+        // Claim the slot in the header before writing it; a record cut short by a crash
+        // never gets its active flag and is skipped on the next startup
+        int slot = slots;
+        header.putInt(HEADER_SLOTS, slot + 1);
+        headerDirty = true;
+
+        Segment segment = mapSegment(slot / RECORDS_PER_SEGMENT);
+        int offset = offsetOf(slot);
+        segment.buffer.putLong(offset + MSB, msb);
+        segment.buffer.putLong(offset + LSB, lsb);
+        segment.buffer.putLong(offset + BALANCE, 0L);
+        segment.buffer.putLong(offset + VERSION, 0L);
+        segment.buffer.putInt(offset + JOB, 0);
+        segment.buffer.putInt(offset + FLAGS, FLAG_ACTIVE);
+        segment.dirty = true;
+        slots = slot + 1;
+        return slot;
+    }
+
+    private void rebuildIndex() {
+        int limit = slots;
+        int slot = 0;
+        while (slot < limit) {
+            MappedByteBuffer buffer = mapSegment(slot / RECORDS_PER_SEGMENT).buffer;
+            int offset = offsetOf(slot);
+            if ((buffer.getInt(offset + FLAGS) & FLAG_ACTIVE) != 0) {
+                int existing = slot++;
+                index.findOrAdd(buffer.getLong(offset + MSB), buffer.getLong(offset + LSB), () -> existing);
+                continue;
+            }
+
+            // A record torn by a crash. Fill the hole from the end so every slot below
+            // the limit stays a real account.
+            limit--;
+            MappedByteBuffer last = mapSegment(limit / RECORDS_PER_SEGMENT).buffer;
+            int lastOffset = offsetOf(limit);
+            for (int i = 0; i < RECORD_SIZE; i += Long.BYTES) {
+                buffer.putLong(offset + i, last.getLong(lastOffset + i));
+            }
+            last.putInt(lastOffset + FLAGS, 0);
+        }
+
+        if (limit != slots) {
+            slots = limit;
+            header.putInt(HEADER_SLOTS, limit);
+            headerDirty = true;
+            Arrays.stream(segments).forEach(segment -> segment.dirty = true);
+        }
+    }
+
+    private Segment segmentOf(int slot) {
+        return segments[slot / RECORDS_PER_SEGMENT];
+    }
+
+    /**
+     * Map segments up to and including the given one. Only called under the index's write lock,
+     * or before the store is shared.
+     */
+    private Segment mapSegment(int number) {
+        Segment[] current = segments;
+        if (number < current.length) {
+            return current[number];
+        }
+        Segment[] grown = Arrays.copyOf(current, number + 1);
+        for (int i = current.length; i <= number; i++) {
+            long position = HEADER_SIZE + i * SEGMENT_BYTES;
+            try {
+                // Mapping past the end of the file grows it
+                grown[i] = new Segment(channel.map(FileChannel.MapMode.READ_WRITE, position, SEGMENT_BYTES));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to map account file segment " + i, e);
+            }
+        }
+        segments = grown;
+        return grown[number];
+    }
+
+    private static int offsetOf(int slot) {
+        return (slot % RECORDS_PER_SEGMENT) * RECORD_SIZE;
+    }
+}
@@ -1,12 +1,12 @@
 package com.simpleeconomy.data;
 
 import com.simpleeconomy.SimpleEconomy;
+import com.simpleeconomy.economy.Money;
 import net.minecraft.core.HolderLookup;
 import net.minecraft.nbt.CompoundTag;
 import net.minecraft.nbt.ListTag;
 import net.minecraft.nbt.Tag;
 import net.minecraft.server.MinecraftServer;
-import net.minecraft.world.level.saveddata.SavedData;
 import net.minecraft.world.level.storage.DimensionDataStorage;
 
 import java.util.*;
@@ -14,7 +14,7 @@ import java.util.*;
 /**
  * Stores per-player data like starting balance received flag and offline sale notifications
  */
-public class PlayerDataSavedData extends SavedData {
+public class PlayerDataSavedData extends AsyncSavedData {
 
     private static final String DATA_NAME = SimpleEconomy.MOD_ID + "_playerdata";
 
@@ -44,7 +44,7 @@ public class PlayerDataSavedData extends SavedData {
                 UUID playerUUID = UUID.fromString(key);
                 CompoundTag salesTag = offlineSalesTag.getCompound(key);
                 int saleCount = salesTag.getInt("saleCount");
-                double totalCoins = salesTag.getDouble("totalCoins");
+                long totalCoins = Money.read(salesTag, "totalCoins");
                 data.pendingOfflineSales.put(playerUUID, new OfflineSalesSummary(saleCount, totalCoins));
             } catch (IllegalArgumentException e) {
                 SimpleEconomy.LOGGER.warn("Invalid UUID in player data: {}", key);
@@ -55,7 +55,14 @@ public class PlayerDataSavedData extends SavedData {
     }
 
     @Override
-    public CompoundTag save(CompoundTag tag, HolderLookup.Provider provider) {
+    protected Snapshot snapshot(HolderLookup.Provider provider) {
+        Set<UUID> startingBalanceCopy = new HashSet<>(receivedStartingBalance);
+        Map<UUID, OfflineSalesSummary> offlineSalesCopy = new HashMap<>(pendingOfflineSales);
+        return tag -> encode(tag, startingBalanceCopy, offlineSalesCopy);
+    }
+
+    private static CompoundTag encode(CompoundTag tag, Set<UUID> receivedStartingBalance,
+                                      Map<UUID, OfflineSalesSummary> pendingOfflineSales) {
         // Save starting balance flags
         ListTag startingBalanceList = new ListTag();
         for (UUID uuid : receivedStartingBalance) {
@@ -70,7 +77,7 @@ public class PlayerDataSavedData extends SavedData {
         for (Map.Entry<UUID, OfflineSalesSummary> entry : pendingOfflineSales.entrySet()) {
             CompoundTag salesTag = new CompoundTag();
             salesTag.putInt("saleCount", entry.getValue().saleCount());
-            salesTag.putDouble("totalCoins", entry.getValue().totalCoins());
+            salesTag.putLong("totalCoins", entry.getValue().totalCoins());
             offlineSalesTag.put(entry.getKey().toString(), salesTag);
         }
         tag.put("pendingOfflineSales", offlineSalesTag);
@@ -89,11 +96,11 @@ public class PlayerDataSavedData extends SavedData {
     }
 
     // Offline sales methods
-    public void addOfflineSale(UUID sellerUUID, double amount) {
+    public void addOfflineSale(UUID sellerUUID, long amount) {
         OfflineSalesSummary existing = pendingOfflineSales.getOrDefault(sellerUUID, new OfflineSalesSummary(0, 0));
         pendingOfflineSales.put(sellerUUID, new OfflineSalesSummary(
             existing.saleCount() + 1,
-            existing.totalCoins() + amount
+            Money.add(existing.totalCoins(), amount)
         ));
         setDirty();
     }
@@ -118,5 +125,5 @@ public class PlayerDataSavedData extends SavedData {
         );
     }
 
-    public record OfflineSalesSummary(int saleCount, double totalCoins) {}
+    public record OfflineSalesSummary(int saleCount, long totalCoins) {}
 }
@@ -0,0 +1,519 @@
+package com.simpleeconomy.data;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * A finished day of the {@link TransactionLedger}, rewritten compactly for long-term storage.
+ * Records go into blocks of a few thousand. Each block carries its own tables of players and
+ * subjects and stores each field as a column: ids and numbers as varints, timestamps as gaps
+ * from the previous record, signed values zigzag-encoded, and the other party as a change from
+ * the previous record's. The block is then deflated. Readers inflate one block at a time.
+ * A posting is stored from the payer's side, as in the plain segment, with its tax and the
+ * payee's subject in two more columns.
+ *
+ * Layout: magic, then blocks of raw length, deflated length, CRC-32 of the deflated bytes and
+ * the deflated bytes themselves. Version 1 segments, from before postings, have no tax or
+ * payee subject columns and are still read.
+ */
+final class SealedSegment {
+
+    private static final int MAGIC_V1 = 0x53454731;
+    private static final int MAGIC = 0x53454732;
+    private static final int BLOCK_RECORDS = 8192;
+    // A block's raw size is bounded by its record count; anything bigger is corruption
+    private static final int MAX_RAW_BYTES = 64 * 1024 * 1024;
+
+    private SealedSegment() {
+    }
+
+    /**
+     * Write records to a new sealed file, a block at a time. The file is synced on close.
+     */
+    static final class Writer implements Closeable {
+        private final FileChannel channel;
+        private final Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        private final CRC32 crc = new CRC32();
+        private final Map<UUID, Integer> uuidIds = new HashMap<>();
+        private final Map<String, Integer> subjectIds = new HashMap<>();
+        private final Bytes tables = new Bytes();
+        private final Bytes columns = new Bytes();
+        private final int[] players = new int[BLOCK_RECORDS];
+        private final long[] timestamps = new long[BLOCK_RECORDS];
+        private final byte[] types = new byte[BLOCK_RECORDS];
+        private final long[] amounts = new long[BLOCK_RECORDS];
+        private final int[] parties = new int[BLOCK_RECORDS];
+        private final int[] numbers = new int[BLOCK_RECORDS];
+        private final int[] subjects = new int[BLOCK_RECORDS];
+        private final long[] taxes = new long[BLOCK_RECORDS];
+        private final int[] payeeSubjects = new int[BLOCK_RECORDS];
+        private byte[] compressed = new byte[64 * 1024];
+        private int count;
+        private long written;
+        private long records;
+
+        Writer(Path path) throws IOException {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+            channel.write(ByteBuffer.allocate(Integer.BYTES).putInt(0, MAGIC));
+            written = Integer.BYTES;
+        }
+
+        void add(TransactionLog.Record record) throws IOException {
+            switch (record) {
+                case TransactionLog.Entry entry -> {
+                    add(entry.player(), entry.transaction(), 0);
+                    taxes[count] = 0;
+                    payeeSubjects[count] = -1;
+                }
+                case TransactionLog.Posting posting -> {
+                    add(posting.payer(), posting.payerLeg(), TransactionLedger.POSTING_FLAG);
+                    taxes[count] = posting.tax();
+                    payeeSubjects[count] = subjectId(posting.payeeSubject());
+                }
+            }
+            records++;
+            if (++count == BLOCK_RECORDS) {
+                writeBlock();
+            }
+        }
+
+        private void add(UUID player, TransactionLog.Transaction transaction, int flags) {
+            players[count] = uuidId(player);
+            timestamps[count] = transaction.timestamp();
+            types[count] = (byte) (transaction.type().ordinal() | flags);
+            amounts[count] = transaction.amount();
+            parties[count] = transaction.otherParty() == null ? -1 : uuidId(transaction.otherParty());
+            numbers[count] = transaction.number();
+            subjects[count] = subjectId(transaction.subject());
+        }
+
+        /**
+         * Bytes written so far, and records added; the ratio is the cost per record at rest
+         */
+        long bytes() {
+            return written;
+        }
+
+        long records() {
+            return records;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                if (count > 0) {
+                    writeBlock();
+                }
+                channel.force(false);
+            } finally {
+                channel.close();
+                deflater.end();
+            }
+        }
+
+        private int uuidId(UUID uuid) {
+            return uuidIds.computeIfAbsent(uuid, key -> {
+                tables.writeLong(key.getMostSignificantBits());
+                tables.writeLong(key.getLeastSignificantBits());
+                return uuidIds.size();
+            });
+        }
+
+        private int subjectId(String subject) {
+            if (subject == null) {
+                return -1;
+            }
+            Integer id = subjectIds.get(subject);
+            if (id == null) {
+                id = subjectIds.size();
+                subjectIds.put(subject, id);
+            }
+            return id;
+        }
+
+        private void writeBlock() throws IOException {
+            columns.clear();
+            columns.writeVarLong(count);
+            columns.writeVarLong(uuidIds.size());
+            columns.write(tables);
+            String[] subjectTable = new String[subjectIds.size()];
+            subjectIds.forEach((subject, id) -> subjectTable[id] = subject);
+            columns.writeVarLong(subjectTable.length);
+            for (String subject : subjectTable) {
+                byte[] bytes = subject.getBytes(StandardCharsets.UTF_8);
+                columns.writeVarLong(bytes.length);
+                columns.write(bytes, bytes.length);
+            }
+
+            for (int i = 0; i < count; i++) {
+                columns.writeVarLong(players[i]);
+            }
+            long previousTime = 0;
+            for (int i = 0; i < count; i++) {
+                columns.writeVarLong(zigzag(timestamps[i] - previousTime));
+                previousTime = timestamps[i];
+            }
+            columns.write(types, count);
+            for (int i = 0; i < count; i++) {
+                columns.writeVarLong(zigzag(amounts[i]));
+            }
+            int previousParty = -1;
+            for (int i = 0; i < count; i++) {
+                columns.writeVarLong(zigzag(parties[i] - previousParty));
+                previousParty = parties[i];
+            }
+            for (int i = 0; i < count; i++) {
+                columns.writeVarLong(zigzag(numbers[i]));
+            }
+            for (int i = 0; i < count; i++) {
+                columns.writeVarLong(subjects[i] + 1);
+            }
+            for (int i = 0; i < count; i++) {
+                columns.writeVarLong(zigzag(taxes[i]));
+            }
+            for (int i = 0; i < count; i++) {
+                columns.writeVarLong(payeeSubjects[i] + 1);
+            }
+
+            deflater.reset();
+            deflater.setInput(columns.array(), 0, columns.length());
+            deflater.finish();
+            int length = 0;
+            while (!deflater.finished()) {
+                if (length == compressed.length) {
+                    compressed = Arrays.copyOf(compressed, compressed.length * 2);
+                }
+                length += deflater.deflate(compressed, length, compressed.length - length);
+            }
+            crc.reset();
+            crc.update(compressed, 0, length);
+
+            ByteBuffer header = ByteBuffer.allocate(3 * Integer.BYTES)
+                .putInt(columns.length()).putInt(length).putInt((int) crc.getValue()).flip();
+            ByteBuffer body = ByteBuffer.wrap(compressed, 0, length);
+            while (header.hasRemaining() || body.hasRemaining()) {
+                channel.write(new ByteBuffer[]{header, body});
+            }
+            written += header.capacity() + length;
+
+            count = 0;
+            uuidIds.clear();
+            subjectIds.clear();
+            tables.clear();
+        }
+    }
+
+    /**
+     * Add a player's transactions at or after {@code since} to {@code found}, in file order,
+     * including their side of postings. Blocks the player does not appear in are skipped once
+     * their table has been read.
+     */
+    static void read(Path path, UUID player, long since, List<TransactionLog.Transaction> found) throws IOException {
+        forEachBlock(path, (block, version) -> {
+            Block decoded = Block.decode(block, version, player, true);
+            if (decoded == null) {
+                return;
+            }
+            for (int i = 0; i < decoded.count; i++) {
+                if (decoded.timestamps[i] >= since
+                    && (decoded.players[i] == decoded.target || (decoded.isPosting(i) && decoded.parties[i] == decoded.target))) {
+                    TransactionLedger.addLegs(decoded.record(i), player, since, found);
+                }
+            }
+        });
+    }
+
+    /**
+     * Visit every balance change's player, sequence number and amount, in file order, numbering
+     * records on from {@code firstSequence}
+     */
+    static void visitAmounts(Path path, long firstSequence, TransactionLedger.AmountVisitor visitor) throws IOException {
+        long[] next = {firstSequence};
+        forEachBlock(path, (block, version) -> {
+            Block decoded = Block.decode(block, version, null, false);
+            long[] uuids = decoded.uuidBits;
+            for (int i = 0; i < decoded.count; i++) {
+                long sequence = next[0]++;
+                int player = decoded.players[i];
+                long amount = decoded.amounts[i];
+                visitor.accept(uuids[2 * player], uuids[2 * player + 1], sequence, amount);
+                if (decoded.isPosting(i) && decoded.parties[i] >= 0) {
+                    int payee = decoded.parties[i];
+                    visitor.accept(uuids[2 * payee], uuids[2 * payee + 1], sequence, -amount - decoded.taxes[i]);
+                }
+            }
+        });
+    }
+
+    @FunctionalInterface
+    private interface BlockReader {
+        void accept(ByteBuffer block, int version);
+    }
+
+    private static void forEachBlock(Path path, BlockReader reader) throws IOException {
+        Inflater inflater = new Inflater();
+        CRC32 check = new CRC32();
+        try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(3 * Integer.BYTES);
+            int version = 2;
+            if (readFully(file, header.limit(Integer.BYTES))) {
+                int magic = header.getInt(0);
+                if (magic == MAGIC_V1) {
+                    version = 1;
+                } else if (magic != MAGIC) {
+                    throw new IOException("Not a sealed ledger segment: " + path.getFileName());
+                }
+            }
+            while (readFully(file, header.clear())) {
+                int rawLength = header.getInt(0);
+                int length = header.getInt(4);
+                if (rawLength < 0 || rawLength > MAX_RAW_BYTES || length < 0 || length > MAX_RAW_BYTES) {
+                    throw new IOException("Corrupt block header in " + path.getFileName());
+                }
+                ByteBuffer body = ByteBuffer.allocate(length);
+                if (!readFully(file, body)) {
+                    throw new IOException("Truncated block in " + path.getFileName());
+                }
+                check.reset();
+                check.update(body.array(), 0, length);
+                if (header.getInt(8) != (int) check.getValue()) {
+                    throw new IOException("Corrupt block in " + path.getFileName());
+                }
+
+                byte[] raw = new byte[rawLength];
+                inflater.reset();
+                inflater.setInput(body.array(), 0, length);
+                try {
+                    if (inflater.inflate(raw) != rawLength) {
+                        throw new IOException("Short block in " + path.getFileName());
+                    }
+                } catch (DataFormatException e) {
+                    throw new IOException("Corrupt block in " + path.getFileName(), e);
+                }
+                reader.accept(ByteBuffer.wrap(raw), version);
+            }
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * One block's columns, decoded in full
+     */
+    private static final class Block {
+        int count;
+        long[] uuidBits;
+        // Index of the player being read for in the id table
+        int target = -1;
+        String[] subjectTable;
+        int[] players;
+        long[] timestamps;
+        byte[] types;
+        long[] amounts;
+        int[] parties;
+        int[] numbers;
+        int[] subjects;
+        long[] taxes;
+        int[] payeeSubjects;
+
+        /**
+         * Decode a block, or return null if a player is given and is not in it. Subject text
+         * is only kept if asked for.
+         */
+        static Block decode(ByteBuffer in, int version, UUID player, boolean withSubjects) {
+            Block block = new Block();
+            int count = (int) readVarLong(in);
+            block.count = count;
+            long[] uuids = new long[2 * (int) readVarLong(in)];
+            for (int i = 0; i < uuids.length; i += 2) {
+                uuids[i] = in.getLong();
+                uuids[i + 1] = in.getLong();
+                if (player != null && uuids[i] == player.getMostSignificantBits()
+                    && uuids[i + 1] == player.getLeastSignificantBits()) {
+                    block.target = i / 2;
+                }
+            }
+            if (player != null && block.target < 0) {
+                return null;
+            }
+            block.uuidBits = uuids;
+            int subjectCount = (int) readVarLong(in);
+            block.subjectTable = withSubjects ? new String[subjectCount] : null;
+            for (int i = 0; i < subjectCount; i++) {
+                int length = (int) readVarLong(in);
+                if (withSubjects) {
+                    block.subjectTable[i] = new String(in.array(), in.position(), length, StandardCharsets.UTF_8);
+                }
+                in.position(in.position() + length);
+            }
+
+            block.players = new int[count];
+            for (int i = 0; i < count; i++) {
+                block.players[i] = (int) readVarLong(in);
+            }
+            block.timestamps = new long[count];
+            long time = 0;
+            for (int i = 0; i < count; i++) {
+                time += unzigzag(readVarLong(in));
+                block.timestamps[i] = time;
+            }
+            block.types = new byte[count];
+            in.get(block.types);
+            block.amounts = new long[count];
+            for (int i = 0; i < count; i++) {
+                block.amounts[i] = unzigzag(readVarLong(in));
+            }
+            block.parties = new int[count];
+            int party = -1;
+            for (int i = 0; i < count; i++) {
+                party += (int) unzigzag(readVarLong(in));
+                block.parties[i] = party;
+            }
+            block.numbers = new int[count];
+            for (int i = 0; i < count; i++) {
+                block.numbers[i] = (int) unzigzag(readVarLong(in));
+            }
+            block.subjects = new int[count];
+            for (int i = 0; i < count; i++) {
+                block.subjects[i] = (int) readVarLong(in) - 1;
+            }
+            block.taxes = new long[count];
+            block.payeeSubjects = new int[count];
+            if (version >= 2) {
+                for (int i = 0; i < count; i++) {
+                    block.taxes[i] = unzigzag(readVarLong(in));
+                }
+                for (int i = 0; i < count; i++) {
+                    block.payeeSubjects[i] = (int) readVarLong(in) - 1;
+                }
+            } else {
+                Arrays.fill(block.payeeSubjects, -1);
+            }
+            return block;
+        }
+
+        boolean isPosting(int i) {
+            return (types[i] & TransactionLedger.POSTING_FLAG) != 0;
+        }
+
+        TransactionLog.Record record(int i) {
+            UUID player = uuid(players[i]);
+            UUID party = parties[i] < 0 ? null : uuid(parties[i]);
+            String subject = subject(subjects[i]);
+            int type = types[i] & ~TransactionLedger.POSTING_FLAG & 0xFF;
+            if (isPosting(i)) {
+                return TransactionLedger.posting(player, type, -amounts[i], party, taxes[i], timestamps[i],
+                    subject, subject(payeeSubjects[i]), numbers[i]);
+            }
+            return new TransactionLog.Entry(player, new TransactionLog.Transaction(
+                TransactionLedger.typeOf(type), amounts[i], timestamps[i], party, subject, numbers[i]));
+        }
+
+        private UUID uuid(int id) {
+            return new UUID(uuidBits[2 * id], uuidBits[2 * id + 1]);
+        }
+
+        private String subject(int id) {
+            return id < 0 ? null : subjectTable[id];
+        }
+    }
+
+    private static boolean readFully(FileChannel file, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (file.read(buffer) < 0) {
+                if (buffer.position() == 0) {
+                    return false;
+                }
+                throw new IOException("Unexpected end of sealed ledger segment");
+            }
+        }
+        return true;
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static long readVarLong(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Varint too long");
+    }
+
+    /**
+     * Growable byte array for building a block
+     */
+    private static final class Bytes {
+        private byte[] bytes = new byte[64 * 1024];
+        private int length;
+
+        byte[] array() {
+            return bytes;
+        }
+
+        int length() {
+            return length;
+        }
+
+        void clear() {
+            length = 0;
+        }
+
+        void writeLong(long value) {
+            ensure(Long.BYTES);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                bytes[length++] = (byte) (value >>> shift);
+            }
+        }
+
+        void writeVarLong(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                bytes[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[length++] = (byte) value;
+        }
+
+        void write(byte[] source, int count) {
+            ensure(count);
+            System.arraycopy(source, 0, bytes, length, count);
+            length += count;
+        }
+
+        void write(Bytes source) {
+            write(source.bytes, source.length);
+        }
+
+        private void ensure(int extra) {
+            if (length + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + extra));
+            }
+        }
+    }
+}
@@ -7,18 +7,22 @@ import net.minecraft.nbt.CompoundTag;
 import net.minecraft.nbt.ListTag;
 import net.minecraft.nbt.Tag;
 import net.minecraft.server.MinecraftServer;
-import net.minecraft.world.level.saveddata.SavedData;
 import net.minecraft.world.level.storage.DimensionDataStorage;
 
 import java.util.*;
 import java.util.stream.Collectors;
 
-public class ShopSavedData extends SavedData {
+public class ShopSavedData extends AsyncSavedData {
 
     private static final String DATA_NAME = SimpleEconomy.MOD_ID + "_shops";
 
     private final Map<UUID, Shop> shops = new HashMap<>();
     private final Map<UUID, Set<UUID>> favoriteShops = new HashMap<>(); // playerUUID -> set of shopIds
+    // Derived from shops, never saved: ownerUUID -> shopIds in creation order, and featured shopIds
+    private final Map<UUID, Set<UUID>> shopsByOwner = new HashMap<>();
+    private final Set<UUID> featuredShops = new LinkedHashSet<>();
+    // Derived from favoriteShops, never saved: shopId -> players who favorited it; its size is the count
+    private final Map<UUID, Set<UUID>> favoritedBy = new HashMap<>();
 
     public ShopSavedData() {
     }
@@ -31,6 +35,7 @@ public class ShopSavedData extends SavedData {
             try {
                 Shop shop = Shop.load(shopsTag.getCompound(i), provider);
                 data.shops.put(shop.getShopId(), shop);
+                data.index(shop);
             } catch (Exception e) {
                 SimpleEconomy.LOGGER.warn("Failed to load shop: {}", e.getMessage());
             }
@@ -43,9 +48,16 @@ public class ShopSavedData extends SavedData {
                 Set<UUID> playerFavorites = new HashSet<>();
                 ListTag favoritesList = favoritesTag.getList(key, Tag.TAG_COMPOUND);
                 for (int i = 0; i < favoritesList.size(); i++) {
-                    playerFavorites.add(favoritesList.getCompound(i).getUUID("shopId"));
+                    UUID shopId = favoritesList.getCompound(i).getUUID("shopId");
+                    // Shops deleted before favorites were cleaned up with them are dropped here
+                    if (data.shops.containsKey(shopId)) {
+                        playerFavorites.add(shopId);
+                        data.favoritedBy.computeIfAbsent(shopId, k -> new HashSet<>()).add(playerUUID);
+                    }
+                }
+                if (!playerFavorites.isEmpty()) {
+                    data.favoriteShops.put(playerUUID, playerFavorites);
                 }
-                data.favoriteShops.put(playerUUID, playerFavorites);
             } catch (IllegalArgumentException e) {
                 SimpleEconomy.LOGGER.warn("Invalid UUID in favorites data: {}", key);
             }
@@ -55,9 +67,23 @@ public class ShopSavedData extends SavedData {
     }
 
     @Override
-    public CompoundTag save(CompoundTag tag, HolderLookup.Provider provider) {
-        ListTag shopsTag = new ListTag();
+    protected Snapshot snapshot(HolderLookup.Provider provider) {
+        // Shops and their item stacks are mutable, so deep-copy them; encoding the stacks is the slow part
+        List<Shop> shopsCopy = new ArrayList<>(shops.size());
         for (Shop shop : shops.values()) {
+            shopsCopy.add(shop.copy());
+        }
+        Map<UUID, Set<UUID>> favoritesCopy = new HashMap<>(favoriteShops.size());
+        for (Map.Entry<UUID, Set<UUID>> entry : favoriteShops.entrySet()) {
+            favoritesCopy.put(entry.getKey(), new HashSet<>(entry.getValue()));
+        }
+        return tag -> encode(tag, provider, shopsCopy, favoritesCopy);
+    }
+
+    private static CompoundTag encode(CompoundTag tag, HolderLookup.Provider provider,
+                                      List<Shop> shops, Map<UUID, Set<UUID>> favoriteShops) {
+        ListTag shopsTag = new ListTag();
+        for (Shop shop : shops) {
             shopsTag.add(shop.save(provider));
         }
         tag.put("shops", shopsTag);
@@ -78,15 +104,31 @@ public class ShopSavedData extends SavedData {
     }
 
     public void addShop(Shop shop) {
-        shops.put(shop.getShopId(), shop);
+        Shop replaced = shops.put(shop.getShopId(), shop);
+        if (replaced != null) {
+            unindex(replaced);
+        }
+        index(shop);
         setDirty();
     }
 
     public void removeShop(UUID shopId) {
-        shops.remove(shopId);
-        // Remove from all favorites
-        for (Set<UUID> favorites : favoriteShops.values()) {
-            favorites.remove(shopId);
+        Shop shop = shops.remove(shopId);
+        if (shop != null) {
+            unindex(shop);
+        }
+        // Remove from the favorites of everyone who had it
+        Set<UUID> players = favoritedBy.remove(shopId);
+        if (players != null) {
+            for (UUID playerUUID : players) {
+                Set<UUID> favorites = favoriteShops.get(playerUUID);
+                if (favorites != null) {
+                    favorites.remove(shopId);
+                    if (favorites.isEmpty()) {
+                        favoriteShops.remove(playerUUID);
+                    }
+                }
+            }
         }
         setDirty();
     }
@@ -100,15 +142,62 @@ public class ShopSavedData extends SavedData {
     }
 
     public List<Shop> getShopsByOwner(UUID ownerUUID) {
-        return shops.values().stream()
-            .filter(shop -> shop.getOwnerUUID().equals(ownerUUID))
-            .collect(Collectors.toList());
+        Set<UUID> owned = shopsByOwner.get(ownerUUID);
+        return owned == null ? new ArrayList<>() : lookup(owned);
+    }
+
+    public int countShopsByOwner(UUID ownerUUID) {
+        Set<UUID> owned = shopsByOwner.get(ownerUUID);
+        return owned == null ? 0 : owned.size();
     }
 
     public List<Shop> getFeaturedShops() {
-        return shops.values().stream()
-            .filter(Shop::isFeatured)
-            .collect(Collectors.toList());
+        return lookup(featuredShops);
+    }
+
+    /**
+     * Feature or unfeature a shop. Goes through here rather than {@link Shop#setFeatured} so
+     * the featured index stays in step.
+     */
+    public void setFeatured(Shop shop, boolean featured) {
+        shop.setFeatured(featured);
+        if (shops.get(shop.getShopId()) == shop) {
+            if (featured) {
+                featuredShops.add(shop.getShopId());
+            } else {
+                featuredShops.remove(shop.getShopId());
+            }
+        }
+        setDirty();
+    }
+
+    private void index(Shop shop) {
+        shopsByOwner.computeIfAbsent(shop.getOwnerUUID(), k -> new LinkedHashSet<>()).add(shop.getShopId());
+        if (shop.isFeatured()) {
+            featuredShops.add(shop.getShopId());
+        }
+    }
+
+    private void unindex(Shop shop) {
+        Set<UUID> owned = shopsByOwner.get(shop.getOwnerUUID());
+        if (owned != null) {
+            owned.remove(shop.getShopId());
+            if (owned.isEmpty()) {
+                shopsByOwner.remove(shop.getOwnerUUID());
+            }
+        }
+        featuredShops.remove(shop.getShopId());
+    }
+
+    private List<Shop> lookup(Set<UUID> shopIds) {
+        List<Shop> result = new ArrayList<>(shopIds.size());
+        for (UUID shopId : shopIds) {
+            Shop shop = shops.get(shopId);
+            if (shop != null) {
+                result.add(shop);
+            }
+        }
+        return result;
     }
 
     public List<Shop> searchShops(String query) {
@@ -123,18 +212,53 @@ public class ShopSavedData extends SavedData {
     }
 
     public void addFavorite(UUID playerUUID, UUID shopId) {
-        favoriteShops.computeIfAbsent(playerUUID, k -> new HashSet<>()).add(shopId);
-        setDirty();
+        if (!shops.containsKey(shopId)) {
+            return;
+        }
+        if (favoriteShops.computeIfAbsent(playerUUID, k -> new HashSet<>()).add(shopId)) {
+            favoritedBy.computeIfAbsent(shopId, k -> new HashSet<>()).add(playerUUID);
+            setDirty();
+        }
     }
 
     public void removeFavorite(UUID playerUUID, UUID shopId) {
         Set<UUID> favorites = favoriteShops.get(playerUUID);
-        if (favorites != null) {
-            favorites.remove(shopId);
+        if (favorites != null && favorites.remove(shopId)) {
+            if (favorites.isEmpty()) {
+                favoriteShops.remove(playerUUID);
+            }
+            Set<UUID> players = favoritedBy.get(shopId);
+            if (players != null) {
+                players.remove(playerUUID);
+                if (players.isEmpty()) {
+                    favoritedBy.remove(shopId);
+                }
+            }
             setDirty();
         }
     }
 
+    /**
+     * Favorite the shop if the player has not, or unfavorite it if they have. Returns whether
+     * it is a favorite now.
+     */
+    public boolean toggleFavorite(UUID playerUUID, UUID shopId) {
+        if (isFavorite(playerUUID, shopId)) {
+            removeFavorite(playerUUID, shopId);
+            return false;
+        }
+        addFavorite(playerUUID, shopId);
+        return isFavorite(playerUUID, shopId);
+    }
+
+    /**
+     * How many players have the shop as a favorite
+     */
+    public int getFavoriteCount(UUID shopId) {
+        Set<UUID> players = favoritedBy.get(shopId);
+        return players == null ? 0 : players.size();
+    }
+
     public boolean isFavorite(UUID playerUUID, UUID shopId) {
         Set<UUID> favorites = favoriteShops.get(playerUUID);
         return favorites != null && favorites.contains(shopId);
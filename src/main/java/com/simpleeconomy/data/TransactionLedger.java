@@ -0,0 +1,528 @@
+package com.simpleeconomy.data;
+
+import com.simpleeconomy.SimpleEconomy;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+
+/**
+ * Every transaction ever logged, appended to one segment file per day (UTC) so history is only
+ * bounded by disk. Only the current day's segment is open; older ones are read from disk when
+ * someone asks for them, and retention deletes whole segments. Records are length-prefixed and
+ * checksummed, so a write cut short by a crash is detected and cut off when the day is reopened.
+ *
+ * Once a day is over its segment is sealed: rewritten as a {@link SealedSegment} a fraction of
+ * the size, on a background thread. Reads take either kind.
+ *
+ * Records never move once written, so each has a sequence number: its day in the high 32 bits
+ * and its place in that day's segment in the low. Sequence numbers only grow, and mark a point
+ * in the ledger exactly where a timestamp could fall between records logged the same millisecond.
+ */
+class TransactionLedger implements Closeable {
+
+    private static final String EXTENSION = ".ledger";
+    private static final String SEALED_EXTENSION = ".ledgerz";
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+    private static final int BUFFER_BYTES = 64 * 1024;
+    private static final int MAX_SUBJECT_BYTES = 1024;
+    // player, timestamp, type, amount, other party, number, subject length
+    private static final int FIXED_PAYLOAD = 16 + 8 + 1 + 8 + 16 + 4 + 2;
+    // A posting also has the tax and the payee's subject
+    private static final int MAX_PAYLOAD = FIXED_PAYLOAD + 8 + 2 + 2 * MAX_SUBJECT_BYTES;
+    // Set on the type of a record that is a posting, stored from the payer's side
+    static final int POSTING_FLAG = 0x80;
+    // Offsets of the type and other party, counted from just after the player's id
+    private static final int TYPE_OFFSET = 8;
+    private static final int PARTY_OFFSET = 8 + 1 + 8;
+    private static final TransactionLog.TransactionType[] TYPES = TransactionLog.TransactionType.values();
+
+    /**
+     * Reads, sealing and retention all run here one at a time, so a read never sees a segment
+     * halfway through being sealed or deleted
+     */
+    static final ExecutorService BACKGROUND = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "SimpleEconomy-Ledger");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Path directory;
+    private final int retentionDays;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES);
+    private final CRC32 crc = new CRC32();
+    private FileChannel channel;
+    // Epoch day of the open segment, and how many records it holds
+    private long day;
+    private long records;
+
+    @FunctionalInterface
+    private interface RecordVisitor {
+        /**
+         * The payload is positioned just after the player's id
+         */
+        void accept(long msb, long lsb, ByteBuffer payload) throws IOException;
+    }
+
+    /**
+     * Sees one balance change: a player, the record's sequence number and the amount, for
+     * replaying balances. A posting is seen as two, or three with tax, with the same number.
+     */
+    @FunctionalInterface
+    interface AmountVisitor {
+        void accept(long msb, long lsb, long sequence, long amount);
+    }
+
+    private TransactionLedger(Path directory, int retentionDays) {
+        this.directory = directory;
+        this.retentionDays = retentionDays;
+    }
+
+    /**
+     * Open today's segment for appending, dropping any torn record at its end. Earlier days
+     * are sealed and segments past retention deleted in the background. A retention of 0 keeps
+     * everything.
+     */
+    static TransactionLedger open(Path directory, int retentionDays) throws IOException {
+        TransactionLedger ledger = new TransactionLedger(directory, retentionDays);
+        Files.createDirectories(directory);
+        ledger.openSegment(dayOf(System.currentTimeMillis()));
+        return ledger;
+    }
+
+    /**
+     * An entry is written as its transaction. A posting is written once, as the payer's leg
+     * flagged as a posting, with the tax and the payee's subject after it.
+     */
+    void append(TransactionLog.Record record) throws IOException {
+        switch (record) {
+            case TransactionLog.Entry entry -> append(entry.player(), entry.transaction(), null);
+            case TransactionLog.Posting posting -> append(posting.payer(), posting.payerLeg(), posting);
+        }
+    }
+
+    private void append(UUID player, TransactionLog.Transaction transaction, TransactionLog.Posting posting) throws IOException {
+        // Segments only move forward, so an entry made just before midnight and logged
+        // just after lands in the new day's segment
+        long transactionDay = dayOf(transaction.timestamp());
+        if (transactionDay > day) {
+            sync();
+            channel.close();
+            openSegment(transactionDay);
+        }
+
+        byte[] subject = encode(transaction.subject());
+        byte[] payeeSubject = posting == null ? null : encode(posting.payeeSubject());
+        int length = FIXED_PAYLOAD + (subject == null ? 0 : subject.length);
+        if (posting != null) {
+            length += Long.BYTES + Short.BYTES + (payeeSubject == null ? 0 : payeeSubject.length);
+        }
+        if (buffer.remaining() < length + 2 * Integer.BYTES) {
+            drain();
+        }
+        buffer.putInt(length);
+        int start = buffer.position();
+        buffer.putLong(player.getMostSignificantBits()).putLong(player.getLeastSignificantBits());
+        buffer.putLong(transaction.timestamp());
+        buffer.put((byte) (transaction.type().ordinal() | (posting == null ? 0 : POSTING_FLAG)));
+        buffer.putLong(transaction.amount());
+        UUID otherParty = transaction.otherParty();
+        buffer.putLong(otherParty == null ? 0 : otherParty.getMostSignificantBits());
+        buffer.putLong(otherParty == null ? 0 : otherParty.getLeastSignificantBits());
+        buffer.putInt(transaction.number());
+        putSubject(subject);
+        if (posting != null) {
+            buffer.putLong(posting.tax());
+            putSubject(payeeSubject);
+        }
+        crc.reset();
+        crc.update(buffer.array(), start, length);
+        buffer.putInt((int) crc.getValue());
+        records++;
+    }
+
+    /**
+     * Sequence number the next record appended will be at or after
+     */
+    long sequence() {
+        return sequence(day, records);
+    }
+
+    static long sequence(long day, long record) {
+        return (day << 32) | record;
+    }
+
+    private void putSubject(byte[] subject) {
+        if (subject == null) {
+            buffer.putShort((short) -1);
+        } else {
+            buffer.putShort((short) subject.length).put(subject);
+        }
+    }
+
+    /**
+     * Write buffered records to the open segment and fsync it, so everything appended so far
+     * survives a crash
+     */
+    void sync() throws IOException {
+        drain();
+        channel.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            sync();
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * A player's transactions at or after {@code since}, newest first, at most {@code limit}.
+     * Postings count for both sides. Reads only segments on disk, so it is safe from any
+     * thread while the ledger is written.
+     */
+    static List<TransactionLog.Transaction> read(Path directory, UUID player, long since, int limit) throws IOException {
+        List<TransactionLog.Transaction> found = new ArrayList<>();
+        long msb = player.getMostSignificantBits();
+        long lsb = player.getLeastSignificantBits();
+        for (Path path : listDays(directory).tailMap(dayOf(since), true).descendingMap().values()) {
+            List<TransactionLog.Transaction> segment = new ArrayList<>();
+            if (isSealed(path)) {
+                SealedSegment.read(path, player, since, segment);
+            } else {
+                scan(path, (recordMsb, recordLsb, payload) -> {
+                    int at = payload.position();
+                    boolean mine = (recordMsb == msb && recordLsb == lsb)
+                        || ((payload.get(at + TYPE_OFFSET) & POSTING_FLAG) != 0
+                            && payload.getLong(at + PARTY_OFFSET) == msb && payload.getLong(at + PARTY_OFFSET + 8) == lsb);
+                    if (mine) {
+                        addLegs(decode(recordMsb, recordLsb, payload), player, since, segment);
+                    }
+                });
+            }
+            Collections.reverse(segment);
+            for (TransactionLog.Transaction transaction : segment) {
+                found.add(transaction);
+                if (found.size() == limit) {
+                    return found;
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Add a record's legs that belong to the player and are at or after {@code since}
+     */
+    static void addLegs(TransactionLog.Record record, UUID player, long since, List<TransactionLog.Transaction> found) {
+        record.forEachLeg((legPlayer, transaction) -> {
+            if (legPlayer.equals(player) && transaction.timestamp() >= since) {
+                found.add(transaction);
+            }
+        });
+    }
+
+    /**
+     * Segments that may hold records at or after a sequence number, oldest first
+     */
+    static List<Path> segmentsFrom(Path directory, long sequence) throws IOException {
+        return new ArrayList<>(listDays(directory).tailMap(sequence >>> 32, true).values());
+    }
+
+    /**
+     * The earliest day still on disk, or -1 if there are none
+     */
+    static long oldestDay(Path directory) throws IOException {
+        NavigableMap<Long, Path> days = listDays(directory);
+        return days.isEmpty() ? -1 : days.firstKey();
+    }
+
+    /**
+     * Visit every record in a segment of either kind. Several threads may read at once, but
+     * only while a task on {@link #BACKGROUND} holds off sealing and retention.
+     */
+    static void visitAmounts(Path segment, AmountVisitor visitor) throws IOException {
+        long first = sequence(dayOf(segment), 0);
+        if (isSealed(segment)) {
+            SealedSegment.visitAmounts(segment, first, visitor);
+            return;
+        }
+        long[] next = {first};
+        scan(segment, (msb, lsb, payload) -> {
+            long sequence = next[0]++;
+            payload.getLong();
+            int type = payload.get();
+            long amount = payload.getLong();
+            visitor.accept(msb, lsb, sequence, amount);
+            if ((type & POSTING_FLAG) != 0) {
+                long payeeMsb = payload.getLong();
+                long payeeLsb = payload.getLong();
+                payload.getInt();
+                int subjectLength = payload.getShort();
+                payload.position(payload.position() + Math.max(subjectLength, 0));
+                // The payer's amount is negative, and the payee pays the tax out of the rest
+                visitor.accept(payeeMsb, payeeLsb, sequence, -amount - payload.getLong());
+            }
+        });
+    }
+
+    static long dayOf(long millis) {
+        return Math.floorDiv(millis, MILLIS_PER_DAY);
+    }
+
+    private void drain() throws IOException {
+        if (buffer.position() == 0) {
+            return;
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private void openSegment(long segmentDay) throws IOException {
+        Path path = pathFor(directory, segmentDay);
+        long[] count = {0};
+        long valid = Files.exists(path) ? scan(path, (msb, lsb, payload) -> count[0]++) : 0;
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        if (channel.size() > valid) {
+            SimpleEconomy.LOGGER.warn("Transaction ledger {} ends in a torn record, cutting it off", path.getFileName());
+            channel.truncate(valid);
+        }
+        channel.position(valid);
+        day = segmentDay;
+        records = count[0];
+        BACKGROUND.execute(() -> maintain(directory, segmentDay, retentionDays));
+    }
+
+    /**
+     * Seal every day before the open one and delete days past retention
+     */
+    private static void maintain(Path directory, long openDay, int retentionDays) {
+        try {
+            for (Map.Entry<Long, Path> segment : listDays(directory).headMap(openDay, false).entrySet()) {
+                long segmentDay = segment.getKey();
+                if (retentionDays > 0 && segmentDay <= openDay - retentionDays) {
+                    Files.deleteIfExists(pathFor(directory, segmentDay));
+                    Files.deleteIfExists(sealedPathFor(directory, segmentDay));
+                } else if (!isSealed(segment.getValue())) {
+                    seal(directory, segmentDay);
+                } else {
+                    // Sealed before a crash, but the plain segment outlived it
+                    Files.deleteIfExists(pathFor(directory, segmentDay));
+                }
+            }
+        } catch (IOException e) {
+            SimpleEconomy.LOGGER.warn("Failed to seal or expire transaction ledger segments", e);
+        }
+    }
+
+    /**
+     * Rewrite a finished day as a sealed segment. It is written beside the original and renamed
+     * into place once complete, and only then is the original deleted, so a crash part way
+     * leaves one whole copy or the other.
+     */
+    private static void seal(Path directory, long segmentDay) throws IOException {
+        Path path = pathFor(directory, segmentDay);
+        Path sealed = sealedPathFor(directory, segmentDay);
+        Path temporary = directory.resolve(sealed.getFileName() + ".tmp");
+        long records;
+        long bytes;
+        try (SealedSegment.Writer writer = new SealedSegment.Writer(temporary)) {
+            scan(path, (msb, lsb, payload) -> writer.add(decode(msb, lsb, payload)));
+            records = writer.records();
+            bytes = writer.bytes();
+        } catch (IOException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        Files.move(temporary, sealed, StandardCopyOption.ATOMIC_MOVE);
+        long before = Files.size(path);
+        Files.delete(path);
+        SimpleEconomy.LOGGER.info("Sealed transaction ledger {}: {} records, {} bytes down to {} ({} bytes per record)",
+            path.getFileName(), records, before, bytes,
+            records == 0 ? "0" : String.format("%.1f", (double) bytes / records));
+    }
+
+    /**
+     * Visit every intact record in a segment and return the length of the intact prefix
+     */
+    private static long scan(Path path, RecordVisitor visitor) throws IOException {
+        ByteBuffer in = ByteBuffer.allocate(BUFFER_BYTES);
+        CRC32 check = new CRC32();
+        long valid = 0;
+        try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ)) {
+            boolean end = false;
+            while (!end) {
+                end = file.read(in) < 0;
+                in.flip();
+                while (in.remaining() >= Integer.BYTES) {
+                    int length = in.getInt(in.position());
+                    if (length < FIXED_PAYLOAD || length > MAX_PAYLOAD) {
+                        return corrupt(path, valid);
+                    }
+                    if (in.remaining() < length + 2 * Integer.BYTES) {
+                        break;
+                    }
+                    int start = in.position() + Integer.BYTES;
+                    check.reset();
+                    check.update(in.array(), start, length);
+                    if (in.getInt(start + length) != (int) check.getValue()) {
+                        return corrupt(path, valid);
+                    }
+                    ByteBuffer payload = in.slice(start, length);
+                    visitor.accept(payload.getLong(), payload.getLong(), payload);
+                    in.position(start + length + Integer.BYTES);
+                    valid += length + 2 * Integer.BYTES;
+                }
+                in.compact();
+            }
+        }
+        return valid;
+    }
+
+    private static long corrupt(Path path, long valid) {
+        SimpleEconomy.LOGGER.warn("Transaction ledger {} has a corrupt record at byte {}, ignoring the rest",
+            path.getFileName(), valid);
+        return valid;
+    }
+
+    /**
+     * The record whose payload follows the player's id
+     */
+    private static TransactionLog.Record decode(long msb, long lsb, ByteBuffer payload) {
+        long timestamp = payload.getLong();
+        int type = payload.get() & 0xFF;
+        long amount = payload.getLong();
+        long partyMsb = payload.getLong();
+        long partyLsb = payload.getLong();
+        int number = payload.getInt();
+        String subject = getSubject(payload);
+        UUID otherParty = partyMsb == 0 && partyLsb == 0 ? null : new UUID(partyMsb, partyLsb);
+        if ((type & POSTING_FLAG) != 0) {
+            return posting(new UUID(msb, lsb), type & ~POSTING_FLAG, -amount, otherParty, payload.getLong(), timestamp,
+                subject, getSubject(payload), number);
+        }
+        return new TransactionLog.Entry(new UUID(msb, lsb),
+            new TransactionLog.Transaction(typeOf(type), amount, timestamp, otherParty, subject, number));
+    }
+
+    private static String getSubject(ByteBuffer payload) {
+        int length = payload.getShort();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        payload.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A posting read back from either kind of segment. One whose type this version does not
+     * know as a transfer, or with no payee, is kept as the payer's leg alone.
+     */
+    static TransactionLog.Record posting(UUID payer, int type, long amount, UUID payee, long tax, long timestamp,
+                                         String payerSubject, String payeeSubject, int number) {
+        TransactionLog.TransactionType known = typeOf(type);
+        if (known.counterpart() == known || payee == null) {
+            return new TransactionLog.Entry(payer,
+                new TransactionLog.Transaction(known, -amount, timestamp, payee, payerSubject, number));
+        }
+        return new TransactionLog.Posting(known, payer, payee, amount, tax, timestamp, payerSubject, payeeSubject, number);
+    }
+
+    /**
+     * A stored type, with anything unknown read as an admin adjustment
+     */
+    static TransactionLog.TransactionType typeOf(int type) {
+        return type >= 0 && type < TYPES.length ? TYPES[type] : TransactionLog.TransactionType.ADMIN_ADD;
+    }
+
+    /**
+     * UTF-8 bytes of a subject, cut to fit a record
+     */
+    private static byte[] encode(String subject) {
+        if (subject == null) {
+            return null;
+        }
+        byte[] bytes = subject.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length <= MAX_SUBJECT_BYTES) {
+            return bytes;
+        }
+        // Back up to a character boundary so the cut does not leave half a character
+        int end = MAX_SUBJECT_BYTES;
+        while (end > 0 && (bytes[end] & 0xC0) == 0x80) {
+            end--;
+        }
+        return Arrays.copyOf(bytes, end);
+    }
+
+    /**
+     * Each day with a segment on disk, mapped to its sealed segment if it has one
+     */
+    private static NavigableMap<Long, Path> listDays(Path directory) throws IOException {
+        NavigableMap<Long, Path> days = new TreeMap<>();
+        if (!Files.isDirectory(directory)) {
+            return days;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*{" + EXTENSION + "," + SEALED_EXTENSION + "}")) {
+            for (Path file : files) {
+                try {
+                    long day = dayOf(file);
+                    if (isSealed(file)) {
+                        days.put(day, file);
+                    } else {
+                        days.putIfAbsent(day, file);
+                    }
+                } catch (DateTimeParseException ignored) {
+                    // Not one of ours
+                }
+            }
+        }
+        return days;
+    }
+
+    /**
+     * The day a segment file is for, from its name
+     */
+    private static long dayOf(Path segment) {
+        String name = segment.getFileName().toString();
+        String date = name.substring(0, name.length() - (isSealed(segment) ? SEALED_EXTENSION : EXTENSION).length());
+        return LocalDate.parse(date).toEpochDay();
+    }
+
+    private static boolean isSealed(Path path) {
+        return path.getFileName().toString().endsWith(SEALED_EXTENSION);
+    }
+
+    private static Path pathFor(Path directory, long day) {
+        return directory.resolve(LocalDate.ofEpochDay(day) + EXTENSION);
+    }
+
+    private static Path sealedPathFor(Path directory, long day) {
+        return directory.resolve(LocalDate.ofEpochDay(day) + SEALED_EXTENSION);
+    }
+}
@@ -1,23 +1,47 @@
 package com.simpleeconomy.data;
 
 import com.simpleeconomy.SimpleEconomy;
+import com.simpleeconomy.config.ModConfig;
+import com.simpleeconomy.economy.Money;
 import net.minecraft.core.HolderLookup;
 import net.minecraft.nbt.CompoundTag;
 import net.minecraft.nbt.ListTag;
+import net.minecraft.nbt.StringTag;
 import net.minecraft.nbt.Tag;
 import net.minecraft.server.MinecraftServer;
-import net.minecraft.world.level.saveddata.SavedData;
 import net.minecraft.world.level.storage.DimensionDataStorage;
+import net.minecraft.world.level.storage.LevelResource;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.BiConsumer;
+import java.util.function.IntUnaryOperator;
 
-public class TransactionLog extends SavedData {
+public class TransactionLog extends AsyncSavedData {
 
     private static final String DATA_NAME = SimpleEconomy.MOD_ID + "_transactions";
-    private static final int MAX_TRANSACTIONS_PER_PLAYER = 50;
-
-    private final Map<UUID, List<Transaction>> playerTransactions = new HashMap<>();
+    private static final String LEDGER_NAME = SimpleEconomy.MOD_ID + "_ledger";
+
+    private final int depth = ModConfig.getTransactionHistoryDepth();
+    private final Map<UUID, TransactionRing> playerTransactions = new HashMap<>();
+    private final Map<UUID, EarningsRollup> earnings = new HashMap<>();
+    // Shared by every ring, so each name and player is held once however often it appears
+    private final Interner<UUID> parties = new Interner<>();
+    private final Interner<String> subjects = new Interner<>();
+    private final Queue<Record> submitted = new ConcurrentLinkedQueue<>();
+    private boolean attached;
+    private Path ledgerDirectory;
+    // Read by reconcile tasks waiting for the ledger to catch up
+    private volatile LedgerWriter ledger;
+
+    // Running totals per type since tracking began; entries age out of the lists, these don't
+    private final long[] inflow = new long[TransactionType.values().length];
+    private final long[] outflow = new long[TransactionType.values().length];
+    private final long[] counts = new long[TransactionType.values().length];
 
     public TransactionLog() {
     }
@@ -25,262 +49,677 @@ public class TransactionLog extends SavedData {
     public static TransactionLog load(CompoundTag tag, HolderLookup.Provider provider) {
         TransactionLog log = new TransactionLog();
 
+        // Saved ids are mapped on first use, so names no entry refers to any more are dropped
+        long[] savedParties = tag.getLongArray("parties");
+        ListTag savedSubjects = tag.getList("subjects", Tag.TAG_STRING);
+        int[] partyIds = new int[savedParties.length / 2];
+        int[] subjectIds = new int[savedSubjects.size()];
+        Arrays.fill(partyIds, -1);
+        Arrays.fill(subjectIds, -1);
+        IntUnaryOperator partyId = id -> {
+            if (id >= 0 && partyIds[id] < 0) {
+                partyIds[id] = log.parties.id(new UUID(savedParties[2 * id], savedParties[2 * id + 1]));
+            }
+            return id < 0 ? -1 : partyIds[id];
+        };
+        IntUnaryOperator subjectId = id -> {
+            if (id >= 0 && subjectIds[id] < 0) {
+                subjectIds[id] = log.subjects.id(savedSubjects.getString(id));
+            }
+            return id < 0 ? -1 : subjectIds[id];
+        };
+
         CompoundTag transactionsTag = tag.getCompound("transactions");
         for (String key : transactionsTag.getAllKeys()) {
+            UUID playerUUID;
             try {
-                UUID playerUUID = UUID.fromString(key);
-                List<Transaction> transactions = new ArrayList<>();
-                ListTag list = transactionsTag.getList(key, Tag.TAG_COMPOUND);
-                for (int i = 0; i < list.size(); i++) {
-                    transactions.add(Transaction.load(list.getCompound(i)));
+                playerUUID = UUID.fromString(key);
+            } catch (IllegalArgumentException e) {
+                SimpleEconomy.LOGGER.warn("Invalid UUID in transaction log: {}", key);
+                continue;
+            }
+            try {
+                TransactionRing transactions;
+                if (transactionsTag.getTagType(key) == Tag.TAG_LIST) {
+                    transactions = log.loadLegacy(transactionsTag.getList(key, Tag.TAG_COMPOUND));
+                } else {
+                    transactions = TransactionRing.load(transactionsTag.getCompound(key), log.depth,
+                        log.parties, log.subjects, partyId, subjectId);
                 }
                 log.playerTransactions.put(playerUUID, transactions);
+            } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+                SimpleEconomy.LOGGER.warn("Dropping corrupt transaction history for {}: {}", key, e.getMessage());
+            }
+        }
+
+        CompoundTag earningsTag = tag.getCompound("earnings");
+        for (String key : earningsTag.getAllKeys()) {
+            try {
+                log.earnings.put(UUID.fromString(key), EarningsRollup.load(earningsTag.getCompound(key)));
             } catch (IllegalArgumentException e) {
-                SimpleEconomy.LOGGER.warn("Invalid UUID in transaction log: {}", key);
+                SimpleEconomy.LOGGER.warn("Dropping corrupt earnings for {}: {}", key, e.getMessage());
+            }
+        }
+
+        CompoundTag flowsTag = tag.getCompound("flows");
+        for (String key : flowsTag.getAllKeys()) {
+            try {
+                int type = TransactionType.valueOf(key).ordinal();
+                long[] totals = flowsTag.getLongArray(key);
+                if (totals.length == 3) {
+                    log.inflow[type] = totals[0];
+                    log.outflow[type] = totals[1];
+                    log.counts[type] = totals[2];
+                }
+            } catch (IllegalArgumentException e) {
+                SimpleEconomy.LOGGER.warn("Unknown transaction type in flow totals: {}", key);
             }
         }
 
         return log;
     }
 
+    /**
+     * History saved before transactions were stored as columns: a list, newest first, with
+     * descriptions already written out
+     */
+    private TransactionRing loadLegacy(ListTag list) {
+        TransactionRing transactions = new TransactionRing(depth, parties, subjects);
+        for (int i = Math.min(list.size(), depth) - 1; i >= 0; i--) {
+            CompoundTag entry = list.getCompound(i);
+            transactions.add(new Transaction(
+                TransactionType.valueOf(entry.getString("type")),
+                Money.read(entry, "amount"),
+                entry.getLong("timestamp"),
+                entry.contains("otherParty") ? entry.getUUID("otherParty") : null,
+                entry.getString("description"),
+                Transaction.VERBATIM
+            ));
+        }
+        return transactions;
+    }
+
     @Override
-    public CompoundTag save(CompoundTag tag, HolderLookup.Provider provider) {
-        CompoundTag transactionsTag = new CompoundTag();
-        for (Map.Entry<UUID, List<Transaction>> entry : playerTransactions.entrySet()) {
-            ListTag list = new ListTag();
-            for (Transaction transaction : entry.getValue()) {
-                list.add(transaction.save());
+    protected Snapshot snapshot(HolderLookup.Provider provider) {
+        // Copying the rings and interners is all primitive arrays and a few lists
+        Map<UUID, TransactionRing> copy = new HashMap<>(playerTransactions.size());
+        for (Map.Entry<UUID, TransactionRing> entry : playerTransactions.entrySet()) {
+            copy.put(entry.getKey(), entry.getValue().copy());
+        }
+        List<UUID> partiesCopy = List.copyOf(parties.values());
+        List<String> subjectsCopy = List.copyOf(subjects.values());
+        // Players who have been quiet for a month lose their rollups here rather than never
+        long hour = Math.floorDiv(System.currentTimeMillis(), 3_600_000L);
+        Map<UUID, EarningsRollup> earningsCopy = new HashMap<>(earnings.size());
+        for (Iterator<Map.Entry<UUID, EarningsRollup>> it = earnings.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<UUID, EarningsRollup> entry = it.next();
+            entry.getValue().compact(hour);
+            if (entry.getValue().isEmpty()) {
+                it.remove();
+            } else {
+                earningsCopy.put(entry.getKey(), entry.getValue().copy());
             }
-            transactionsTag.put(entry.getKey().toString(), list);
         }
-        tag.put("transactions", transactionsTag);
-        return tag;
+        long[] inflowCopy = inflow.clone();
+        long[] outflowCopy = outflow.clone();
+        long[] countsCopy = counts.clone();
+
+        return tag -> {
+            CompoundTag transactionsTag = new CompoundTag();
+            for (Map.Entry<UUID, TransactionRing> entry : copy.entrySet()) {
+                transactionsTag.put(entry.getKey().toString(), entry.getValue().save());
+            }
+            tag.put("transactions", transactionsTag);
+
+            long[] partiesArray = new long[partiesCopy.size() * 2];
+            for (int i = 0; i < partiesCopy.size(); i++) {
+                partiesArray[2 * i] = partiesCopy.get(i).getMostSignificantBits();
+                partiesArray[2 * i + 1] = partiesCopy.get(i).getLeastSignificantBits();
+            }
+            tag.putLongArray("parties", partiesArray);
+            ListTag subjectsList = new ListTag();
+            for (String subject : subjectsCopy) {
+                subjectsList.add(StringTag.valueOf(subject));
+            }
+            tag.put("subjects", subjectsList);
+
+            CompoundTag flowsTag = new CompoundTag();
+            for (TransactionType type : TransactionType.values()) {
+                int i = type.ordinal();
+                if (countsCopy[i] > 0) {
+                    flowsTag.putLongArray(type.name(), new long[]{inflowCopy[i], outflowCopy[i], countsCopy[i]});
+                }
+            }
+            tag.put("flows", flowsTag);
+
+            CompoundTag earningsTag = new CompoundTag();
+            for (Map.Entry<UUID, EarningsRollup> entry : earningsCopy.entrySet()) {
+                earningsTag.put(entry.getKey().toString(), entry.getValue().save());
+            }
+            tag.put("earnings", earningsTag);
+            return tag;
+        };
     }
 
     public void addTransaction(UUID playerUUID, Transaction transaction) {
-        List<Transaction> transactions = playerTransactions.computeIfAbsent(playerUUID, k -> new ArrayList<>());
-        transactions.add(0, transaction); // Add at beginning (newest first)
+        insert(new Entry(playerUUID, transaction));
+        setDirty();
+    }
 
-        // Trim to max size
-        while (transactions.size() > MAX_TRANSACTIONS_PER_PLAYER) {
-            transactions.remove(transactions.size() - 1);
+    /**
+     * Add several records at once, such as everything a settlement logs. Server thread only.
+     */
+    public void addTransactions(Collection<? extends Record> records) {
+        if (records.isEmpty()) {
+            return;
+        }
+        for (Record record : records) {
+            insert(record);
         }
-
         setDirty();
     }
 
+    /**
+     * Queue records from any thread. They are added in one batch at the end of the tick.
+     */
+    public void submit(Collection<? extends Record> records) {
+        submitted.addAll(records);
+    }
+
+    /**
+     * Add entries queued by {@link #submit}. Server thread only.
+     */
+    public void flushSubmitted() {
+        if (submitted.isEmpty()) {
+            return;
+        }
+        List<Record> batch = new ArrayList<>();
+        Record record;
+        while ((record = submitted.poll()) != null) {
+            batch.add(record);
+        }
+        addTransactions(batch);
+    }
+
+    /**
+     * The ledger gets the record once; each player's history, earnings and the flow totals
+     * get its legs
+     */
+    private void insert(Record record) {
+        record.forEachLeg(this::insertLeg);
+        if (ledger != null) {
+            ledger.offer(record);
+        }
+    }
+
+    private void insertLeg(UUID playerUUID, Transaction transaction) {
+        playerTransactions.computeIfAbsent(playerUUID, k -> new TransactionRing(depth, parties, subjects)).add(transaction);
+        earnings.computeIfAbsent(playerUUID, k -> new EarningsRollup())
+            .add(transaction.type(), transaction.amount(), transaction.timestamp());
+
+        int type = transaction.type().ordinal();
+        if (transaction.amount() >= 0) {
+            inflow[type] += transaction.amount();
+        } else {
+            outflow[type] -= transaction.amount();
+        }
+        counts[type]++;
+    }
+
+    /**
+     * Write out the ledger queue and close the ledger before the server stops
+     */
+    public void closeStorage() {
+        if (ledger != null) {
+            ledger.close();
+            ledger = null;
+        }
+    }
+
+    /**
+     * How the ledger writer is keeping up, or null if the ledger is not open
+     */
+    public LedgerStats getLedgerStats() {
+        return ledger == null ? null : ledger.stats();
+    }
+
+    Path ledgerDirectory() {
+        return ledgerDirectory;
+    }
+
+    /**
+     * The ledger's sequence number just after every entry sent to it so far, once they are on
+     * disk. Fails if the ledger is not open. Server thread only.
+     */
+    CompletableFuture<Long> markLedger() {
+        if (ledger == null) {
+            return CompletableFuture.failedFuture(new IllegalStateException("The transaction ledger is not open"));
+        }
+        return ledger.mark();
+    }
+
+    /**
+     * A player's full history since the given time, newest first and at most {@code limit}
+     * entries, read from the ledger on a background thread
+     */
+    public CompletableFuture<List<Transaction>> queryLedger(UUID playerUUID, long since, int limit) {
+        if (ledgerDirectory == null) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Transaction ledger is not open"));
+        }
+        Path directory = ledgerDirectory;
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return TransactionLedger.read(directory, playerUUID, since, limit);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, TransactionLedger.BACKGROUND);
+    }
+
+    /**
+     * Every player's recent history as it is now, readable from any thread. Server thread only.
+     */
+    Map<UUID, TransactionRing> copyHistory() {
+        Interner<UUID> partiesCopy = parties.copy();
+        Interner<String> subjectsCopy = subjects.copy();
+        Map<UUID, TransactionRing> copy = new HashMap<>(playerTransactions.size());
+        for (Map.Entry<UUID, TransactionRing> entry : playerTransactions.entrySet()) {
+            copy.put(entry.getKey(), entry.getValue().copy(partiesCopy, subjectsCopy));
+        }
+        return copy;
+    }
+
+    /**
+     * A player's history, newest first. This is a live view: copy it to keep it past the
+     * next transaction. Server thread only.
+     */
     public List<Transaction> getTransactions(UUID playerUUID) {
-        return new ArrayList<>(playerTransactions.getOrDefault(playerUUID, new ArrayList<>()));
+        TransactionRing transactions = playerTransactions.get(playerUUID);
+        return transactions == null ? List.of() : transactions.newestFirst();
     }
 
+    /**
+     * The newest {@code count} transactions, as a live view like {@link #getTransactions}
+     */
     public List<Transaction> getRecentTransactions(UUID playerUUID, int count) {
-        List<Transaction> all = playerTransactions.getOrDefault(playerUUID, new ArrayList<>());
-        return all.stream().limit(count).collect(Collectors.toList());
+        List<Transaction> all = getTransactions(playerUUID);
+        return all.subList(0, Math.min(count, all.size()));
+    }
+
+    /**
+     * A page of a player's history matching the filter, newest first: up to {@code limit}
+     * entries after the cursor a previous page ended with, or from the newest if it is negative.
+     * Server thread only.
+     */
+    public TransactionPage findTransactions(UUID playerUUID, TransactionFilter filter, long cursor, int limit) {
+        TransactionRing transactions = playerTransactions.get(playerUUID);
+        if (transactions == null) {
+            return new TransactionPage(List.of(), -1);
+        }
+        return transactions.find(filter.type(), filter.otherParty(), filter.since(), cursor, limit);
+    }
+
+    /**
+     * A player's money in and out per type since the given time. Exact to the hour within the
+     * last two days, to the day before that, and covers at most the last month.
+     */
+    public Earnings getEarnings(UUID playerUUID, long since) {
+        Earnings totals = new Earnings(new long[TransactionType.values().length], new long[TransactionType.values().length]);
+        EarningsRollup rollup = earnings.get(playerUUID);
+        if (rollup != null) {
+            rollup.sum(since, totals.inflow(), totals.outflow());
+        }
+        return totals;
+    }
+
+    /**
+     * Total ever credited to players under this type
+     */
+    public long getInflow(TransactionType type) {
+        return inflow[type.ordinal()];
+    }
+
+    /**
+     * Total ever debited from players under this type
+     */
+    public long getOutflow(TransactionType type) {
+        return outflow[type.ordinal()];
+    }
+
+    public long getTransactionCount(TransactionType type) {
+        return counts[type.ordinal()];
+    }
+
+    /**
+     * Money that entered the economy rather than moving between players
+     */
+    public long getMoneyCreated() {
+        long created = 0;
+        for (TransactionType type : TransactionType.values()) {
+            if (!type.isBetweenPlayers()) {
+                created += inflow[type.ordinal()];
+            }
+        }
+        return created;
+    }
+
+    /**
+     * Money that left the economy, such as tax and admin removals
+     */
+    public long getMoneyDestroyed() {
+        long destroyed = 0;
+        for (TransactionType type : TransactionType.values()) {
+            if (!type.isBetweenPlayers()) {
+                destroyed += outflow[type.ordinal()];
+            }
+        }
+        return destroyed;
     }
 
     public static TransactionLog get(MinecraftServer server) {
         DimensionDataStorage storage = server.overworld().getDataStorage();
-        return storage.computeIfAbsent(
+        TransactionLog log = storage.computeIfAbsent(
             new Factory<>(TransactionLog::new, TransactionLog::load),
             DATA_NAME
         );
+        if (!log.attached) {
+            log.attach(server.getWorldPath(LevelResource.ROOT).resolve("data").resolve(LEDGER_NAME));
+        }
+        return log;
     }
 
-    public record Transaction(
+    private void attach(Path directory) {
+        attached = true;
+        ledgerDirectory = directory;
+        try {
+            ledger = LedgerWriter.start(directory, ModConfig.getLedgerRetentionDays(), ModConfig.getLedgerQueueCapacity());
+        } catch (IOException e) {
+            SimpleEconomy.LOGGER.error("Failed to open transaction ledger, keeping only recent history", e);
+        }
+    }
+
+    /**
+     * What gets logged: a single {@link Entry}, or a {@link Posting} between two players that
+     * stands for both sides. Each player's view of a record is one or more legs.
+     */
+    public sealed interface Record permits Entry, Posting {
+        void forEachLeg(BiConsumer<UUID, Transaction> action);
+    }
+
+    /**
+     * A transaction and the player whose log it belongs in
+     */
+    public record Entry(UUID player, Transaction transaction) implements Record {
+        @Override
+        public void forEachLeg(BiConsumer<UUID, Transaction> action) {
+            action.accept(player, transaction);
+        }
+    }
+
+    /**
+     * Money moving from one player to another, recorded once. The payer's leg has this type
+     * and pays {@code amount}; the payee's has its {@link TransactionType#counterpart} and
+     * receives it, followed by a tax leg if {@code tax} of it went to tax. Subjects are each
+     * side's, since they usually name the other player.
+     */
+    public record Posting(
         TransactionType type,
-        double amount,
-        String description,
+        UUID payer,
+        UUID payee,
+        long amount,
+        long tax,
         long timestamp,
-        UUID otherParty // The other player involved, if any
-    ) {
-        public CompoundTag save() {
-            CompoundTag tag = new CompoundTag();
-            tag.putString("type", type.name());
-            tag.putDouble("amount", amount);
-            tag.putString("description", description);
-            tag.putLong("timestamp", timestamp);
-            if (otherParty != null) {
-                tag.putUUID("otherParty", otherParty);
+        String payerSubject,
+        String payeeSubject,
+        int number
+    ) implements Record {
+
+        public Posting {
+            if (type.counterpart() == type) {
+                throw new IllegalArgumentException(type + " has no payee side");
             }
-            return tag;
         }
 
-        public static Transaction load(CompoundTag tag) {
-            return new Transaction(
-                TransactionType.valueOf(tag.getString("type")),
-                tag.getDouble("amount"),
-                tag.getString("description"),
-                tag.getLong("timestamp"),
-                tag.contains("otherParty") ? tag.getUUID("otherParty") : null
-            );
+        @Override
+        public void forEachLeg(BiConsumer<UUID, Transaction> action) {
+            action.accept(payer, payerLeg());
+            action.accept(payee, new Transaction(type.counterpart(), amount, timestamp, payer, payeeSubject, number));
+            if (tax > 0) {
+                action.accept(payee, new Transaction(TransactionType.TAX, -tax, timestamp, null, null, 0));
+            }
         }
 
-        public static Transaction purchase(double amount, String itemName, UUID shopOwner) {
-            return new Transaction(
-                TransactionType.PURCHASE,
-                -amount,
-                "Bought " + itemName,
-                System.currentTimeMillis(),
-                shopOwner
-            );
+        public Transaction payerLeg() {
+            return new Transaction(type, -amount, timestamp, payee, payerSubject, number);
         }
 
-        public static Transaction sale(double amount, String itemName, UUID buyer) {
-            return new Transaction(
-                TransactionType.SALE,
-                amount,
-                "Sold " + itemName,
-                System.currentTimeMillis(),
-                buyer
-            );
+        public static Posting purchase(UUID buyer, UUID shopOwner, long amount, long tax, int quantity, String itemName) {
+            return new Posting(TransactionType.PURCHASE, buyer, shopOwner, amount, tax, System.currentTimeMillis(),
+                itemName, itemName, quantity);
         }
 
-        public static Transaction payment(double amount, UUID recipient, String recipientName) {
-            return new Transaction(
-                TransactionType.PAYMENT_SENT,
-                -amount,
-                "Paid " + recipientName,
-                System.currentTimeMillis(),
-                recipient
-            );
+        public static Posting payment(UUID sender, String senderName, UUID recipient, String recipientName, long amount) {
+            return new Posting(TransactionType.PAYMENT_SENT, sender, recipient, amount, 0, System.currentTimeMillis(),
+                recipientName, senderName, 0);
         }
 
-        public static Transaction received(double amount, UUID sender, String senderName) {
-            return new Transaction(
-                TransactionType.PAYMENT_RECEIVED,
-                amount,
-                "From " + senderName,
-                System.currentTimeMillis(),
-                sender
-            );
+        public static Posting coinflip(UUID loser, UUID winner, long amount) {
+            return new Posting(TransactionType.COINFLIP_LOSS, loser, winner, amount, 0, System.currentTimeMillis(),
+                null, null, 0);
+        }
+
+        public static Posting pvpKill(UUID victim, String victimName, UUID killer, String killerName, long bounty) {
+            return new Posting(TransactionType.PVP_DEATH, victim, killer, bounty, 0, System.currentTimeMillis(),
+                killerName, victimName, 0);
         }
+    }
 
-        public static Transaction adminAdd(double amount) {
+    /**
+     * Transactions from {@link #findTransactions}, and the cursor to pass for the next page, or
+     * -1 if this is the last one
+     */
+    public record TransactionPage(List<Transaction> transactions, long next) {
+    }
+
+    /**
+     * Which entries a history query returns. A null type or other party matches any; {@code since}
+     * is the earliest timestamp to include, 0 for no limit.
+     */
+    public record TransactionFilter(TransactionType type, UUID otherParty, long since) {
+        public static final TransactionFilter ALL = new TransactionFilter(null, null, 0);
+    }
+
+    /**
+     * Money in and out per transaction type, indexed by ordinal
+     */
+    public record Earnings(long[] inflow, long[] outflow) {
+        public long inflow(TransactionType type) {
+            return inflow[type.ordinal()];
+        }
+
+        public long outflow(TransactionType type) {
+            return outflow[type.ordinal()];
+        }
+
+        public long net() {
+            long net = 0;
+            for (int i = 0; i < inflow.length; i++) {
+                net += inflow[i] - outflow[i];
+            }
+            return net;
+        }
+    }
+
+    /**
+     * Ledger writer throughput since startup. {@code queued} entries are waiting to be written;
+     * entries the full queue could not take were held in memory and count as spilled, and
+     * entries written after an I/O error count as dropped.
+     */
+    public record LedgerStats(int queued, int capacity, long written, long batches, int largestBatch,
+                              long spilled, long dropped) {
+    }
+
+    /**
+     * One log entry. The description is not stored; it is written out from the type, a subject
+     * such as an item or player name, and a number such as a quantity or streak.
+     */
+    public record Transaction(
+        TransactionType type,
+        long amount,
+        long timestamp,
+        UUID otherParty, // The other player involved, if any
+        String subject,
+        int number
+    ) {
+        /**
+         * Number marking a subject that is already the whole description, as in old saves
+         */
+        static final int VERBATIM = -1;
+
+        public String description() {
+            if (number == VERBATIM) {
+                return subject;
+            }
+            return switch (type) {
+                case PURCHASE -> "Bought " + number + "x " + subject;
+                case SALE -> "Sold " + number + "x " + subject;
+                case PAYMENT_SENT -> "Paid " + subject;
+                case PAYMENT_RECEIVED -> "From " + subject;
+                case ADMIN_ADD -> "Admin granted";
+                case ADMIN_REMOVE -> "Admin removed";
+                case TAX -> "Transaction tax";
+                case STARTING_BALANCE -> "Starting balance";
+                case DAILY_REWARD -> "Daily reward (day " + number + ")";
+                case INTEREST -> "Weekly interest";
+                case MOB_DROP, PVP_KILL -> "Killed " + subject;
+                case COINFLIP_WIN -> "Coinflip win";
+                case COINFLIP_LOSS -> "Coinflip loss";
+                case PVP_DEATH -> "Killed by " + subject;
+            };
+        }
+
+        public static Transaction adminAdd(long amount) {
             return new Transaction(
                 TransactionType.ADMIN_ADD,
                 amount,
-                "Admin granted",
                 System.currentTimeMillis(),
-                null
+                null,
+                null,
+                0
             );
         }
 
-        public static Transaction adminRemove(double amount) {
+        public static Transaction adminRemove(long amount) {
             return new Transaction(
                 TransactionType.ADMIN_REMOVE,
                 -amount,
-                "Admin removed",
                 System.currentTimeMillis(),
-                null
+                null,
+                null,
+                0
             );
         }
 
-        public static Transaction tax(double amount) {
+        public static Transaction tax(long amount) {
             return new Transaction(
                 TransactionType.TAX,
                 -amount,
-                "Transaction tax",
                 System.currentTimeMillis(),
-                null
+                null,
+                null,
+                0
             );
         }
 
-        public static Transaction startingBalance(double amount) {
+        public static Transaction startingBalance(long amount) {
             return new Transaction(
                 TransactionType.STARTING_BALANCE,
                 amount,
-                "Starting balance",
                 System.currentTimeMillis(),
-                null
+                null,
+                null,
+                0
             );
         }
 
-        public static Transaction dailyReward(double amount, int streak) {
+        public static Transaction dailyReward(long amount, int streak) {
             return new Transaction(
                 TransactionType.DAILY_REWARD,
                 amount,
-                "Daily reward (day " + streak + ")",
                 System.currentTimeMillis(),
-                null
+                null,
+                null,
+                streak
             );
         }
 
-        public static Transaction interest(double amount) {
+        public static Transaction interest(long amount) {
             return new Transaction(
                 TransactionType.INTEREST,
                 amount,
-                "Weekly interest",
                 System.currentTimeMillis(),
-                null
+                null,
+                null,
+                0
             );
         }
 
-        public static Transaction mobDrop(double amount, String mobName) {
+        public static Transaction mobDrop(long amount, String mobName) {
             return new Transaction(
                 TransactionType.MOB_DROP,
                 amount,
-                "Killed " + mobName,
                 System.currentTimeMillis(),
-                null
-            );
-        }
-
-        public static Transaction coinflipWin(double amount, UUID opponent) {
-            return new Transaction(
-                TransactionType.COINFLIP_WIN,
-                amount,
-                "Coinflip win",
-                System.currentTimeMillis(),
-                opponent
+                null,
+                mobName,
+                0
             );
         }
+    }
 
-        public static Transaction coinflipLoss(double amount, UUID opponent) {
-            return new Transaction(
-                TransactionType.COINFLIP_LOSS,
-                -amount,
-                "Coinflip loss",
-                System.currentTimeMillis(),
-                opponent
-            );
+    // Stored by position in saves and the ledger, so new types go at the end
+    public enum TransactionType {
+        PURCHASE(true),
+        SALE(true),
+        PAYMENT_SENT(true),
+        PAYMENT_RECEIVED(true),
+        ADMIN_ADD(false),
+        ADMIN_REMOVE(false),
+        TAX(false),
+        STARTING_BALANCE(false),
+        DAILY_REWARD(false),
+        INTEREST(false),
+        MOB_DROP(false),
+        COINFLIP_WIN(true),
+        COINFLIP_LOSS(true),
+        PVP_KILL(true),
+        PVP_DEATH(true);
+
+        // Paired with an opposite entry for another player, so it creates or destroys nothing
+        private final boolean betweenPlayers;
+
+        TransactionType(boolean betweenPlayers) {
+            this.betweenPlayers = betweenPlayers;
         }
 
-        public static Transaction pvpKill(double amount, UUID victim, String victimName) {
-            return new Transaction(
-                TransactionType.PVP_KILL,
-                amount,
-                "Killed " + victimName,
-                System.currentTimeMillis(),
-                victim
-            );
+        public boolean isBetweenPlayers() {
+            return betweenPlayers;
         }
 
-        public static Transaction pvpDeath(double amount, UUID killer, String killerName) {
-            return new Transaction(
-                TransactionType.PVP_DEATH,
-                -amount,
-                "Killed by " + killerName,
-                System.currentTimeMillis(),
-                killer
-            );
+        /**
+         * The payee's side of a posting of this type, or this type if it has no other side
+         */
+        public TransactionType counterpart() {
+            return switch (this) {
+                case PURCHASE -> SALE;
+                case SALE -> PURCHASE;
+                case PAYMENT_SENT -> PAYMENT_RECEIVED;
+                case PAYMENT_RECEIVED -> PAYMENT_SENT;
+                case COINFLIP_LOSS -> COINFLIP_WIN;
+                case COINFLIP_WIN -> COINFLIP_LOSS;
+                case PVP_DEATH -> PVP_KILL;
+                case PVP_KILL -> PVP_DEATH;
+                default -> this;
+            };
         }
     }
-
-    public enum TransactionType {
-        PURCHASE,
-        SALE,
-        PAYMENT_SENT,
-        PAYMENT_RECEIVED,
-        ADMIN_ADD,
-        ADMIN_REMOVE,
-        TAX,
-        STARTING_BALANCE,
-        DAILY_REWARD,
-        INTEREST,
-        MOB_DROP,
-        COINFLIP_WIN,
-        COINFLIP_LOSS,
-        PVP_KILL,
-        PVP_DEATH
-    }
 }
@@ -0,0 +1,389 @@
+package com.simpleeconomy.data;
+
+import net.minecraft.nbt.CompoundTag;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * One player's most recent transactions in a fixed-depth ring. Adding overwrites the oldest
+ * entry once full, and reads are views over the ring, newest first, with no copying.
+ * The backing arrays grow on demand up to the depth, so quiet players stay small.
+ *
+ * Entries are stored as columns of primitives rather than objects: the type, the amount,
+ * the time in seconds, and interned ids for the other party and the description's subject.
+ * A {@link TransactionLog.Transaction} is only built when an entry is read.
+ *
+ * Every entry gets a sequence number, counted from the first entry since loading, which stays
+ * with it as newer ones arrive. Pages are read from a cursor, the sequence number of the last
+ * entry seen, so later additions do not shift them.
+ *
+ * Filtered reads use an index of links from each entry to the previous one of the same type
+ * and the same other party, so a page costs the entries it returns rather than a scan. Most
+ * players never filter, so the index is only built on the first filtered read and then kept
+ * up to date. Entries are in time order, so a time bound just ends the walk.
+ */
+class TransactionRing {
+
+    private static final int INITIAL_CAPACITY = 8;
+    private static final TransactionLog.TransactionType[] TYPES = TransactionLog.TransactionType.values();
+    // Times are seconds from here (2024-01-01 UTC), which fits an int until 2092
+    private static final long EPOCH_SECONDS = 1_704_067_200L;
+
+    private final int depth;
+    private final Interner<UUID> parties;
+    private final Interner<String> subjects;
+
+    private byte[] types;
+    private long[] amounts;
+    private int[] times;
+    private int[] partyIds;
+    private int[] subjectIds;
+    private int[] numbers;
+    // Index the next entry goes to
+    private int head;
+    private int size;
+    // Sequence number of the next entry
+    private long next;
+    // Null until the first filtered read
+    private Index index;
+
+    TransactionRing(int depth, Interner<UUID> parties, Interner<String> subjects) {
+        this(depth, Math.min(INITIAL_CAPACITY, depth), parties, subjects);
+    }
+
+    private TransactionRing(int depth, int capacity, Interner<UUID> parties, Interner<String> subjects) {
+        this.depth = depth;
+        this.parties = parties;
+        this.subjects = subjects;
+        this.types = new byte[capacity];
+        this.amounts = new long[capacity];
+        this.times = new int[capacity];
+        this.partyIds = new int[capacity];
+        this.subjectIds = new int[capacity];
+        this.numbers = new int[capacity];
+    }
+
+    void add(TransactionLog.Transaction transaction) {
+        if (size == types.length && size < depth) {
+            resize(Math.min(depth, Math.max(1, types.length * 2)));
+        }
+        if (index != null && size == types.length) {
+            index.evict(head);
+        }
+        types[head] = (byte) transaction.type().ordinal();
+        amounts[head] = transaction.amount();
+        times[head] = toSeconds(transaction.timestamp());
+        partyIds[head] = parties.id(transaction.otherParty());
+        subjectIds[head] = subjects.id(transaction.subject());
+        numbers[head] = transaction.number();
+        if (index != null) {
+            index.link(head, next);
+        }
+        next++;
+        head = head + 1 == types.length ? 0 : head + 1;
+        if (size < types.length) {
+            size++;
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Newest first. The view reflects later additions, so take a copy to keep it.
+     */
+    List<TransactionLog.Transaction> newestFirst() {
+        return new AbstractList<>() {
+            @Override
+            public TransactionLog.Transaction get(int position) {
+                if (position < 0 || position >= size) {
+                    throw new IndexOutOfBoundsException(position);
+                }
+                return read(slotAt(position));
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    /**
+     * Entries matching every given filter, newest first, starting after the entry with sequence
+     * number {@code before} (or at the newest if negative), up to {@code limit}. A null type or
+     * party matches any.
+     */
+    TransactionLog.TransactionPage find(TransactionLog.TransactionType type, UUID party, long since, long before, int limit) {
+        List<TransactionLog.Transaction> found = new ArrayList<>();
+        int partyId = party == null ? -1 : parties.find(party);
+        if (party != null && partyId < 0) {
+            return new TransactionLog.TransactionPage(found, -1);
+        }
+        if (index == null && (type != null || party != null)) {
+            index = new Index();
+        }
+
+        // Follow the most selective chain; the other filter is checked along the way
+        int[] gaps = null;
+        long newest = -1;
+        if (party != null) {
+            gaps = index.partyGaps;
+            newest = index.partyHeads.getOrDefault(partyId, -1L);
+        } else if (type != null) {
+            gaps = index.typeGaps;
+            newest = index.typeHeads[type.ordinal()];
+        }
+        int position;
+        if (before >= 0) {
+            // The cursor entry matched, so it is on the chain: one step from it is the next match
+            position = positionOf(before);
+            if (position >= 0) {
+                position = step(position, gaps, type, partyId);
+            }
+        } else {
+            position = gaps == null ? 0 : positionOf(newest);
+        }
+        int sinceSeconds = toSeconds(since);
+        long last = -1;
+
+        while (position >= 0 && position < size) {
+            int slot = slotAt(position);
+            if (times[slot] < sinceSeconds) {
+                break;
+            }
+            if ((type == null || types[slot] == type.ordinal()) && (party == null || partyIds[slot] == partyId)) {
+                if (found.size() == limit) {
+                    // There is more; the next page starts after the last entry taken
+                    return new TransactionLog.TransactionPage(found, last);
+                }
+                found.add(read(slot));
+                last = next - 1 - position;
+            }
+            position = step(position, gaps, type, partyId);
+        }
+        return new TransactionLog.TransactionPage(found, -1);
+    }
+
+    /**
+     * The position to look at after this one: the previous entry on the chain being followed,
+     * or simply the one before if there is no chain or this entry is not on it. -1 ends the walk.
+     */
+    private int step(int position, int[] gaps, TransactionLog.TransactionType type, int partyId) {
+        int slot = slotAt(position);
+        boolean onChain = gaps != null && (partyId >= 0 ? partyIds[slot] == partyId : types[slot] == type.ordinal());
+        if (!onChain) {
+            return position + 1;
+        }
+        return gaps[slot] == 0 ? -1 : position + gaps[slot];
+    }
+
+    /**
+     * Position from the newest entry of the entry with a sequence number, or -1 if there is no
+     * such entry any more
+     */
+    private int positionOf(long sequence) {
+        long position = next - 1 - sequence;
+        return sequence < 0 || position < 0 || position >= size ? -1 : (int) position;
+    }
+
+    /**
+     * A copy that no later addition affects, trimmed to its entries, for saving off-thread
+     */
+    TransactionRing copy() {
+        return copy(parties, subjects);
+    }
+
+    /**
+     * A copy as above that reads names through the given interners, such as copies of this
+     * ring's taken at the same time, so it can be read off-thread
+     */
+    TransactionRing copy(Interner<UUID> parties, Interner<String> subjects) {
+        TransactionRing copy = new TransactionRing(depth, 0, parties, subjects);
+        copy.types = types;
+        copy.amounts = amounts;
+        copy.times = times;
+        copy.partyIds = partyIds;
+        copy.subjectIds = subjectIds;
+        copy.numbers = numbers;
+        copy.head = head;
+        copy.size = size;
+        copy.next = next;
+        // Resizing always allocates, so the copy no longer shares anything with this ring
+        copy.resize(size);
+        return copy;
+    }
+
+    /**
+     * Saves oldest first, with each time stored as the gap since the one before. Ids refer
+     * to the interners as they were when this ring was copied.
+     */
+    CompoundTag save() {
+        if (head != 0 || types.length != size) {
+            return copy().save();
+        }
+        int[] gaps = new int[size];
+        for (int i = 0; i < size; i++) {
+            gaps[i] = i == 0 ? times[0] : times[i] - times[i - 1];
+        }
+
+        CompoundTag tag = new CompoundTag();
+        tag.putByteArray("types", types);
+        tag.putLongArray("amounts", amounts);
+        tag.putIntArray("times", gaps);
+        tag.putIntArray("parties", partyIds);
+        tag.putIntArray("subjects", subjectIds);
+        tag.putIntArray("numbers", numbers);
+        return tag;
+    }
+
+    /**
+     * Reads a ring written by {@link #save}, keeping the newest {@code depth} entries. Saved ids
+     * are mapped to ids in the given interners.
+     */
+    static TransactionRing load(CompoundTag tag, int depth, Interner<UUID> parties, Interner<String> subjects,
+                                IntUnaryOperator partyIds, IntUnaryOperator subjectIds) {
+        byte[] types = tag.getByteArray("types");
+        long[] amounts = tag.getLongArray("amounts");
+        int[] gaps = tag.getIntArray("times");
+        int[] savedParties = tag.getIntArray("parties");
+        int[] savedSubjects = tag.getIntArray("subjects");
+        int[] numbers = tag.getIntArray("numbers");
+        int count = types.length;
+        if (amounts.length != count || gaps.length != count || savedParties.length != count
+            || savedSubjects.length != count || numbers.length != count) {
+            throw new IllegalArgumentException("Transaction columns differ in length");
+        }
+
+        int skip = Math.max(0, count - depth);
+        TransactionRing ring = new TransactionRing(depth, Math.max(1, count - skip), parties, subjects);
+        int time = 0;
+        for (int i = 0; i < count; i++) {
+            time += gaps[i];
+            if (i < skip) {
+                continue;
+            }
+            if (types[i] < 0 || types[i] >= TYPES.length) {
+                throw new IllegalArgumentException("Unknown transaction type " + types[i]);
+            }
+            int slot = ring.size++;
+            ring.types[slot] = types[i];
+            ring.amounts[slot] = amounts[i];
+            ring.times[slot] = time;
+            ring.partyIds[slot] = partyIds.applyAsInt(savedParties[i]);
+            ring.subjectIds[slot] = subjectIds.applyAsInt(savedSubjects[i]);
+            ring.numbers[slot] = numbers[i];
+        }
+        ring.head = ring.size == ring.types.length ? 0 : ring.size;
+        ring.next = ring.size;
+        return ring;
+    }
+
+    /**
+     * Slot of the entry at a position counted from the newest
+     */
+    private int slotAt(int position) {
+        int slot = head - 1 - position;
+        return slot < 0 ? slot + types.length : slot;
+    }
+
+    private TransactionLog.Transaction read(int slot) {
+        return new TransactionLog.Transaction(
+            TYPES[types[slot]],
+            amounts[slot],
+            (EPOCH_SECONDS + times[slot]) * 1000L,
+            parties.get(partyIds[slot]),
+            subjects.get(subjectIds[slot]),
+            numbers[slot]
+        );
+    }
+
+    private static int toSeconds(long millis) {
+        long seconds = millis / 1000 - EPOCH_SECONDS;
+        return (int) Math.max(Integer.MIN_VALUE, Math.min(seconds, Integer.MAX_VALUE));
+    }
+
+    private void resize(int capacity) {
+        // Unroll so the oldest entry is at 0 and the next goes right after the newest
+        int length = types.length;
+        int oldest = size == length ? head : 0;
+        types = unroll(types, new byte[capacity], length, oldest);
+        amounts = unroll(amounts, new long[capacity], length, oldest);
+        times = unroll(times, new int[capacity], length, oldest);
+        partyIds = unroll(partyIds, new int[capacity], length, oldest);
+        subjectIds = unroll(subjectIds, new int[capacity], length, oldest);
+        numbers = unroll(numbers, new int[capacity], length, oldest);
+        if (index != null) {
+            // Links are by sequence number, so only the per-slot columns move
+            index.typeGaps = unroll(index.typeGaps, new int[capacity], length, oldest);
+            index.partyGaps = unroll(index.partyGaps, new int[capacity], length, oldest);
+        }
+        head = size == capacity ? 0 : size;
+    }
+
+    /**
+     * Links between entries of the same type and of the same other party, by sequence number,
+     * so they survive the ring wrapping and growing; a gap is how many entries back the
+     * previous link is.
+     */
+    private class Index {
+        private int[] typeGaps = new int[types.length];
+        private int[] partyGaps = new int[types.length];
+        // Sequence number of the newest entry of each type, or -1
+        private final long[] typeHeads = new long[TYPES.length];
+        // Newest entry with each other party. An entry leaves when that party has none left.
+        private final Map<Integer, Long> partyHeads = new HashMap<>();
+
+        Index() {
+            Arrays.fill(typeHeads, -1);
+            for (int position = size - 1; position >= 0; position--) {
+                link(slotAt(position), next - 1 - position);
+            }
+        }
+
+        void link(int slot, long sequence) {
+            int type = types[slot];
+            typeGaps[slot] = gap(sequence, typeHeads[type]);
+            typeHeads[type] = sequence;
+            if (partyIds[slot] >= 0) {
+                Long previous = partyHeads.put(partyIds[slot], sequence);
+                partyGaps[slot] = previous == null ? 0 : gap(sequence, previous);
+            } else {
+                partyGaps[slot] = 0;
+            }
+        }
+
+        /**
+         * The oldest entry, in this slot, is about to be overwritten
+         */
+        void evict(int slot) {
+            long sequence = next - size;
+            if (partyIds[slot] >= 0) {
+                partyHeads.remove(partyIds[slot], sequence);
+            }
+            if (typeHeads[types[slot]] == sequence) {
+                typeHeads[types[slot]] = -1;
+            }
+        }
+
+        private int gap(long sequence, long previous) {
+            // Links to entries that have since been overwritten end the chain
+            return previous < 0 || sequence - previous >= size + 1L ? 0 : (int) (sequence - previous);
+        }
+    }
+
+    private <A> A unroll(A from, A to, int length, int oldest) {
+        int tail = Math.min(size, length - oldest);
+        System.arraycopy(from, oldest, to, 0, tail);
+        System.arraycopy(from, 0, to, tail, size - tail);
+        return to;
+    }
+}
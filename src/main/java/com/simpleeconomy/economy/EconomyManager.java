@@ -3,120 +3,152 @@ package com.simpleeconomy.economy;
 import com.simpleeconomy.SimpleEconomy;
 import com.simpleeconomy.config.ModConfig;
 import com.simpleeconomy.data.EconomySavedData;
-import net.minecraft.server.MinecraftServer;
+import com.simpleeconomy.data.LeaderboardIndex;
+import com.simpleeconomy.data.TransactionLog;
 import net.minecraft.server.level.ServerPlayer;
 
 import java.util.*;
 
+/**
+ * Balance operations. Safe to call from any thread; leaderboard queries are server thread only.
+ */
 public class EconomyManager {
 
-    public static double getBalance(MinecraftServer server, UUID playerUUID) {
-        EconomySavedData data = EconomySavedData.get(server);
-        return data.getBalance(playerUUID);
+    public static long getBalance(UUID playerUUID) {
+        return EconomyService.get().economy().getBalance(playerUUID);
     }
 
-    public static double getBalance(ServerPlayer player) {
-        return getBalance(player.getServer(), player.getUUID());
+    public static long getBalance(ServerPlayer player) {
+        return getBalance(player.getUUID());
     }
 
-    public static void setBalance(MinecraftServer server, UUID playerUUID, double amount) {
-        EconomySavedData data = EconomySavedData.get(server);
-        data.setBalance(playerUUID, Math.max(0, amount));
+    /**
+     * Set a balance, clamped to the allowed range. Returns the change made.
+     */
+    public static long setBalance(UUID playerUUID, long amount) {
+        return EconomyService.get().economy().setBalance(playerUUID, amount);
     }
 
-    public static void setBalance(ServerPlayer player, double amount) {
-        setBalance(player.getServer(), player.getUUID(), amount);
+    public static long setBalance(ServerPlayer player, long amount) {
+        return setBalance(player.getUUID(), amount);
     }
 
-    public static boolean addBalance(MinecraftServer server, UUID playerUUID, double amount) {
+    /**
+     * Add to a balance. Fails, leaving it alone, if the amount is negative or the balance would
+     * go past {@link EconomySavedData#MAX_BALANCE}.
+     */
+    public static boolean addBalance(UUID playerUUID, long amount) {
         if (amount < 0) return false;
-        EconomySavedData data = EconomySavedData.get(server);
-        double current = data.getBalance(playerUUID);
-        data.setBalance(playerUUID, current + amount);
+        try {
+            EconomyService.get().economy().credit(playerUUID, amount);
+        } catch (ArithmeticException e) {
+            return false;
+        }
         return true;
     }
 
-    public static boolean addBalance(ServerPlayer player, double amount) {
-        return addBalance(player.getServer(), player.getUUID(), amount);
+    public static boolean addBalance(ServerPlayer player, long amount) {
+        return addBalance(player.getUUID(), amount);
     }
 
-    public static boolean removeBalance(MinecraftServer server, UUID playerUUID, double amount) {
+    public static boolean removeBalance(UUID playerUUID, long amount) {
         if (amount < 0) return false;
-        EconomySavedData data = EconomySavedData.get(server);
-        double current = data.getBalance(playerUUID);
-        if (current < amount) return false;
-        data.setBalance(playerUUID, current - amount);
-        return true;
+        return EconomyService.get().economy().debit(playerUUID, amount);
     }
 
-    public static boolean removeBalance(ServerPlayer player, double amount) {
-        return removeBalance(player.getServer(), player.getUUID(), amount);
+    public static boolean removeBalance(ServerPlayer player, long amount) {
+        return removeBalance(player.getUUID(), amount);
     }
 
-    public static boolean hasBalance(MinecraftServer server, UUID playerUUID, double amount) {
-        return getBalance(server, playerUUID) >= amount;
+    public static boolean hasBalance(UUID playerUUID, long amount) {
+        return getBalance(playerUUID) >= amount;
     }
 
-    public static boolean hasBalance(ServerPlayer player, double amount) {
-        return hasBalance(player.getServer(), player.getUUID(), amount);
+    public static boolean hasBalance(ServerPlayer player, long amount) {
+        return hasBalance(player.getUUID(), amount);
     }
 
-    public static boolean transfer(ServerPlayer from, UUID toUUID, double amount, boolean applyTax) {
+    public static boolean transfer(ServerPlayer from, UUID toUUID, long amount, boolean applyTax) {
         if (amount <= 0) return false;
-        if (!hasBalance(from, amount)) return false;
 
-        double tax = applyTax ? amount * ModConfig.getTaxRate() : 0;
-        double received = amount - tax;
+        long tax = applyTax ? calculateTax(amount) : 0;
+        return settle(Settlement.builder()
+            .debit(from.getUUID(), amount)
+            .credit(toUUID, amount - tax)
+            .tax(tax)
+            .build());
+    }
 
-        removeBalance(from, amount);
-        addBalance(from.getServer(), toUUID, received);
+    /**
+     * Apply every leg of a settlement or none of them. Its log entries join the tick's batch.
+     * Safe from any thread. Fails if a debit is not covered or a credit would overflow.
+     */
+    public static boolean settle(Settlement settlement) {
+        return settleAll(List.of(settlement))[0];
+    }
 
+    /**
+     * Settle a batch, each settlement all-or-nothing on its own. Entries for all that went
+     * through are queued together and written with the rest of the tick's settlements in one
+     * log batch at the end of the tick. Returns which ones did.
+     */
+    public static boolean[] settleAll(List<Settlement> settlements) {
+        EconomySavedData economy = EconomyService.get().economy();
+        boolean[] settled = new boolean[settlements.size()];
+        List<TransactionLog.Record> entries = new ArrayList<>();
+        long tax = 0;
+        for (int i = 0; i < settled.length; i++) {
+            Settlement settlement = settlements.get(i);
+            if (economy.apply(settlement.players(), settlement.deltas())) {
+                settled[i] = true;
+                entries.addAll(settlement.log());
+                tax += settlement.tax();
+            }
+        }
+        EconomyService.get().transactions().submit(entries);
         if (tax > 0) {
-            SimpleEconomy.LOGGER.debug("Tax collected: {} coins from transfer of {}", tax, amount);
+            SimpleEconomy.LOGGER.debug("Tax collected: {} coins", Money.format(tax));
         }
-
-        return true;
+        return settled;
     }
 
     public static double getTaxRate() {
         return ModConfig.getTaxRate();
     }
 
-    public static double calculateTax(double amount) {
-        return amount * ModConfig.getTaxRate();
+    /**
+     * Tax owed on an amount, rounded down to the minor unit
+     */
+    public static long calculateTax(long amount) {
+        return Money.applyRate(amount, ModConfig.getTaxBasisPoints());
     }
 
-    public static String formatBalance(double amount) {
-        if (amount == (long) amount) {
-            return String.format("%,d", (long) amount);
-        } else {
-            return String.format("%,.2f", amount);
-        }
+    public static String formatBalance(long amount) {
+        return Money.format(amount);
     }
 
     /**
-     * Get all balances sorted by amount (highest first)
+     * Get one page of the leaderboard (highest balance first), starting at a 1-based rank
      */
-    public static List<Map.Entry<UUID, Double>> getTopBalances(MinecraftServer server) {
-        EconomySavedData data = EconomySavedData.get(server);
-        Map<UUID, Double> balances = data.getAllBalances();
-
-        List<Map.Entry<UUID, Double>> sorted = new ArrayList<>(balances.entrySet());
-        sorted.sort((a, b) -> Double.compare(b.getValue(), a.getValue()));
+    public static List<Map.Entry<UUID, Long>> getTopBalances(int fromRank, int count) {
+        List<Map.Entry<UUID, Long>> page = new ArrayList<>(count);
+        LeaderboardIndex.Cursor cursor = EconomyService.get().economy().leaderboardFrom(fromRank);
+        while (page.size() < count && cursor.next()) {
+            page.add(Map.entry(cursor.uuid(), cursor.balance()));
+        }
+        return page;
+    }
 
-        return sorted;
+    public static int getAccountCount() {
+        return EconomyService.get().economy().getAccountCount();
     }
 
     /**
      * Get a player's rank (1-based) in the leaderboard
      */
-    public static int getPlayerRank(MinecraftServer server, UUID playerUUID) {
-        List<Map.Entry<UUID, Double>> sorted = getTopBalances(server);
-        for (int i = 0; i < sorted.size(); i++) {
-            if (sorted.get(i).getKey().equals(playerUUID)) {
-                return i + 1;
-            }
-        }
-        return sorted.size() + 1; // Not in list means last
+    public static int getPlayerRank(UUID playerUUID) {
+        EconomySavedData data = EconomyService.get().economy();
+        int rank = data.getRank(playerUUID);
+        return rank > 0 ? rank : data.getAccountCount() + 1; // Not in list means last
     }
 }
@@ -0,0 +1,87 @@
+package com.simpleeconomy.economy;
+
+import com.simpleeconomy.data.DailyRewardData;
+import com.simpleeconomy.data.EconomySavedData;
+import com.simpleeconomy.data.PlayerDataSavedData;
+import com.simpleeconomy.data.ShopSavedData;
+import com.simpleeconomy.data.TransactionLog;
+import com.simpleeconomy.job.JobScheduler;
+import net.minecraft.server.MinecraftServer;
+
+/**
+ * The running server's economy stores, resolved once at startup.
+ * Looking them up through the overworld's data storage on every call allocates a factory
+ * and does a map lookup, which adds up on hot paths like purchases.
+ */
+public final class EconomyService {
+
+    private static volatile EconomyService instance;
+
+    private final MinecraftServer server;
+    private final EconomySavedData economy;
+    private final ShopSavedData shops;
+    private final TransactionLog transactions;
+    private final PlayerDataSavedData playerData;
+    private final DailyRewardData dailyRewards;
+    private final JobScheduler jobs;
+
+    private EconomyService(MinecraftServer server) {
+        this.server = server;
+        this.economy = EconomySavedData.get(server);
+        this.shops = ShopSavedData.get(server);
+        this.transactions = TransactionLog.get(server);
+        this.playerData = PlayerDataSavedData.get(server);
+        this.dailyRewards = DailyRewardData.get(server);
+        this.jobs = JobScheduler.get(server);
+    }
+
+    /**
+     * Resolve the stores for a starting server. Call after the config is loaded.
+     */
+    public static void start(MinecraftServer server) {
+        instance = new EconomyService(server);
+    }
+
+    /**
+     * Drop the stores once the server has stopped, so a later integrated server starts clean
+     */
+    public static void stop() {
+        instance = null;
+    }
+
+    public static EconomyService get() {
+        EconomyService service = instance;
+        if (service == null) {
+            throw new IllegalStateException("Economy is not running");
+        }
+        return service;
+    }
+
+    public MinecraftServer server() {
+        return server;
+    }
+
+    public EconomySavedData economy() {
+        return economy;
+    }
+
+    public ShopSavedData shops() {
+        return shops;
+    }
+
+    public TransactionLog transactions() {
+        return transactions;
+    }
+
+    public PlayerDataSavedData playerData() {
+        return playerData;
+    }
+
+    public DailyRewardData dailyRewards() {
+        return dailyRewards;
+    }
+
+    public JobScheduler jobs() {
+        return jobs;
+    }
+}
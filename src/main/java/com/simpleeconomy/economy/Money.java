@@ -0,0 +1,147 @@
+package com.simpleeconomy.economy;
+
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.Tag;
+
+/**
+ * Fixed-point currency helpers. Amounts are plain longs counted in minor units
+ * (hundredths of a coin), so all arithmetic is exact and allocation-free.
+ */
+public final class Money {
+
+    public static final int DECIMALS = 2;
+    public static final long SCALE = 100;
+    public static final long BASIS_POINTS = 10_000;
+
+    private Money() {
+    }
+
+    public static long ofWhole(long coins) {
+        return Math.multiplyExact(coins, SCALE);
+    }
+
+    /**
+     * Convert a user-facing decimal amount (command argument, config value) to minor units
+     */
+    public static long fromDouble(double amount) {
+        return Math.round(amount * SCALE);
+    }
+
+    public static double toDouble(long amount) {
+        return (double) amount / SCALE;
+    }
+
+    public static long add(long a, long b) {
+        return Math.addExact(a, b);
+    }
+
+    public static long subtract(long a, long b) {
+        return Math.subtractExact(a, b);
+    }
+
+    public static long multiply(long amount, long quantity) {
+        return Math.multiplyExact(amount, quantity);
+    }
+
+    /**
+     * Convert a fractional rate (0.05 = 5%) to basis points
+     */
+    public static long toBasisPoints(double rate) {
+        return Math.round(rate * BASIS_POINTS);
+    }
+
+    /**
+     * Share of a non-negative amount at the given rate, rounded down so the
+     * remainder (amount - share) never loses a minor unit.
+     */
+    public static long applyRate(long amount, long basisPoints) {
+        return mulDiv(amount, basisPoints, BASIS_POINTS);
+    }
+
+    /**
+     * floor(a * b / c) for non-negative a, b and positive c, using a 128-bit
+     * intermediate so large balances do not overflow.
+     */
+    public static long mulDiv(long a, long b, long c) {
+        if (a < 0 || b < 0 || c <= 0) {
+            throw new IllegalArgumentException("mulDiv expects non-negative operands");
+        }
+        long hi = Math.multiplyHigh(a, b);
+        long lo = a * b;
+        if (hi == 0 && lo >= 0) {
+            return lo / c;
+        }
+        if (Long.compareUnsigned(hi, c) >= 0) {
+            throw new ArithmeticException("long overflow");
+        }
+
+        // Shift-subtract division of the 128-bit product; hi < c keeps the quotient in 64 bits
+        long remainder = hi;
+        long quotient = 0;
+        for (int i = 63; i >= 0; i--) {
+            boolean carry = remainder < 0;
+            remainder = (remainder << 1) | ((lo >>> i) & 1);
+            quotient <<= 1;
+            if (carry || Long.compareUnsigned(remainder, c) >= 0) {
+                remainder -= c;
+                quotient |= 1;
+            }
+        }
+        if (quotient < 0) {
+            throw new ArithmeticException("long overflow");
+        }
+        return quotient;
+    }
+
+    /**
+     * Format with thousands separators, dropping the fraction for whole amounts
+     * (1,250 or 1,250.50)
+     */
+    public static String format(long amount) {
+        return appendTo(new StringBuilder(24), amount).toString();
+    }
+
+    public static StringBuilder appendTo(StringBuilder sb, long amount) {
+        if (amount < 0) {
+            sb.append('-');
+        }
+        long whole = Math.abs(amount / SCALE);
+        int fraction = (int) Math.abs(amount % SCALE);
+
+        // Digits are written least significant first, then reversed in place
+        int start = sb.length();
+        int digits = 0;
+        do {
+            if (digits > 0 && digits % 3 == 0) {
+                sb.append(',');
+            }
+            sb.append((char) ('0' + whole % 10));
+            whole /= 10;
+            digits++;
+        } while (whole > 0);
+        for (int i = start, j = sb.length() - 1; i < j; i++, j--) {
+            char c = sb.charAt(i);
+            sb.setCharAt(i, sb.charAt(j));
+            sb.setCharAt(j, c);
+        }
+
+        if (fraction != 0) {
+            sb.append('.');
+            if (fraction < 10) {
+                sb.append('0');
+            }
+            sb.append(fraction);
+        }
+        return sb;
+    }
+
+    /**
+     * Read an amount written by this version (long minor units) or an older one (double coins)
+     */
+    public static long read(CompoundTag tag, String key) {
+        if (tag.getTagType(key) == Tag.TAG_DOUBLE) {
+            return fromDouble(tag.getDouble(key));
+        }
+        return tag.getLong(key);
+    }
+}
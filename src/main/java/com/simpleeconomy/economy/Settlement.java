@@ -0,0 +1,144 @@
+package com.simpleeconomy.economy;
+
+import com.simpleeconomy.data.TransactionLog;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Balance changes that happen together or not at all, such as a purchase: the buyer pays, the
+ * seller is paid and tax leaves the economy. Legs for the same player are netted, and the legs
+ * must balance: debits plus money released from escrow equal credits plus tax plus money held.
+ *
+ * @see EconomyManager#settle(Settlement)
+ */
+public final class Settlement {
+
+    private final UUID[] players;
+    private final long[] deltas;
+    private final long tax;
+    private final List<TransactionLog.Record> log;
+
+    private Settlement(UUID[] players, long[] deltas, long tax, List<TransactionLog.Record> log) {
+        this.players = players;
+        this.deltas = deltas;
+        this.tax = tax;
+        this.log = log;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public long tax() {
+        return tax;
+    }
+
+    UUID[] players() {
+        return players;
+    }
+
+    long[] deltas() {
+        return deltas;
+    }
+
+    List<TransactionLog.Record> log() {
+        return log;
+    }
+
+    public static final class Builder {
+        private final Map<UUID, Long> net = new LinkedHashMap<>();
+        private final List<TransactionLog.Record> log = new ArrayList<>();
+        private long debits;
+        private long credits;
+        private long tax;
+        private long held;
+        private long released;
+
+        private Builder() {
+        }
+
+        public Builder debit(UUID player, long amount) {
+            debits = Math.addExact(debits, checked(amount));
+            net.merge(player, -amount, Math::addExact);
+            return this;
+        }
+
+        public Builder credit(UUID player, long amount) {
+            credits = Math.addExact(credits, checked(amount));
+            net.merge(player, amount, Math::addExact);
+            return this;
+        }
+
+        /**
+         * Money that leaves the economy
+         */
+        public Builder tax(long amount) {
+            tax = Math.addExact(tax, checked(amount));
+            return this;
+        }
+
+        /**
+         * Money taken out of circulation until a later settlement releases it, such as a wager pot
+         */
+        public Builder hold(long amount) {
+            held = Math.addExact(held, checked(amount));
+            return this;
+        }
+
+        /**
+         * Money put back into circulation after an earlier settlement held it
+         */
+        public Builder release(long amount) {
+            released = Math.addExact(released, checked(amount));
+            return this;
+        }
+
+        /**
+         * Transaction log entry written if, and only if, the settlement goes through
+         */
+        public Builder log(UUID player, TransactionLog.Transaction transaction) {
+            log.add(new TransactionLog.Entry(player, transaction));
+            return this;
+        }
+
+        /**
+         * Transfer between two players logged once for both, if the settlement goes through.
+         * Its debit, credit and tax legs are still the caller's to add.
+         */
+        public Builder post(TransactionLog.Posting posting) {
+            log.add(posting);
+            return this;
+        }
+
+        public Settlement build() {
+            long in = Math.addExact(debits, released);
+            long out = Math.addExact(Math.addExact(credits, tax), held);
+            if (in != out) {
+                throw new IllegalArgumentException("Settlement does not balance: " + Money.format(in) + " in, " + Money.format(out) + " out");
+            }
+
+            int count = (int) net.values().stream().filter(delta -> delta != 0).count();
+            UUID[] players = new UUID[count];
+            long[] deltas = new long[count];
+            int i = 0;
+            for (Map.Entry<UUID, Long> entry : net.entrySet()) {
+                if (entry.getValue() != 0) {
+                    players[i] = entry.getKey();
+                    deltas[i++] = entry.getValue();
+                }
+            }
+            return new Settlement(players, deltas, tax, List.copyOf(log));
+        }
+
+        private static long checked(long amount) {
+            if (amount < 0) {
+                throw new IllegalArgumentException("Negative settlement leg: " + Money.format(amount));
+            }
+            return amount;
+        }
+    }
+}
@@ -3,6 +3,9 @@ package com.simpleeconomy.event;
 import com.simpleeconomy.config.ModConfig;
 import com.simpleeconomy.data.TransactionLog;
 import com.simpleeconomy.economy.EconomyManager;
+import com.simpleeconomy.economy.EconomyService;
+import com.simpleeconomy.economy.Money;
+import com.simpleeconomy.economy.Settlement;
 import com.simpleeconomy.util.SoundHelper;
 import net.minecraft.server.level.ServerPlayer;
 import net.minecraft.world.entity.Entity;
@@ -45,7 +48,7 @@ public class MobDropHandler {
         }
 
         // Calculate coin drop
-        double coins = calculateCoinDrop(entity);
+        int coins = calculateCoinDrop(entity);
         if (coins <= 0) {
             return;
         }
@@ -59,23 +62,24 @@ public class MobDropHandler {
         }
 
         // Give coins
-        EconomyManager.addBalance(player, coins);
-
-        // Log transaction (only for significant amounts to avoid spam)
-        if (coins >= 5) {
-            TransactionLog log = TransactionLog.get(player.getServer());
-            log.addTransaction(player.getUUID(), TransactionLog.Transaction.mobDrop(coins, getEntityName(entity)));
+        long amount = Money.ofWhole(coins);
+        if (!EconomyManager.addBalance(player, amount)) {
+            return; // Already at the maximum balance
         }
 
+        // Log every drop, however small, so the ledger accounts for all of the balance
+        TransactionLog log = EconomyService.get().transactions();
+        log.addTransaction(player.getUUID(), TransactionLog.Transaction.mobDrop(amount, getEntityName(entity)));
+
         // Play sound and show message for significant drops
         if (coins >= 10) {
             SoundHelper.playMobDropSound(player);
-            player.sendSystemMessage(net.minecraft.network.chat.Component.literal("+" + EconomyManager.formatBalance(coins) + " " + ModConfig.getCurrencyName())
+            player.sendSystemMessage(net.minecraft.network.chat.Component.literal("+" + EconomyManager.formatBalance(amount) + " " + ModConfig.getCurrencyName())
                 .withStyle(s -> s.withColor(0xFFD700)));
         }
     }
 
-    private double calculateCoinDrop(LivingEntity entity) {
+    private int calculateCoinDrop(LivingEntity entity) {
         // Bosses - big rewards
         if (entity instanceof EnderDragon) {
             return 500 + random.nextInt(500); // 500-1000
@@ -203,22 +207,22 @@ public class MobDropHandler {
     }
 
     private void handlePvpKill(ServerPlayer killer, ServerPlayer victim) {
-        double percent = ModConfig.getKillRewardPercent();
-        if (percent <= 0) return;
+        long rate = ModConfig.getKillRewardBasisPoints();
+        if (rate <= 0) return;
 
-        double victimBalance = EconomyManager.getBalance(victim);
+        long victimBalance = EconomyManager.getBalance(victim);
         if (victimBalance <= 0) return;
 
-        double bounty = Math.floor(victimBalance * percent * 100) / 100.0; // round down to 2 decimals
-        if (bounty < 0.01) return;
-
-        EconomyManager.removeBalance(victim, bounty);
-        EconomyManager.addBalance(killer, bounty);
+        long bounty = Money.applyRate(victimBalance, rate); // rounds down to the minor unit
+        if (bounty <= 0) return;
 
-        // Log for both
-        TransactionLog log = TransactionLog.get(killer.getServer());
-        log.addTransaction(killer.getUUID(), TransactionLog.Transaction.pvpKill(bounty, victim.getUUID(), victim.getName().getString()));
-        log.addTransaction(victim.getUUID(), TransactionLog.Transaction.pvpDeath(bounty, killer.getUUID(), killer.getName().getString()));
+        Settlement settlement = Settlement.builder()
+            .debit(victim.getUUID(), bounty)
+            .credit(killer.getUUID(), bounty)
+            .post(TransactionLog.Posting.pvpKill(victim.getUUID(), victim.getName().getString(),
+                killer.getUUID(), killer.getName().getString(), bounty))
+            .build();
+        if (!EconomyManager.settle(settlement)) return;
 
         String amount = EconomyManager.formatBalance(bounty);
         String currency = ModConfig.getCurrencyName();
@@ -0,0 +1,56 @@
+package com.simpleeconomy.job;
+
+import com.simpleeconomy.SimpleEconomy;
+import com.simpleeconomy.data.EconomySavedData;
+import com.simpleeconomy.data.TransactionLog;
+import com.simpleeconomy.economy.Money;
+import net.minecraft.nbt.CompoundTag;
+
+import java.util.List;
+
+/**
+ * Credit the same amount to every account
+ */
+public class AddToAllJob extends EconomyJob {
+
+    static final String TYPE = "addall";
+
+    private final long amount;
+
+    public AddToAllJob(long amount) {
+        this.amount = amount;
+    }
+
+    static AddToAllJob load(CompoundTag tag) {
+        return new AddToAllJob(Money.read(tag, "amount"));
+    }
+
+    @Override
+    public String type() {
+        return TYPE;
+    }
+
+    @Override
+    public String describe() {
+        return "Add " + Money.format(amount) + " to every account";
+    }
+
+    @Override
+    protected boolean process(EconomySavedData economy, int slot, List<TransactionLog.Entry> log) {
+        try {
+            if (economy.updateBalanceForJob(slot, id(), balance -> Money.add(balance, amount)) == 0) {
+                return false; // Already paid before a restart
+            }
+        } catch (ArithmeticException e) {
+            SimpleEconomy.LOGGER.warn("Skipped {} in job #{}: balance would overflow", economy.getAccountAt(slot), id());
+            return false;
+        }
+        log.add(new TransactionLog.Entry(economy.getAccountAt(slot), TransactionLog.Transaction.adminAdd(amount)));
+        return true;
+    }
+
+    @Override
+    protected void saveParameters(CompoundTag tag) {
+        tag.putLong("amount", amount);
+    }
+}
@@ -0,0 +1,141 @@
+package com.simpleeconomy.job;
+
+import com.simpleeconomy.data.EconomySavedData;
+import com.simpleeconomy.data.TransactionLog;
+import net.minecraft.nbt.CompoundTag;
+
+import java.util.List;
+
+/**
+ * A bulk operation over every account, run a slice at a time by the {@link JobScheduler}.
+ * The cursor is an account slot, which is only stable within a session, so it is not saved:
+ * after a restart the job walks every account again. Jobs that move money change accounts
+ * through {@link EconomySavedData#updateBalanceForJob}, which skips those they already changed.
+ * Accounts created after the job started are left alone, unless it is resumed after a restart.
+ */
+public abstract class EconomyJob {
+
+    public enum Status {
+        RUNNING,
+        FINISHED,
+        CANCELLED
+    }
+
+    private int id;
+    private int cursor;
+    private int end;
+    private long changed;
+    private long startedAt;
+    private Status status = Status.RUNNING;
+
+    /**
+     * Name used in commands and saved data
+     */
+    public abstract String type();
+
+    public abstract String describe();
+
+    /**
+     * Apply the job to one account, adding any log entries to {@code log}.
+     * Returns whether the account changed.
+     */
+    protected abstract boolean process(EconomySavedData economy, int slot, List<TransactionLog.Entry> log);
+
+    protected void saveParameters(CompoundTag tag) {
+    }
+
+    void start(int id, int end) {
+        this.id = id;
+        this.end = end;
+        this.startedAt = System.currentTimeMillis();
+    }
+
+    /**
+     * Process up to {@code count} accounts
+     */
+    void run(EconomySavedData economy, int count, List<TransactionLog.Entry> log) {
+        if (end < 0) {
+            // Resumed after a restart: walk the accounts as they are numbered now
+            end = economy.getSlotLimit();
+        }
+        int stop = (int) Math.min(end, (long) cursor + count);
+        for (; cursor < stop; cursor++) {
+            if (process(economy, cursor, log)) {
+                changed++;
+            }
+        }
+        if (cursor >= end) {
+            status = Status.FINISHED;
+        }
+    }
+
+    void cancel() {
+        status = Status.CANCELLED;
+    }
+
+    public int id() {
+        return id;
+    }
+
+    public Status status() {
+        return status;
+    }
+
+    public int processed() {
+        return cursor;
+    }
+
+    public int total() {
+        return Math.max(end, 0);
+    }
+
+    public long changed() {
+        return changed;
+    }
+
+    public long startedAt() {
+        return startedAt;
+    }
+
+    public int percentDone() {
+        if (end <= 0) {
+            return end == 0 ? 100 : 0;
+        }
+        return (int) (cursor * 100L / end);
+    }
+
+    CompoundTag save() {
+        CompoundTag tag = new CompoundTag();
+        tag.putString("type", type());
+        tag.putInt("id", id);
+        tag.putLong("changed", changed);
+        tag.putLong("startedAt", startedAt);
+        tag.putString("status", status.name());
+        saveParameters(tag);
+        return tag;
+    }
+
+    /**
+     * Returns null for a job type this version does not know
+     */
+    static EconomyJob load(CompoundTag tag) {
+        EconomyJob job = switch (tag.getString("type")) {
+            case AddToAllJob.TYPE -> AddToAllJob.load(tag);
+            case InflationJob.TYPE -> InflationJob.load(tag);
+            case PurgeEmptyJob.TYPE -> new PurgeEmptyJob();
+            default -> null;
+        };
+        if (job != null) {
+            job.id = tag.getInt("id");
+            job.end = -1;
+            job.changed = tag.getLong("changed");
+            job.startedAt = tag.getLong("startedAt");
+            try {
+                job.status = Status.valueOf(tag.getString("status"));
+            } catch (IllegalArgumentException e) {
+                job.status = Status.RUNNING;
+            }
+        }
+        return job;
+    }
+}
@@ -0,0 +1,65 @@
+package com.simpleeconomy.job;
+
+import com.simpleeconomy.SimpleEconomy;
+import com.simpleeconomy.data.EconomySavedData;
+import com.simpleeconomy.data.TransactionLog;
+import com.simpleeconomy.economy.Money;
+import net.minecraft.nbt.CompoundTag;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Scale every balance by a rate in basis points: positive grows balances, negative shrinks them.
+ * The change is rounded down to the minor unit.
+ */
+public class InflationJob extends EconomyJob {
+
+    static final String TYPE = "inflate";
+
+    private final long basisPoints;
+
+    public InflationJob(long basisPoints) {
+        this.basisPoints = basisPoints;
+    }
+
+    static InflationJob load(CompoundTag tag) {
+        return new InflationJob(tag.getLong("basisPoints"));
+    }
+
+    @Override
+    public String type() {
+        return TYPE;
+    }
+
+    @Override
+    public String describe() {
+        return String.format("Adjust every balance by %+.2f%%", basisPoints / 100.0);
+    }
+
+    @Override
+    protected boolean process(EconomySavedData economy, int slot, List<TransactionLog.Entry> log) {
+        long delta;
+        try {
+            delta = economy.updateBalanceForJob(slot, id(), balance -> basisPoints >= 0
+                ? Money.add(balance, Money.applyRate(balance, basisPoints))
+                : balance - Money.applyRate(balance, -basisPoints));
+        } catch (ArithmeticException e) {
+            SimpleEconomy.LOGGER.warn("Skipped {} in job #{}: balance would overflow", economy.getAccountAt(slot), id());
+            return false;
+        }
+        if (delta == 0) {
+            return false;
+        }
+        UUID player = economy.getAccountAt(slot);
+        log.add(new TransactionLog.Entry(player, delta > 0
+            ? TransactionLog.Transaction.adminAdd(delta)
+            : TransactionLog.Transaction.adminRemove(-delta)));
+        return true;
+    }
+
+    @Override
+    protected void saveParameters(CompoundTag tag) {
+        tag.putLong("basisPoints", basisPoints);
+    }
+}
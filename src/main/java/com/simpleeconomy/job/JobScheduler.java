@@ -0,0 +1,174 @@
+package com.simpleeconomy.job;
+
+import com.simpleeconomy.SimpleEconomy;
+import com.simpleeconomy.config.ModConfig;
+import com.simpleeconomy.data.AsyncSavedData;
+import com.simpleeconomy.data.EconomySavedData;
+import com.simpleeconomy.data.TransactionLog;
+import net.minecraft.core.HolderLookup;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.ListTag;
+import net.minecraft.nbt.Tag;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.world.level.storage.DimensionDataStorage;
+import net.minecraft.world.level.storage.LevelResource;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs {@link EconomyJob}s one after another at the end of each tick, stopping once the
+ * configured time budget is spent. Jobs and their status are written out on every tick a job
+ * advances. A job resumed after a restart or crash walks every account again; the accounts it
+ * already changed carry its id in the same journal record as their balance, so none is changed
+ * twice. Server thread only.
+ */
+public class JobScheduler extends AsyncSavedData {
+
+    private static final String DATA_NAME = SimpleEconomy.MOD_ID + "_jobs";
+
+    // Accounts processed between clock checks
+    private static final int SLICE = 256;
+    private static final int FINISHED_JOBS_KEPT = 5;
+
+    // Oldest first; the first running job is the one being worked on
+    private final List<EconomyJob> jobs = new ArrayList<>();
+    private int nextId = 1;
+    private boolean advanced;
+
+    public JobScheduler() {
+    }
+
+    public static JobScheduler load(CompoundTag tag, HolderLookup.Provider provider) {
+        JobScheduler scheduler = new JobScheduler();
+        scheduler.nextId = Math.max(1, tag.getInt("nextId"));
+        ListTag list = tag.getList("jobs", Tag.TAG_COMPOUND);
+        for (int i = 0; i < list.size(); i++) {
+            EconomyJob job = EconomyJob.load(list.getCompound(i));
+            if (job == null) {
+                SimpleEconomy.LOGGER.warn("Dropping job of unknown type: {}", list.getCompound(i).getString("type"));
+                continue;
+            }
+            scheduler.jobs.add(job);
+        }
+        return scheduler;
+    }
+
+    @Override
+    protected Snapshot snapshot(HolderLookup.Provider provider) {
+        ListTag list = new ListTag();
+        for (EconomyJob job : jobs) {
+            list.add(job.save());
+        }
+        int id = nextId;
+        return tag -> {
+            tag.putInt("nextId", id);
+            tag.put("jobs", list);
+            return tag;
+        };
+    }
+
+    /**
+     * Queue a job over the accounts that exist now
+     */
+    public EconomyJob submit(EconomyJob job, EconomySavedData economy) {
+        // Accounts may carry the id of a job this file lost in a crash
+        int id = Math.max(nextId, economy.getLastJobId() + 1);
+        nextId = id + 1;
+        job.start(id, economy.getSlotLimit());
+        jobs.add(job);
+        setDirty();
+        SimpleEconomy.LOGGER.info("Job #{} queued: {} ({} accounts)", job.id(), job.describe(), job.total());
+        return job;
+    }
+
+    /**
+     * Cancel a running job. Accounts it already processed stay changed.
+     */
+    public EconomyJob cancel(int id) {
+        for (EconomyJob job : jobs) {
+            if (job.id() == id && job.status() == EconomyJob.Status.RUNNING) {
+                job.cancel();
+                retire();
+                setDirty();
+                return job;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Running jobs, then recently finished or cancelled ones
+     */
+    public List<EconomyJob> getJobs() {
+        return new ArrayList<>(jobs);
+    }
+
+    /**
+     * Work on queued jobs until this tick's budget is spent. Log entries from the whole
+     * tick are written as one batch.
+     */
+    public void tick(EconomySavedData economy, TransactionLog log) {
+        EconomyJob job = nextRunning();
+        if (job == null) {
+            return;
+        }
+
+        long deadline = System.nanoTime() + ModConfig.getJobTickBudgetNanos();
+        List<TransactionLog.Entry> entries = new ArrayList<>();
+        while (job != null && System.nanoTime() < deadline) {
+            job.run(economy, SLICE, entries);
+            if (job.status() == EconomyJob.Status.FINISHED) {
+                SimpleEconomy.LOGGER.info("Job #{} finished: {} ({} of {} accounts changed)",
+                    job.id(), job.describe(), job.changed(), job.total());
+                retire();
+                job = nextRunning();
+            }
+        }
+        log.addTransactions(entries);
+        setDirty();
+        advanced = true;
+    }
+
+    /**
+     * Write job status now instead of at the next autosave, so a finished job is not resumed
+     * after a restart. Correctness does not depend on it: resuming only skips accounts.
+     */
+    public void saveProgress(MinecraftServer server) {
+        if (!advanced) {
+            return;
+        }
+        advanced = false;
+        save(server.getWorldPath(LevelResource.ROOT).resolve("data").resolve(DATA_NAME + ".dat").toFile(),
+            server.registryAccess());
+    }
+
+    private EconomyJob nextRunning() {
+        for (EconomyJob job : jobs) {
+            if (job.status() == EconomyJob.Status.RUNNING) {
+                return job;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Keep only the most recent finished and cancelled jobs
+     */
+    private void retire() {
+        int finished = 0;
+        for (int i = jobs.size() - 1; i >= 0; i--) {
+            if (jobs.get(i).status() != EconomyJob.Status.RUNNING && ++finished > FINISHED_JOBS_KEPT) {
+                jobs.remove(i);
+            }
+        }
+    }
+
+    public static JobScheduler get(MinecraftServer server) {
+        DimensionDataStorage storage = server.overworld().getDataStorage();
+        return storage.computeIfAbsent(
+            new Factory<>(JobScheduler::new, JobScheduler::load),
+            DATA_NAME
+        );
+    }
+}
@@ -0,0 +1,30 @@
+package com.simpleeconomy.job;
+
+import com.simpleeconomy.data.EconomySavedData;
+import com.simpleeconomy.data.TransactionLog;
+
+import java.util.List;
+
+/**
+ * Take accounts with nothing in them off the leaderboard and out of the stats.
+ * An account comes back as soon as its balance changes.
+ */
+public class PurgeEmptyJob extends EconomyJob {
+
+    static final String TYPE = "purgezero";
+
+    @Override
+    public String type() {
+        return TYPE;
+    }
+
+    @Override
+    public String describe() {
+        return "Purge empty accounts";
+    }
+
+    @Override
+    protected boolean process(EconomySavedData economy, int slot, List<TransactionLog.Entry> log) {
+        return economy.unlistIfEmpty(slot);
+    }
+}
@@ -3,6 +3,8 @@ package com.simpleeconomy.menu;
 import com.simpleeconomy.config.ModConfig;
 import com.simpleeconomy.data.ShopSavedData;
 import com.simpleeconomy.economy.EconomyManager;
+import com.simpleeconomy.economy.EconomyService;
+import com.simpleeconomy.economy.Money;
 import com.simpleeconomy.shop.Shop;
 import com.simpleeconomy.shop.ShopManager;
 import net.minecraft.core.component.DataComponents;
@@ -30,7 +32,7 @@ public class AddItemMenu extends ChestMenu {
     private final Player player;
     private final SimpleContainer container;
     private Shop shop;
-    private double selectedPrice = 10.0;
+    private long selectedPrice = Money.ofWhole(10);
     private ItemStack itemToSell = ItemStack.EMPTY;
     private static final int ITEM_SLOT = 22; // Center slot for the item to sell
 
@@ -62,7 +64,7 @@ public class AddItemMenu extends ChestMenu {
 
     private void loadShop() {
         if (player instanceof ServerPlayer serverPlayer) {
-            ShopSavedData data = ShopSavedData.get(serverPlayer.getServer());
+            ShopSavedData data = EconomyService.get().shops();
             List<Shop> shops = data.getShopsByOwner(player.getUUID());
             shop = shops.isEmpty() ? null : shops.get(0);
         }
@@ -141,9 +143,10 @@ public class AddItemMenu extends ChestMenu {
         container.setItem(BACK_SLOT, back);
     }
 
-    private ItemStack createPriceButton(double price, net.minecraft.world.item.Item item) {
+    private ItemStack createPriceButton(int coins, net.minecraft.world.item.Item item) {
         ItemStack button = new ItemStack(item);
-        boolean selected = Math.abs(selectedPrice - price) < 0.01;
+        long price = Money.ofWhole(coins);
+        boolean selected = selectedPrice == price;
         int color = selected ? 0x55FF55 : 0xFFD700;
         button.set(DataComponents.CUSTOM_NAME, Component.literal((selected ? "> " : "") + EconomyManager.formatBalance(price) + " " + ModConfig.getCurrencyName())
             .withStyle(Style.EMPTY.withColor(color).withItalic(false)));
@@ -153,7 +156,7 @@ public class AddItemMenu extends ChestMenu {
         return button;
     }
 
-    private ItemStack createAdjustButton(double adjustment, String label) {
+    private ItemStack createAdjustButton(int adjustment, String label) {
         ItemStack button = new ItemStack(adjustment > 0 ? Items.LIME_DYE : Items.RED_DYE);
         button.set(DataComponents.CUSTOM_NAME, Component.literal(label)
             .withStyle(Style.EMPTY.withColor(adjustment > 0 ? 0x55FF55 : 0xFF5555).withItalic(false)));
@@ -202,18 +205,18 @@ public class AddItemMenu extends ChestMenu {
         }
 
         // Price preset buttons
-        if (slotId == PRICE_1) { selectedPrice = 1; refreshDisplay(); serverPlayer.containerMenu.sendAllDataToRemote(); return; }
-        if (slotId == PRICE_5) { selectedPrice = 5; refreshDisplay(); serverPlayer.containerMenu.sendAllDataToRemote(); return; }
-        if (slotId == PRICE_10) { selectedPrice = 10; refreshDisplay(); serverPlayer.containerMenu.sendAllDataToRemote(); return; }
-        if (slotId == PRICE_50) { selectedPrice = 50; refreshDisplay(); serverPlayer.containerMenu.sendAllDataToRemote(); return; }
-        if (slotId == PRICE_100) { selectedPrice = 100; refreshDisplay(); serverPlayer.containerMenu.sendAllDataToRemote(); return; }
-        if (slotId == PRICE_500) { selectedPrice = 500; refreshDisplay(); serverPlayer.containerMenu.sendAllDataToRemote(); return; }
+        if (slotId == PRICE_1) { selectedPrice = Money.ofWhole(1); refreshDisplay(); serverPlayer.containerMenu.sendAllDataToRemote(); return; }
+        if (slotId == PRICE_5) { selectedPrice = Money.ofWhole(5); refreshDisplay(); serverPlayer.containerMenu.sendAllDataToRemote(); return; }
+        if (slotId == PRICE_10) { selectedPrice = Money.ofWhole(10); refreshDisplay(); serverPlayer.containerMenu.sendAllDataToRemote(); return; }
+        if (slotId == PRICE_50) { selectedPrice = Money.ofWhole(50); refreshDisplay(); serverPlayer.containerMenu.sendAllDataToRemote(); return; }
+        if (slotId == PRICE_100) { selectedPrice = Money.ofWhole(100); refreshDisplay(); serverPlayer.containerMenu.sendAllDataToRemote(); return; }
+        if (slotId == PRICE_500) { selectedPrice = Money.ofWhole(500); refreshDisplay(); serverPlayer.containerMenu.sendAllDataToRemote(); return; }
 
         // Price adjustment buttons
-        if (slotId == PRICE_MINUS_10) { selectedPrice = Math.max(0.01, selectedPrice - 10); refreshDisplay(); serverPlayer.containerMenu.sendAllDataToRemote(); return; }
-        if (slotId == PRICE_MINUS_1) { selectedPrice = Math.max(0.01, selectedPrice - 1); refreshDisplay(); serverPlayer.containerMenu.sendAllDataToRemote(); return; }
-        if (slotId == PRICE_PLUS_1) { selectedPrice += 1; refreshDisplay(); serverPlayer.containerMenu.sendAllDataToRemote(); return; }
-        if (slotId == PRICE_PLUS_10) { selectedPrice += 10; refreshDisplay(); serverPlayer.containerMenu.sendAllDataToRemote(); return; }
+        if (slotId == PRICE_MINUS_10) { selectedPrice = Math.max(1, selectedPrice - Money.ofWhole(10)); refreshDisplay(); serverPlayer.containerMenu.sendAllDataToRemote(); return; }
+        if (slotId == PRICE_MINUS_1) { selectedPrice = Math.max(1, selectedPrice - Money.ofWhole(1)); refreshDisplay(); serverPlayer.containerMenu.sendAllDataToRemote(); return; }
+        if (slotId == PRICE_PLUS_1) { selectedPrice += Money.ofWhole(1); refreshDisplay(); serverPlayer.containerMenu.sendAllDataToRemote(); return; }
+        if (slotId == PRICE_PLUS_10) { selectedPrice += Money.ofWhole(10); refreshDisplay(); serverPlayer.containerMenu.sendAllDataToRemote(); return; }
 
         // Confirm
         if (slotId == CONFIRM_SLOT) {
@@ -2,11 +2,12 @@ package com.simpleeconomy.menu;
 
 import com.simpleeconomy.config.ModConfig;
 import com.simpleeconomy.data.PlayerDataSavedData;
-import com.simpleeconomy.data.ShopSavedData;
-import com.simpleeconomy.data.TransactionLog;
 import com.simpleeconomy.economy.EconomyManager;
+import com.simpleeconomy.economy.EconomyService;
+import com.simpleeconomy.economy.Money;
 import com.simpleeconomy.shop.Shop;
 import com.simpleeconomy.shop.ShopItem;
+import com.simpleeconomy.shop.ShopManager;
 import com.simpleeconomy.util.SoundHelper;
 import net.minecraft.core.component.DataComponents;
 import net.minecraft.network.chat.Component;
@@ -35,7 +36,10 @@ public class ConfirmBuyMenu extends ChestMenu {
     private final Player player;
     private final SimpleContainer container;
     private final UUID shopId;
-    private final int itemIndex;
+    // Resolved once when opened; the version is checked again when buying
+    private final Shop shop;
+    private final ShopItem shopItem;
+    private final int version;
     private int quantity;
 
     private static final int CANCEL_SLOT = 0;
@@ -46,42 +50,29 @@ public class ConfirmBuyMenu extends ChestMenu {
     private static final int PLUS_5_SLOT = 6;
     private static final int CONFIRM_SLOT = 8;
 
-    public ConfirmBuyMenu(int containerId, Inventory playerInventory, UUID shopId, int itemIndex, int initialQuantity) {
+    public ConfirmBuyMenu(int containerId, Inventory playerInventory, UUID shopId, UUID itemId, int initialQuantity) {
         super(MenuType.GENERIC_9x1, containerId, playerInventory, new SimpleContainer(9), 1);
         this.player = playerInventory.player;
         this.container = (SimpleContainer) this.getContainer();
         this.shopId = shopId;
-        this.itemIndex = itemIndex;
+        this.shop = player instanceof ServerPlayer ? EconomyService.get().shops().getShop(shopId) : null;
+        this.shopItem = shop != null ? shop.getItem(itemId) : null;
+        this.version = shopItem != null ? shopItem.getVersion() : 0;
         this.quantity = Math.max(1, initialQuantity);
         clampQuantity();
         refreshDisplay();
     }
 
-    private Shop getShop() {
-        if (player instanceof ServerPlayer sp) {
-            return ShopSavedData.get(sp.getServer()).getShop(shopId);
-        }
-        return null;
-    }
-
-    private ShopItem getShopItem() {
-        Shop shop = getShop();
-        if (shop != null && itemIndex < shop.getItems().size()) {
-            return shop.getItems().get(itemIndex);
-        }
-        return null;
-    }
-
     private int getMaxQuantity() {
-        ShopItem item = getShopItem();
+        ShopItem item = shopItem;
         if (item == null) return 1;
 
         int maxStack = item.getItemStack().getMaxStackSize();
         int maxStock = item.isInfiniteStock() ? maxStack : Math.min(item.getStock(), maxStack);
 
         if (player instanceof ServerPlayer sp) {
-            double balance = EconomyManager.getBalance(sp);
-            int maxAfford = item.getPrice() > 0 ? (int) (balance / item.getPrice()) : maxStack;
+            long balance = EconomyManager.getBalance(sp);
+            int maxAfford = item.getPrice() > 0 ? (int) Math.min(balance / item.getPrice(), maxStack) : maxStack;
             return Math.max(1, Math.min(maxStock, maxAfford));
         }
         return Math.max(1, maxStock);
@@ -99,7 +90,6 @@ public class ConfirmBuyMenu extends ChestMenu {
             container.setItem(i, glass.copy());
         }
 
-        ShopItem shopItem = getShopItem();
         if (shopItem == null) {
             ItemStack error = new ItemStack(Items.BARRIER);
             error.set(DataComponents.CUSTOM_NAME, Component.literal("Item not available!").withStyle(Style.EMPTY.withColor(0xFF5555)));
@@ -107,7 +97,7 @@ public class ConfirmBuyMenu extends ChestMenu {
             return;
         }
 
-        double totalCost = shopItem.getPrice() * quantity;
+        long totalCost = Money.multiply(shopItem.getPrice(), quantity);
         String currency = ModConfig.getCurrencyName();
 
         // Cancel
@@ -206,8 +196,6 @@ public class ConfirmBuyMenu extends ChestMenu {
     }
 
     private void executePurchase(ServerPlayer buyer) {
-        Shop shop = getShop();
-        ShopItem shopItem = getShopItem();
         if (shop == null || shopItem == null) {
             buyer.sendSystemMessage(Component.literal("Item no longer available!").withStyle(s -> s.withColor(0xFF5555)));
             buyer.closeContainer();
@@ -221,7 +209,7 @@ public class ConfirmBuyMenu extends ChestMenu {
             return;
         }
 
-        double totalCost = shopItem.getPrice() * quantity;
+        long totalCost = Money.multiply(shopItem.getPrice(), quantity);
         if (!EconomyManager.hasBalance(buyer, totalCost)) {
             buyer.sendSystemMessage(Component.literal("Not enough " + ModConfig.getCurrencyName() + "! Need " + EconomyManager.formatBalance(totalCost))
                 .withStyle(s -> s.withColor(0xFF5555)));
@@ -241,25 +229,16 @@ public class ConfirmBuyMenu extends ChestMenu {
         }
 
         // Process purchase
-        ShopSavedData shopData = ShopSavedData.get(buyer.getServer());
-        EconomyManager.removeBalance(buyer, totalCost);
-
-        double tax = EconomyManager.calculateTax(totalCost);
-        double sellerAmount = totalCost - tax;
-
-        EconomyManager.addBalance(buyer.getServer(), shop.getOwnerUUID(), sellerAmount);
-
-        shopItem.removeStock(quantity);
-        shop.addSale(totalCost);
-        shopData.setDirty();
-
-        buyer.getInventory().add(toGive);
+        ShopManager.PurchaseResult result = ShopManager.purchaseItem(buyer, shopId, shopItem.getItemId(), version, quantity);
+        if (!result.success()) {
+            buyer.sendSystemMessage(Component.literal(result.message() + "!").withStyle(s -> s.withColor(0xFF5555)));
+            buyer.closeContainer();
+            buyer.openMenu(new ShopViewMenu.Provider(shopId));
+            return;
+        }
+        long sellerAmount = result.sellerReceives();
 
-        // Log
-        String itemName = quantity + "x " + shopItem.getItemStack().getHoverName().getString();
-        TransactionLog log = TransactionLog.get(buyer.getServer());
-        log.addTransaction(buyer.getUUID(), TransactionLog.Transaction.purchase(totalCost, itemName, shop.getOwnerUUID()));
-        log.addTransaction(shop.getOwnerUUID(), TransactionLog.Transaction.sale(sellerAmount, itemName, buyer.getUUID()));
+        buyer.getInventory().add(result.item());
 
         String currency = ModConfig.getCurrencyName();
 
@@ -278,7 +257,7 @@ public class ConfirmBuyMenu extends ChestMenu {
                     .withStyle(s -> s.withColor(0x55FF55).withBold(false))));
             SoundHelper.playSaleSound(seller);
         } else {
-            PlayerDataSavedData playerData = PlayerDataSavedData.get(buyer.getServer());
+            PlayerDataSavedData playerData = EconomyService.get().playerData();
             playerData.addOfflineSale(shop.getOwnerUUID(), sellerAmount);
         }
 
@@ -309,12 +288,12 @@ public class ConfirmBuyMenu extends ChestMenu {
 
     public static class Provider implements net.minecraft.world.MenuProvider {
         private final UUID shopId;
-        private final int itemIndex;
+        private final UUID itemId;
         private final int initialQuantity;
 
-        public Provider(UUID shopId, int itemIndex, int initialQuantity) {
+        public Provider(UUID shopId, UUID itemId, int initialQuantity) {
             this.shopId = shopId;
-            this.itemIndex = itemIndex;
+            this.itemId = itemId;
             this.initialQuantity = initialQuantity;
         }
 
@@ -325,7 +304,7 @@ public class ConfirmBuyMenu extends ChestMenu {
 
         @Override
         public ConfirmBuyMenu createMenu(int containerId, Inventory playerInventory, Player player) {
-            return new ConfirmBuyMenu(containerId, playerInventory, shopId, itemIndex, initialQuantity);
+            return new ConfirmBuyMenu(containerId, playerInventory, shopId, itemId, initialQuantity);
         }
     }
 }
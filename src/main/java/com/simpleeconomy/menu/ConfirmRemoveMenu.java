@@ -1,6 +1,6 @@
 package com.simpleeconomy.menu;
 
-import com.simpleeconomy.data.ShopSavedData;
+import com.simpleeconomy.economy.EconomyService;
 import com.simpleeconomy.shop.Shop;
 import com.simpleeconomy.shop.ShopItem;
 import net.minecraft.core.component.DataComponents;
@@ -29,37 +29,25 @@ import java.util.UUID;
 public class ConfirmRemoveMenu extends ChestMenu {
     private final Player player;
     private final SimpleContainer container;
-    private final UUID shopId;
-    private final int itemIndex;
+    // Resolved once when opened; the version is checked again when removing
+    private final Shop shop;
+    private final ShopItem shopItem;
+    private final int version;
 
     private static final int CANCEL_SLOT = 0;
     private static final int INFO_SLOT = 4;
     private static final int CONFIRM_SLOT = 8;
 
-    public ConfirmRemoveMenu(int containerId, Inventory playerInventory, UUID shopId, int itemIndex) {
+    public ConfirmRemoveMenu(int containerId, Inventory playerInventory, UUID shopId, UUID itemId) {
         super(MenuType.GENERIC_9x1, containerId, playerInventory, new SimpleContainer(9), 1);
         this.player = playerInventory.player;
         this.container = (SimpleContainer) this.getContainer();
-        this.shopId = shopId;
-        this.itemIndex = itemIndex;
+        this.shop = player instanceof ServerPlayer ? EconomyService.get().shops().getShop(shopId) : null;
+        this.shopItem = shop != null ? shop.getItem(itemId) : null;
+        this.version = shopItem != null ? shopItem.getVersion() : 0;
         refreshDisplay();
     }
 
-    private Shop getShop() {
-        if (player instanceof ServerPlayer sp) {
-            return ShopSavedData.get(sp.getServer()).getShop(shopId);
-        }
-        return null;
-    }
-
-    private ShopItem getShopItem() {
-        Shop shop = getShop();
-        if (shop != null && itemIndex < shop.getItems().size()) {
-            return shop.getItems().get(itemIndex);
-        }
-        return null;
-    }
-
     private void refreshDisplay() {
         // Fill with glass
         ItemStack glass = new ItemStack(Items.GRAY_STAINED_GLASS_PANE);
@@ -74,7 +62,6 @@ public class ConfirmRemoveMenu extends ChestMenu {
         container.setItem(CANCEL_SLOT, cancel);
 
         // Item info
-        ShopItem shopItem = getShopItem();
         if (shopItem != null) {
             ItemStack info = shopItem.getItemStack().copy();
             List<Component> lore = new ArrayList<>();
@@ -120,15 +107,17 @@ public class ConfirmRemoveMenu extends ChestMenu {
     }
 
     private void executeRemove(ServerPlayer player) {
-        Shop shop = getShop();
-        if (shop == null || itemIndex >= shop.getItems().size()) {
+        // The listing must still be in the shop as shown. It comes out before its stock is
+        // handed back, so the stock can only be handed back once.
+        if (shop == null || shopItem == null || shopItem.getVersion() != version
+            || shop.getItem(shopItem.getItemId()) != shopItem) {
             player.sendSystemMessage(Component.literal("Item no longer available!").withStyle(s -> s.withColor(0xFF5555)));
             player.closeContainer();
             player.openMenu(new MyShopMenu.Provider());
             return;
         }
-
-        ShopItem shopItem = shop.getItems().get(itemIndex);
+        shop.removeItem(shopItem.getItemId());
+        EconomyService.get().shops().setDirty();
 
         // Return stock to player
         if (shopItem.getStock() > 0) {
@@ -146,9 +135,6 @@ public class ConfirmRemoveMenu extends ChestMenu {
             }
         }
 
-        // Remove from shop
-        shop.getItems().remove(itemIndex);
-        ShopSavedData.get(player.getServer()).setDirty();
         player.sendSystemMessage(Component.literal("Item removed from shop!").withStyle(s -> s.withColor(0xFFAA00)));
 
         player.closeContainer();
@@ -177,11 +163,11 @@ public class ConfirmRemoveMenu extends ChestMenu {
 
     public static class Provider implements net.minecraft.world.MenuProvider {
         private final UUID shopId;
-        private final int itemIndex;
+        private final UUID itemId;
 
-        public Provider(UUID shopId, int itemIndex) {
+        public Provider(UUID shopId, UUID itemId) {
             this.shopId = shopId;
-            this.itemIndex = itemIndex;
+            this.itemId = itemId;
         }
 
         @Override
@@ -191,7 +177,7 @@ public class ConfirmRemoveMenu extends ChestMenu {
 
         @Override
         public ConfirmRemoveMenu createMenu(int containerId, Inventory playerInventory, Player player) {
-            return new ConfirmRemoveMenu(containerId, playerInventory, shopId, itemIndex);
+            return new ConfirmRemoveMenu(containerId, playerInventory, shopId, itemId);
         }
     }
 }
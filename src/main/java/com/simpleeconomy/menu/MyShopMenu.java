@@ -3,6 +3,7 @@ package com.simpleeconomy.menu;
 import com.simpleeconomy.config.ModConfig;
 import com.simpleeconomy.data.ShopSavedData;
 import com.simpleeconomy.economy.EconomyManager;
+import com.simpleeconomy.economy.EconomyService;
 import com.simpleeconomy.shop.Shop;
 import com.simpleeconomy.shop.ShopItem;
 import com.simpleeconomy.shop.ShopManager;
@@ -46,7 +47,7 @@ public class MyShopMenu extends ChestMenu {
 
     private void loadShop() {
         if (player instanceof ServerPlayer serverPlayer) {
-            ShopSavedData data = ShopSavedData.get(serverPlayer.getServer());
+            ShopSavedData data = EconomyService.get().shops();
             List<Shop> shops = data.getShopsByOwner(player.getUUID());
             shop = shops.isEmpty() ? null : shops.get(0);
         }
@@ -244,7 +245,7 @@ public class MyShopMenu extends ChestMenu {
                 if (clickType == ClickType.QUICK_MOVE) {
                     // Shift-click: Open remove confirmation
                     serverPlayer.closeContainer();
-                    serverPlayer.openMenu(new ConfirmRemoveMenu.Provider(shop.getShopId(), itemIdx));
+                    serverPlayer.openMenu(new ConfirmRemoveMenu.Provider(shop.getShopId(), shopItem.getItemId()));
                 } else if (button == 0) {
                     // Left-click: Take 1 from stock back to inventory
                     takeFromStock(serverPlayer, shopItem, 1);
@@ -275,7 +276,7 @@ public class MyShopMenu extends ChestMenu {
 
         if (player.getInventory().add(toGive)) {
             shopItem.setStock(shopItem.getStock() - amount);
-            ShopSavedData.get(player.getServer()).setDirty();
+            EconomyService.get().shops().setDirty();
             player.sendSystemMessage(Component.literal("Took " + amount + "x from stock.").withStyle(s -> s.withColor(0x55FF55)));
             refreshDisplay();
             player.containerMenu.sendAllDataToRemote();
@@ -304,7 +305,7 @@ public class MyShopMenu extends ChestMenu {
         }
 
         if (added > 0) {
-            ShopSavedData.get(player.getServer()).setDirty();
+            EconomyService.get().shops().setDirty();
             player.sendSystemMessage(Component.literal("Restocked " + added + " items!").withStyle(s -> s.withColor(0x55FF55)));
             refreshDisplay();
             player.containerMenu.sendAllDataToRemote();
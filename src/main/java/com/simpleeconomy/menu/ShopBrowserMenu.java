@@ -1,9 +1,10 @@
 package com.simpleeconomy.menu;
 
 import com.simpleeconomy.config.ModConfig;
-import com.simpleeconomy.data.ShopSavedData;
 import com.simpleeconomy.economy.EconomyManager;
+import com.simpleeconomy.economy.EconomyService;
 import com.simpleeconomy.shop.Shop;
+import com.simpleeconomy.shop.ShopManager;
 import com.simpleeconomy.util.HeadUtil;
 import net.minecraft.core.component.DataComponents;
 import net.minecraft.network.chat.Component;
@@ -21,7 +22,6 @@ import net.minecraft.world.item.Items;
 import net.minecraft.world.item.component.ItemLore;
 
 import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.List;
 
 /**
@@ -31,6 +31,7 @@ public class ShopBrowserMenu extends ChestMenu {
     private final Player player;
     private final SimpleContainer container;
     private List<Shop> shops = new ArrayList<>();
+    private ShopManager.SortType sortType = ShopManager.SortType.FEATURED_FIRST;
     private int page = 0;
     private static final int ROWS = 6;
     private static final int ITEMS_PER_PAGE = 45;
@@ -46,14 +47,21 @@ public class ShopBrowserMenu extends ChestMenu {
 
     private void loadShops() {
         if (player instanceof ServerPlayer serverPlayer) {
-            ShopSavedData data = ShopSavedData.get(serverPlayer.getServer());
-            shops = new ArrayList<>(data.getAllShops());
-            shops.sort(Comparator
-                .comparing(Shop::isFeatured).reversed()
-                .thenComparing(Comparator.comparingLong(Shop::getTotalSales).reversed()));
+            shops = ShopManager.getShopsSorted(sortType);
         }
     }
 
+    private static String sortName(ShopManager.SortType sortType) {
+        return switch (sortType) {
+            case NEWEST -> "Newest";
+            case OLDEST -> "Oldest";
+            case MOST_SALES -> "Most sales";
+            case ALPHABETICAL -> "A-Z";
+            case FEATURED_FIRST -> "Featured first";
+            case MOST_FAVORITED -> "Most favorited";
+        };
+    }
+
     private void refreshDisplay() {
         ItemStack glass = new ItemStack(Items.GRAY_STAINED_GLASS_PANE);
         glass.set(DataComponents.CUSTOM_NAME, Component.literal(" "));
@@ -78,6 +86,13 @@ public class ShopBrowserMenu extends ChestMenu {
             container.setItem(navRow, prevBtn);
         }
 
+        ItemStack sortBtn = new ItemStack(Items.HOPPER);
+        sortBtn.set(DataComponents.CUSTOM_NAME, Component.literal("Sort: " + sortName(sortType)).withStyle(Style.EMPTY.withColor(0x55FFFF).withItalic(false)));
+        List<Component> sortLore = new ArrayList<>();
+        sortLore.add(Component.literal("Click to change").withStyle(Style.EMPTY.withColor(0x888888).withItalic(false)));
+        sortBtn.set(DataComponents.LORE, new ItemLore(sortLore));
+        container.setItem(navRow + 2, sortBtn);
+
         ItemStack info = new ItemStack(Items.BOOK);
         int maxPages = Math.max(1, (int) Math.ceil((double) shops.size() / ITEMS_PER_PAGE));
         info.set(DataComponents.CUSTOM_NAME, Component.literal("Page " + (page + 1) + "/" + maxPages).withStyle(Style.EMPTY.withColor(0xAAAAAA).withItalic(false)));
@@ -122,6 +137,7 @@ public class ShopBrowserMenu extends ChestMenu {
         lore.add(Component.literal("Owner: " + shop.getOwnerName()).withStyle(Style.EMPTY.withColor(0xAAAAAA).withItalic(false)));
         lore.add(Component.literal("Items: " + shop.getItems().size()).withStyle(Style.EMPTY.withColor(0x888888).withItalic(false)));
         lore.add(Component.literal("Sales: " + shop.getTotalSales()).withStyle(Style.EMPTY.withColor(0x888888).withItalic(false)));
+        lore.add(Component.literal("Favorites: " + EconomyService.get().shops().getFavoriteCount(shop.getShopId())).withStyle(Style.EMPTY.withColor(0x888888).withItalic(false)));
         lore.add(Component.literal("Revenue: " + EconomyManager.formatBalance(shop.getTotalRevenue()) + " " + ModConfig.getCurrencyName()).withStyle(Style.EMPTY.withColor(0x55FF55).withItalic(false)));
         if (!shop.getDescription().isEmpty()) {
             lore.add(Component.empty());
@@ -134,7 +150,7 @@ public class ShopBrowserMenu extends ChestMenu {
         return icon;
     }
 
-    private double getPlayerBalance() {
+    private long getPlayerBalance() {
         if (player instanceof ServerPlayer serverPlayer) {
             return EconomyManager.getBalance(serverPlayer);
         }
@@ -160,6 +176,16 @@ public class ShopBrowserMenu extends ChestMenu {
             return;
         }
 
+        if (slotId == navRow + 2) {
+            ShopManager.SortType[] sortTypes = ShopManager.SortType.values();
+            sortType = sortTypes[(sortType.ordinal() + 1) % sortTypes.length];
+            page = 0;
+            loadShops();
+            refreshDisplay();
+            serverPlayer.containerMenu.sendAllDataToRemote();
+            return;
+        }
+
         if (slotId == navRow + 8) {
             int maxPages = Math.max(1, (int) Math.ceil((double) shops.size() / ITEMS_PER_PAGE));
             if ((page + 1) * ITEMS_PER_PAGE < shops.size()) {
@@ -3,6 +3,7 @@ package com.simpleeconomy.menu;
 import com.simpleeconomy.config.ModConfig;
 import com.simpleeconomy.data.ShopSavedData;
 import com.simpleeconomy.economy.EconomyManager;
+import com.simpleeconomy.economy.EconomyService;
 import com.simpleeconomy.shop.Shop;
 import com.simpleeconomy.shop.ShopItem;
 import net.minecraft.core.component.DataComponents;
@@ -48,7 +49,7 @@ public class ShopViewMenu extends ChestMenu {
 
     private void loadShop() {
         if (player instanceof ServerPlayer serverPlayer) {
-            ShopSavedData data = ShopSavedData.get(serverPlayer.getServer());
+            ShopSavedData data = EconomyService.get().shops();
             shop = data.getShop(shopId);
         }
     }
@@ -115,6 +116,21 @@ public class ShopViewMenu extends ChestMenu {
             container.setItem(navRow + 6, nextBtn);
         }
 
+        // Favorite toggle
+        if (player instanceof ServerPlayer) {
+            ShopSavedData data = EconomyService.get().shops();
+            boolean favorite = data.isFavorite(player.getUUID(), shopId);
+            ItemStack favoriteBtn = new ItemStack(favorite ? Items.NETHER_STAR : Items.FIREWORK_STAR);
+            favoriteBtn.set(DataComponents.CUSTOM_NAME, Component.literal(favorite ? "\u2605 Favorited" : "\u2606 Add to Favorites")
+                .withStyle(Style.EMPTY.withColor(favorite ? 0xFFD700 : 0xAAAAAA).withItalic(false)));
+            List<Component> favoriteLore = new ArrayList<>();
+            int count = data.getFavoriteCount(shopId);
+            favoriteLore.add(Component.literal("Favorited by " + count + (count == 1 ? " player" : " players")).withStyle(Style.EMPTY.withColor(0x888888).withItalic(false)));
+            favoriteLore.add(Component.literal(favorite ? "Click to remove" : "Click to add").withStyle(Style.EMPTY.withColor(0xFFFF55).withItalic(false)));
+            favoriteBtn.set(DataComponents.LORE, new ItemLore(favoriteLore));
+            container.setItem(navRow + 7, favoriteBtn);
+        }
+
         // Close button
         ItemStack closeBtn = new ItemStack(Items.BARRIER);
         closeBtn.set(DataComponents.CUSTOM_NAME, Component.literal("Close").withStyle(Style.EMPTY.withColor(0xFF5555).withItalic(false)));
@@ -133,7 +149,7 @@ public class ShopViewMenu extends ChestMenu {
             .withStyle(Style.EMPTY.withColor(shopItem.isInStock() ? 0x55FF55 : 0xFF5555).withItalic(false)));
 
         // Check if player can afford
-        double balance = getPlayerBalance();
+        long balance = getPlayerBalance();
         if (balance < shopItem.getPrice()) {
             lore.add(Component.empty());
             lore.add(Component.literal("Cannot afford!").withStyle(Style.EMPTY.withColor(0xFF5555).withItalic(false)));
@@ -150,7 +166,7 @@ public class ShopViewMenu extends ChestMenu {
         return icon;
     }
 
-    private double getPlayerBalance() {
+    private long getPlayerBalance() {
         if (player instanceof ServerPlayer serverPlayer) {
             return EconomyManager.getBalance(serverPlayer);
         }
@@ -197,6 +213,14 @@ public class ShopViewMenu extends ChestMenu {
             return;
         }
 
+        // Favorite toggle
+        if (slotId == navRow + 7 && shop != null) {
+            EconomyService.get().shops().toggleFavorite(serverPlayer.getUUID(), shopId);
+            refreshDisplay();
+            serverPlayer.containerMenu.sendAllDataToRemote();
+            return;
+        }
+
         // Close
         if (slotId == navRow + 8) {
             serverPlayer.closeContainer();
@@ -225,7 +249,7 @@ public class ShopViewMenu extends ChestMenu {
                 initialQuantity = 1;
             }
             serverPlayer.closeContainer();
-            serverPlayer.openMenu(new ConfirmBuyMenu.Provider(shopId, itemIdx, initialQuantity));
+            serverPlayer.openMenu(new ConfirmBuyMenu.Provider(shopId, shopItem.getItemId(), initialQuantity));
             return;
         }
 
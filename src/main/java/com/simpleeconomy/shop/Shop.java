@@ -1,12 +1,16 @@
 package com.simpleeconomy.shop;
 
+import com.simpleeconomy.economy.Money;
 import net.minecraft.nbt.CompoundTag;
 import net.minecraft.nbt.ListTag;
 import net.minecraft.nbt.Tag;
 import net.minecraft.core.HolderLookup;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 public class Shop {
@@ -16,9 +20,11 @@ public class Shop {
     private String ownerName;
     private String shopName;
     private String description;
+    // Listings in display order, and the same listings by id
     private final List<ShopItem> items;
+    private final Map<UUID, ShopItem> itemsById = new HashMap<>();
     private long totalSales;
-    private double totalRevenue;
+    private long totalRevenue;
     private long createdTime;
     private boolean featured;
 
@@ -72,41 +78,47 @@ public class Shop {
         this.description = description;
     }
 
+    /**
+     * Listings in display order. Read-only; use {@link #addItem} and {@link #removeItem} so
+     * lookups by id stay in step.
+     */
     public List<ShopItem> getItems() {
-        return items;
+        return Collections.unmodifiableList(items);
     }
 
     public void addItem(ShopItem item) {
+        ShopItem replaced = itemsById.put(item.getItemId(), item);
+        if (replaced != null) {
+            items.remove(replaced);
+        }
         items.add(item);
     }
 
-    public void removeItem(int index) {
-        if (index >= 0 && index < items.size()) {
-            items.remove(index);
+    /**
+     * Remove a listing and return it, or null if the shop has no such listing
+     */
+    public ShopItem removeItem(UUID itemId) {
+        ShopItem item = itemsById.remove(itemId);
+        if (item != null) {
+            items.remove(item);
         }
-    }
-
-    public void removeItem(UUID itemId) {
-        items.removeIf(item -> item.getItemId().equals(itemId));
+        return item;
     }
 
     public ShopItem getItem(UUID itemId) {
-        return items.stream()
-            .filter(item -> item.getItemId().equals(itemId))
-            .findFirst()
-            .orElse(null);
+        return itemsById.get(itemId);
     }
 
     public long getTotalSales() {
         return totalSales;
     }
 
-    public void addSale(double amount) {
+    public void addSale(long amount) {
         this.totalSales++;
-        this.totalRevenue += amount;
+        this.totalRevenue = Money.add(totalRevenue, amount);
     }
 
-    public double getTotalRevenue() {
+    public long getTotalRevenue() {
         return totalRevenue;
     }
 
@@ -118,10 +130,33 @@ public class Shop {
         return featured;
     }
 
+    /**
+     * Use {@link com.simpleeconomy.data.ShopSavedData#setFeatured} for a shop that has been added,
+     * so its featured index is updated
+     */
     public void setFeatured(boolean featured) {
         this.featured = featured;
     }
 
+    /**
+     * Deep copy, including item stacks, for saving off the server thread
+     */
+    public Shop copy() {
+        Shop copy = new Shop(shopId);
+        copy.ownerUUID = ownerUUID;
+        copy.ownerName = ownerName;
+        copy.shopName = shopName;
+        copy.description = description;
+        copy.totalSales = totalSales;
+        copy.totalRevenue = totalRevenue;
+        copy.createdTime = createdTime;
+        copy.featured = featured;
+        for (ShopItem item : items) {
+            copy.addItem(item.copy());
+        }
+        return copy;
+    }
+
     public CompoundTag save(HolderLookup.Provider provider) {
         CompoundTag tag = new CompoundTag();
         tag.putUUID("shopId", shopId);
@@ -130,7 +165,7 @@ public class Shop {
         tag.putString("shopName", shopName);
         tag.putString("description", description);
         tag.putLong("totalSales", totalSales);
-        tag.putDouble("totalRevenue", totalRevenue);
+        tag.putLong("totalRevenue", totalRevenue);
         tag.putLong("createdTime", createdTime);
         tag.putBoolean("featured", featured);
 
@@ -150,7 +185,7 @@ public class Shop {
         shop.shopName = tag.getString("shopName");
         shop.description = tag.getString("description");
         shop.totalSales = tag.getLong("totalSales");
-        shop.totalRevenue = tag.getDouble("totalRevenue");
+        shop.totalRevenue = Money.read(tag, "totalRevenue");
         shop.createdTime = tag.getLong("createdTime");
         shop.featured = tag.getBoolean("featured");
 
@@ -158,7 +193,7 @@ public class Shop {
         for (int i = 0; i < itemsTag.size(); i++) {
             ShopItem item = ShopItem.load(itemsTag.getCompound(i), provider);
             if (item != null) {
-                shop.items.add(item);
+                shop.addItem(item);
             }
         }
 
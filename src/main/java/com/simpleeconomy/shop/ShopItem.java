@@ -1,5 +1,6 @@
 package com.simpleeconomy.shop;
 
+import com.simpleeconomy.economy.Money;
 import net.minecraft.core.HolderLookup;
 import net.minecraft.nbt.CompoundTag;
 import net.minecraft.world.item.ItemStack;
@@ -10,12 +11,14 @@ public class ShopItem {
 
     private final UUID itemId;
     private ItemStack itemStack;
-    private double price;
+    private long price;
     private int stock;
     private int maxStock;
     private long totalSold;
+    // Bumped whenever what a buyer pays or gets changes; not saved, since menus do not outlive the server
+    private int version;
 
-    public ShopItem(ItemStack itemStack, double price, int stock) {
+    public ShopItem(ItemStack itemStack, long price, int stock) {
         this.itemId = UUID.randomUUID();
         this.itemStack = itemStack.copy();
         this.price = price;
@@ -38,17 +41,19 @@ public class ShopItem {
 
     public void setItemStack(ItemStack itemStack) {
         this.itemStack = itemStack.copy();
+        version++;
     }
 
-    public double getPrice() {
+    public long getPrice() {
         return price;
     }
 
-    public void setPrice(double price) {
+    public void setPrice(long price) {
         this.price = Math.max(0, price);
+        version++;
     }
 
-    public double getPricePerItem() {
+    public long getPricePerItem() {
         int count = itemStack.getCount();
         return count > 0 ? price / count : price;
     }
@@ -87,6 +92,7 @@ public class ShopItem {
     public void setInfiniteStock(boolean infinite) {
         if (infinite) {
             this.stock = -1;
+            version++;
         }
     }
 
@@ -98,15 +104,34 @@ public class ShopItem {
         return totalSold;
     }
 
+    /**
+     * Changes when the price, the item or unlimited stock changes, so a menu opened on one
+     * version of a listing can tell it is no longer what the player saw. Stock levels are
+     * checked separately at purchase and do not change it.
+     */
+    public int getVersion() {
+        return version;
+    }
+
     public boolean isInStock() {
         return stock == -1 || stock > 0;
     }
 
+    public ShopItem copy() {
+        ShopItem copy = new ShopItem(itemId);
+        copy.itemStack = itemStack.copy();
+        copy.price = price;
+        copy.stock = stock;
+        copy.maxStock = maxStock;
+        copy.totalSold = totalSold;
+        return copy;
+    }
+
     public CompoundTag save(HolderLookup.Provider provider) {
         CompoundTag tag = new CompoundTag();
         tag.putUUID("itemId", itemId);
         tag.put("itemStack", itemStack.save(provider));
-        tag.putDouble("price", price);
+        tag.putLong("price", price);
         tag.putInt("stock", stock);
         tag.putInt("maxStock", maxStock);
         tag.putLong("totalSold", totalSold);
@@ -123,7 +148,7 @@ public class ShopItem {
             return null;
         }
 
-        item.price = tag.getDouble("price");
+        item.price = Money.read(tag, "price");
         item.stock = tag.getInt("stock");
         item.maxStock = tag.getInt("maxStock");
         item.totalSold = tag.getLong("totalSold");
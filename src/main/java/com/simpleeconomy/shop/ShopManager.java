@@ -2,8 +2,11 @@ package com.simpleeconomy.shop;
 
 import com.simpleeconomy.SimpleEconomy;
 import com.simpleeconomy.data.ShopSavedData;
+import com.simpleeconomy.data.TransactionLog;
 import com.simpleeconomy.economy.EconomyManager;
-import net.minecraft.server.MinecraftServer;
+import com.simpleeconomy.economy.EconomyService;
+import com.simpleeconomy.economy.Money;
+import com.simpleeconomy.economy.Settlement;
 import net.minecraft.server.level.ServerPlayer;
 import net.minecraft.world.item.ItemStack;
 
@@ -18,11 +21,9 @@ public class ShopManager {
     private static final int MAX_ITEMS_PER_SHOP = 27; // 3 rows of 9
 
     public static Shop createShop(ServerPlayer player, String shopName) {
-        MinecraftServer server = player.getServer();
-        ShopSavedData data = ShopSavedData.get(server);
+        ShopSavedData data = EconomyService.get().shops();
 
-        List<Shop> existingShops = data.getShopsByOwner(player.getUUID());
-        if (existingShops.size() >= MAX_SHOPS_PER_PLAYER) {
+        if (data.countShopsByOwner(player.getUUID()) >= MAX_SHOPS_PER_PLAYER) {
             return null;
         }
 
@@ -34,8 +35,7 @@ public class ShopManager {
     }
 
     public static boolean deleteShop(ServerPlayer player, UUID shopId) {
-        MinecraftServer server = player.getServer();
-        ShopSavedData data = ShopSavedData.get(server);
+        ShopSavedData data = EconomyService.get().shops();
 
         Shop shop = data.getShop(shopId);
         if (shop == null) {
@@ -52,9 +52,8 @@ public class ShopManager {
         return true;
     }
 
-    public static boolean addItemToShop(ServerPlayer player, UUID shopId, ItemStack itemStack, double price) {
-        MinecraftServer server = player.getServer();
-        ShopSavedData data = ShopSavedData.get(server);
+    public static boolean addItemToShop(ServerPlayer player, UUID shopId, ItemStack itemStack, long price) {
+        ShopSavedData data = EconomyService.get().shops();
 
         Shop shop = data.getShop(shopId);
         if (shop == null || !shop.getOwnerUUID().equals(player.getUUID())) {
@@ -79,14 +78,13 @@ public class ShopManager {
         data.setDirty();
 
         SimpleEconomy.LOGGER.info("Added item to shop: {} (stock: {}) at {} coins each",
-            itemStack.getDisplayName().getString(), stock, price);
+            itemStack.getDisplayName().getString(), stock, Money.format(price));
 
         return true;
     }
 
     public static boolean removeItemFromShop(ServerPlayer player, UUID shopId, UUID itemId) {
-        MinecraftServer server = player.getServer();
-        ShopSavedData data = ShopSavedData.get(server);
+        ShopSavedData data = EconomyService.get().shops();
 
         Shop shop = data.getShop(shopId);
         if (shop == null || !shop.getOwnerUUID().equals(player.getUUID())) {
@@ -98,58 +96,69 @@ public class ShopManager {
         return true;
     }
 
-    public static PurchaseResult purchaseItem(ServerPlayer buyer, UUID shopId, UUID itemId, int quantity) {
-        MinecraftServer server = buyer.getServer();
-        ShopSavedData data = ShopSavedData.get(server);
+    /**
+     * Buy from a listing, provided it is still in the shop and still at the version the buyer
+     * was shown
+     */
+    public static PurchaseResult purchaseItem(ServerPlayer buyer, UUID shopId, UUID itemId, int version, int quantity) {
+        ShopSavedData data = EconomyService.get().shops();
 
         Shop shop = data.getShop(shopId);
         if (shop == null) {
-            return new PurchaseResult(false, "Shop not found", null, 0);
+            return new PurchaseResult(false, "Shop not found", null, 0, 0);
         }
 
         ShopItem item = shop.getItem(itemId);
         if (item == null) {
-            return new PurchaseResult(false, "Item not found", null, 0);
+            return new PurchaseResult(false, "Item not found", null, 0, 0);
         }
 
-        if (item.getStock() < quantity) {
-            return new PurchaseResult(false, "Not enough stock", null, 0);
+        if (item.getVersion() != version) {
+            return new PurchaseResult(false, "Listing has changed", null, 0, 0);
         }
 
-        double totalPrice = item.getPrice() * quantity;
-        double tax = EconomyManager.calculateTax(totalPrice);
-        double sellerReceives = totalPrice - tax;
-
-        if (!EconomyManager.hasBalance(buyer, totalPrice)) {
-            return new PurchaseResult(false, "Insufficient funds", null, 0);
+        if (!item.isInfiniteStock() && item.getStock() < quantity) {
+            return new PurchaseResult(false, "Not enough stock", null, 0, 0);
         }
 
-        // Process transaction
-        EconomyManager.removeBalance(buyer, totalPrice);
-        EconomyManager.addBalance(server, shop.getOwnerUUID(), sellerReceives);
+        long totalPrice = Money.multiply(item.getPrice(), quantity);
+        long tax = EconomyManager.calculateTax(totalPrice);
+        long sellerReceives = totalPrice - tax;
+
+        // Create item to give to buyer
+        ItemStack purchasedItem = item.getItemStack().copy();
+        purchasedItem.setCount(quantity);
+        String itemName = purchasedItem.getHoverName().getString();
+
+        // Buyer pays, seller is paid and tax is taken in one step, logged with it
+        Settlement settlement = Settlement.builder()
+            .debit(buyer.getUUID(), totalPrice)
+            .credit(shop.getOwnerUUID(), sellerReceives)
+            .tax(tax)
+            .post(TransactionLog.Posting.purchase(buyer.getUUID(), shop.getOwnerUUID(), totalPrice, tax, quantity, itemName))
+            .build();
+        if (!EconomyManager.settle(settlement)) {
+            return new PurchaseResult(false, "Insufficient funds", null, 0, 0);
+        }
 
         // Update stock
         item.removeStock(quantity);
         shop.addSale(totalPrice);
         data.setDirty();
 
-        // Create item to give to buyer
-        ItemStack purchasedItem = item.getItemStack().copy();
-        purchasedItem.setCount(quantity * item.getItemStack().getCount());
-
         SimpleEconomy.LOGGER.info("Purchase: {} bought {}x {} from {} for {} coins",
             buyer.getName().getString(),
             quantity,
             purchasedItem.getDisplayName().getString(),
             shop.getOwnerName(),
-            totalPrice
+            Money.format(totalPrice)
         );
 
-        return new PurchaseResult(true, "Purchase successful", purchasedItem, totalPrice);
+        return new PurchaseResult(true, "Purchase successful", purchasedItem, totalPrice, sellerReceives);
     }
 
-    public static List<Shop> getShopsSorted(MinecraftServer server, SortType sortType) {
-        ShopSavedData data = ShopSavedData.get(server);
+    public static List<Shop> getShopsSorted(SortType sortType) {
+        ShopSavedData data = EconomyService.get().shops();
         List<Shop> shops = data.getAllShops();
 
         Comparator<Shop> comparator = switch (sortType) {
@@ -159,13 +168,15 @@ public class ShopManager {
             case ALPHABETICAL -> Comparator.comparing(Shop::getShopName, String.CASE_INSENSITIVE_ORDER);
             case FEATURED_FIRST -> Comparator.comparing(Shop::isFeatured).reversed()
                 .thenComparing(Shop::getTotalSales, Comparator.reverseOrder());
+            case MOST_FAVORITED -> Comparator.comparingInt((Shop shop) -> data.getFavoriteCount(shop.getShopId())).reversed()
+                .thenComparing(Shop::getTotalSales, Comparator.reverseOrder());
         };
 
         return shops.stream().sorted(comparator).collect(Collectors.toList());
     }
 
-    public static List<Shop> searchItems(MinecraftServer server, String query) {
-        ShopSavedData data = ShopSavedData.get(server);
+    public static List<Shop> searchItems(String query) {
+        ShopSavedData data = EconomyService.get().shops();
         String lowerQuery = query.toLowerCase();
 
         return data.getAllShops().stream()
@@ -187,9 +198,10 @@ public class ShopManager {
         OLDEST,
         MOST_SALES,
         ALPHABETICAL,
-        FEATURED_FIRST
+        FEATURED_FIRST,
+        MOST_FAVORITED
     }
 
-    public record PurchaseResult(boolean success, String message, ItemStack item, double price) {
+    public record PurchaseResult(boolean success, String message, ItemStack item, long price, long sellerReceives) {
     }
 }
@@ -0,0 +1,104 @@
+package com.simpleeconomy.data;
+
+import net.minecraft.nbt.CompoundTag;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InterestIndexTest {
+
+    private static final long BALANCE = 1_000_000;
+
+    @Test
+    void packKeepsBalanceAndEpoch() {
+        InterestIndex index = InterestIndex.NONE.next(100, Long.MAX_VALUE).next(100, Long.MAX_VALUE);
+        long cell = index.pack(BALANCE);
+        assertTrue(cell >= 0, "cells are never negative");
+        assertEquals(2, cell >>> 48);
+        assertEquals(BALANCE, cell & InterestIndex.MAX_BALANCE);
+        // Written in the current epoch, so nothing is owed yet
+        assertEquals(BALANCE, index.settle(cell));
+    }
+
+    @Test
+    void packClampsToTheBalanceRange() {
+        assertEquals(0, InterestIndex.NONE.pack(-5));
+        assertEquals(InterestIndex.MAX_BALANCE, InterestIndex.NONE.pack(Long.MAX_VALUE));
+    }
+
+    @Test
+    void settleCompoundsMissedEpochs() {
+        long cell = InterestIndex.NONE.pack(BALANCE);
+        InterestIndex index = InterestIndex.NONE;
+        for (int i = 0; i < 3; i++) {
+            index = index.next(1_000, Long.MAX_VALUE);
+        }
+        // 10% three times over
+        assertNear(1_331_000, index.settle(cell));
+    }
+
+    @Test
+    void capsAddUpAcrossMissedEpochs() {
+        long cell = InterestIndex.NONE.pack(BALANCE);
+        InterestIndex index = InterestIndex.NONE.next(1_000, 5_000).next(1_000, 7_000);
+        assertEquals(BALANCE + 12_000, index.settle(cell));
+    }
+
+    @Test
+    void settleNeverPassesTheMaximum() {
+        long cell = InterestIndex.NONE.pack(InterestIndex.MAX_BALANCE - 10);
+        InterestIndex index = InterestIndex.NONE.next(1_000, Long.MAX_VALUE);
+        assertEquals(InterestIndex.MAX_BALANCE, index.settle(cell));
+    }
+
+    @Test
+    void olderIndexesStayValidAfterBranching() {
+        long cell = InterestIndex.NONE.pack(BALANCE);
+        InterestIndex first = InterestIndex.NONE.next(1_000, Long.MAX_VALUE);
+        InterestIndex second = first.next(1_000, Long.MAX_VALUE);
+        long paid = second.settle(cell);
+
+        // Paying from the older index again must not disturb the newer one
+        InterestIndex branch = first.next(5_000, Long.MAX_VALUE);
+        assertEquals(paid, second.settle(cell));
+        assertEquals(1_100_000, first.settle(cell));
+        assertNear(1_650_000, branch.settle(cell));
+    }
+
+    @Test
+    void cellsFromALaterIndexAreNotPaidTwice() {
+        InterestIndex first = InterestIndex.NONE.next(1_000, Long.MAX_VALUE);
+        InterestIndex second = first.next(1_000, Long.MAX_VALUE);
+        long cell = second.pack(BALANCE);
+        assertEquals(BALANCE, first.settle(cell));
+    }
+
+    @Test
+    void manyEpochsGrowTheHistory() {
+        InterestIndex index = InterestIndex.NONE;
+        long cell = index.pack(BALANCE);
+        for (int i = 0; i < 1_000; i++) {
+            index = index.next(0, Long.MAX_VALUE);
+        }
+        assertEquals(1_000, index.epoch());
+        assertEquals(BALANCE, index.settle(cell));
+    }
+
+    @Test
+    void saveAndLoadKeepSettlement() {
+        long cell = InterestIndex.NONE.pack(BALANCE);
+        InterestIndex index = InterestIndex.NONE.next(250, 10_000).next(1_000, 50_000).next(300, 20_000);
+        CompoundTag tag = new CompoundTag();
+        index.save(tag);
+        InterestIndex loaded = InterestIndex.load(tag);
+        assertEquals(index.epoch(), loaded.epoch());
+        assertEquals(index.settle(cell), loaded.settle(cell));
+        assertEquals(index.settle(index.pack(BALANCE)), loaded.settle(loaded.pack(BALANCE)));
+    }
+
+    // Growth is compounded in floating point, so allow a minor unit of rounding
+    private static void assertNear(long expected, long actual) {
+        assertTrue(Math.abs(expected - actual) <= 1, "expected " + expected + " but was " + actual);
+    }
+}
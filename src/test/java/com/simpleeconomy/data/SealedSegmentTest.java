@@ -0,0 +1,95 @@
+package com.simpleeconomy.data;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertIterableEquals;
+
+class SealedSegmentTest {
+
+    private static final UUID PLAYER = new UUID(0x0123456789ABCDEFL, 0xFEDCBA9876543210L);
+    private static final UUID OTHER = new UUID(-1, -1);
+    private static final UUID THIRD = new UUID(0, 1);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void extremeValuesRoundTrip() throws IOException {
+        // Values at the edges of every varint and zigzag column, with times running backwards
+        // and the other party changing back and forth
+        long[] amounts = {0, 1, -1, 63, -64, 64, -65, Long.MAX_VALUE, Long.MIN_VALUE, Long.MIN_VALUE + 1};
+        long[] timestamps = {0, Long.MAX_VALUE, Long.MIN_VALUE, 1, -1, 1_700_000_000_000L, 1_699_999_999_999L, 128, 127, 0};
+        int[] numbers = {0, -1, Integer.MAX_VALUE, Integer.MIN_VALUE, 127, 128, -128, 16_384, -16_385, 1};
+        UUID[] parties = {null, OTHER, THIRD, OTHER, null, null, THIRD, THIRD, OTHER, null};
+        String[] subjects = {null, "", "Diamond", "Diamond", "\u00e9t\u00e9 \u2603 \uD83D\uDCB0", null, "x", "Diamond", "", null};
+
+        List<TransactionLog.Transaction> written = new ArrayList<>();
+        Path path = directory.resolve("2024-01-01.ledgerz");
+        try (SealedSegment.Writer writer = new SealedSegment.Writer(path)) {
+            for (int i = 0; i < amounts.length; i++) {
+                TransactionLog.Transaction transaction = new TransactionLog.Transaction(
+                    TransactionLog.TransactionType.values()[i % TransactionLog.TransactionType.values().length],
+                    amounts[i], timestamps[i], parties[i], subjects[i], numbers[i]);
+                writer.add(new TransactionLog.Entry(PLAYER, transaction));
+                written.add(transaction);
+            }
+        }
+
+        List<TransactionLog.Transaction> read = new ArrayList<>();
+        SealedSegment.read(path, PLAYER, Long.MIN_VALUE, read);
+        assertIterableEquals(written, read);
+    }
+
+    @Test
+    void postingsRoundTripForBothSides() throws IOException {
+        TransactionLog.Posting posting = new TransactionLog.Posting(TransactionLog.TransactionType.PURCHASE,
+            PLAYER, OTHER, 12_345, 617, 1_700_000_000_000L, "Diamond", "Diamond", 3);
+        Path path = directory.resolve("2024-01-02.ledgerz");
+        try (SealedSegment.Writer writer = new SealedSegment.Writer(path)) {
+            writer.add(posting);
+        }
+
+        List<TransactionLog.Transaction> expected = new ArrayList<>();
+        posting.forEachLeg((player, transaction) -> {
+            if (player.equals(OTHER)) {
+                expected.add(transaction);
+            }
+        });
+        List<TransactionLog.Transaction> payee = new ArrayList<>();
+        SealedSegment.read(path, OTHER, Long.MIN_VALUE, payee);
+        assertIterableEquals(expected, payee);
+
+        List<TransactionLog.Transaction> payer = new ArrayList<>();
+        SealedSegment.read(path, PLAYER, Long.MIN_VALUE, payer);
+        assertIterableEquals(List.of(posting.payerLeg()), payer);
+    }
+
+    @Test
+    void sequenceNumbersRunAcrossBlocks() throws IOException {
+        int count = 20_000;
+        Path path = directory.resolve("2024-01-03.ledgerz");
+        try (SealedSegment.Writer writer = new SealedSegment.Writer(path)) {
+            for (int i = 0; i < count; i++) {
+                writer.add(new TransactionLog.Entry(i % 2 == 0 ? PLAYER : OTHER, new TransactionLog.Transaction(
+                    TransactionLog.TransactionType.ADMIN_ADD, i, 1_700_000_000_000L + i, null, null, 0)));
+            }
+        }
+
+        long first = 1L << 32;
+        long[] next = {first};
+        SealedSegment.visitAmounts(path, first, (msb, lsb, sequence, amount) -> {
+            assertEquals(next[0], sequence);
+            assertEquals(sequence - first, amount);
+            next[0]++;
+        });
+        assertEquals(first + count, next[0]);
+    }
+}
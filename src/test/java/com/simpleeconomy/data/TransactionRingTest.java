@@ -0,0 +1,132 @@
+package com.simpleeconomy.data;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertIterableEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TransactionRingTest {
+
+    private static final TransactionLog.TransactionType[] TYPES = {
+        TransactionLog.TransactionType.SALE, TransactionLog.TransactionType.PURCHASE, TransactionLog.TransactionType.INTEREST
+    };
+    private static final UUID[] PARTIES = {new UUID(0, 1), new UUID(0, 2), new UUID(0, 3)};
+    private static final long START = 1_750_000_000_000L;
+
+    @Test
+    void evictedEntriesLeaveEveryChain() {
+        TransactionRing ring = newRing(4);
+        ring.add(transaction(0, TransactionLog.TransactionType.SALE, PARTIES[0]));
+        // Build the index while the only SALE and the only entry with the first party are still there
+        assertEquals(1, ring.find(TransactionLog.TransactionType.SALE, null, 0, -1, 10).transactions().size());
+        for (int i = 1; i <= 4; i++) {
+            ring.add(transaction(i, TransactionLog.TransactionType.PURCHASE, PARTIES[1]));
+        }
+
+        assertTrue(ring.find(TransactionLog.TransactionType.SALE, null, 0, -1, 10).transactions().isEmpty());
+        assertTrue(ring.find(null, PARTIES[0], 0, -1, 10).transactions().isEmpty());
+        assertEquals(4, ring.find(TransactionLog.TransactionType.PURCHASE, PARTIES[1], 0, -1, 10).transactions().size());
+    }
+
+    @Test
+    void chainsStopAtEvictedLinks() {
+        TransactionRing ring = newRing(3);
+        ring.find(TransactionLog.TransactionType.SALE, null, 0, -1, 1);
+        ring.add(transaction(0, TransactionLog.TransactionType.SALE, null));
+        ring.add(transaction(1, TransactionLog.TransactionType.PURCHASE, null));
+        ring.add(transaction(2, TransactionLog.TransactionType.PURCHASE, null));
+        // The first SALE is overwritten; the new one must not link back into its slot
+        ring.add(transaction(3, TransactionLog.TransactionType.SALE, null));
+
+        List<TransactionLog.Transaction> sales = ring.find(TransactionLog.TransactionType.SALE, null, 0, -1, 10).transactions();
+        assertEquals(1, sales.size());
+        assertEquals(3, sales.get(0).amount());
+    }
+
+    @Test
+    void filteredPagesMatchAScanAsTheRingWrapsAndGrows() {
+        SplittableRandom random = new SplittableRandom(7);
+        for (boolean indexedEarly : new boolean[] {false, true}) {
+            TransactionRing ring = newRing(50);
+            List<TransactionLog.Transaction> added = new ArrayList<>();
+            for (int i = 0; i < 500; i++) {
+                TransactionLog.Transaction transaction = transaction(i, TYPES[random.nextInt(TYPES.length)],
+                    random.nextInt(4) == 0 ? null : PARTIES[random.nextInt(PARTIES.length)]);
+                ring.add(transaction);
+                added.add(transaction);
+                if (indexedEarly && i == 1) {
+                    // Built before the ring has grown to its full depth
+                    ring.find(TYPES[0], null, 0, -1, 1);
+                }
+                if (i % 37 == 0) {
+                    List<TransactionLog.Transaction> kept = added.subList(Math.max(0, added.size() - 50), added.size());
+                    assertPagesMatch(ring, kept, TYPES[0], null);
+                    assertPagesMatch(ring, kept, null, PARTIES[1]);
+                    assertPagesMatch(ring, kept, TYPES[2], PARTIES[0]);
+                    assertPagesMatch(ring, kept, null, null);
+                }
+            }
+        }
+    }
+
+    @Test
+    void cursorIsNotShiftedByNewEntries() {
+        TransactionRing ring = newRing(20);
+        for (int i = 0; i < 10; i++) {
+            ring.add(transaction(i, TransactionLog.TransactionType.SALE, null));
+        }
+        TransactionLog.TransactionPage first = ring.find(TransactionLog.TransactionType.SALE, null, 0, -1, 3);
+        ring.add(transaction(10, TransactionLog.TransactionType.SALE, null));
+        ring.add(transaction(11, TransactionLog.TransactionType.SALE, null));
+
+        TransactionLog.TransactionPage second = ring.find(TransactionLog.TransactionType.SALE, null, 0, first.next(), 3);
+        assertEquals(List.of(6L, 5L, 4L), second.transactions().stream().map(TransactionLog.Transaction::amount).toList());
+    }
+
+    @Test
+    void sinceEndsTheWalk() {
+        TransactionRing ring = newRing(10);
+        for (int i = 0; i < 10; i++) {
+            ring.add(transaction(i, TransactionLog.TransactionType.SALE, PARTIES[0]));
+        }
+        TransactionLog.TransactionPage page = ring.find(null, PARTIES[0], START + 7_000, -1, 10);
+        assertEquals(3, page.transactions().size());
+        assertEquals(-1, page.next());
+    }
+
+    private static void assertPagesMatch(TransactionRing ring, List<TransactionLog.Transaction> kept,
+                                         TransactionLog.TransactionType type, UUID party) {
+        List<TransactionLog.Transaction> expected = new ArrayList<>();
+        for (int i = kept.size() - 1; i >= 0; i--) {
+            TransactionLog.Transaction transaction = kept.get(i);
+            if ((type == null || transaction.type() == type) && (party == null || party.equals(transaction.otherParty()))) {
+                expected.add(transaction);
+            }
+        }
+        List<TransactionLog.Transaction> paged = new ArrayList<>();
+        long cursor = -1;
+        do {
+            TransactionLog.TransactionPage page = ring.find(type, party, 0, cursor, 4);
+            paged.addAll(page.transactions());
+            cursor = page.next();
+        } while (cursor >= 0);
+        assertIterableEquals(expected, paged);
+    }
+
+    private static TransactionRing newRing(int depth) {
+        return new TransactionRing(depth, new Interner<>(), new Interner<>());
+    }
+
+    /**
+     * One second apart, so times survive the ring's rounding to seconds
+     */
+    private static TransactionLog.Transaction transaction(int i, TransactionLog.TransactionType type, UUID party) {
+        return new TransactionLog.Transaction(type, i, START + i * 1_000L, party, null, 0);
+    }
+}
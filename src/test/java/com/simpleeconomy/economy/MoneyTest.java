@@ -0,0 +1,63 @@
+package com.simpleeconomy.economy;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MoneyTest {
+
+    @Test
+    void mulDivMatchesBigIntegerBeyond64Bits() {
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < 10_000; i++) {
+            long a = random.nextLong(Long.MAX_VALUE);
+            long c = random.nextLong(1, Long.MAX_VALUE);
+            // Keep the quotient in range: b <= c
+            long b = random.nextLong(c + 1);
+            long expected = BigInteger.valueOf(a).multiply(BigInteger.valueOf(b)).divide(BigInteger.valueOf(c)).longValueExact();
+            assertEquals(expected, Money.mulDiv(a, b, c), () -> a + " * " + b + " / " + c);
+        }
+    }
+
+    @Test
+    void mulDivEdges() {
+        assertEquals(0, Money.mulDiv(0, Long.MAX_VALUE, 1));
+        assertEquals(Long.MAX_VALUE, Money.mulDiv(Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE));
+        assertEquals(Long.MAX_VALUE / 3, Money.mulDiv(Long.MAX_VALUE, 1, 3));
+        assertThrows(ArithmeticException.class, () -> Money.mulDiv(Long.MAX_VALUE, 2, 1));
+        assertThrows(ArithmeticException.class, () -> Money.mulDiv(Long.MAX_VALUE, Long.MAX_VALUE, 2));
+        assertThrows(IllegalArgumentException.class, () -> Money.mulDiv(-1, 1, 1));
+        assertThrows(IllegalArgumentException.class, () -> Money.mulDiv(1, 1, 0));
+    }
+
+    @Test
+    void applyRateRoundsDown() {
+        assertEquals(500, Money.applyRate(10_000, 500));
+        // 5% of 0.19 is 0.0095, which is no whole minor unit
+        assertEquals(0, Money.applyRate(19, 500));
+        assertEquals(Money.ofWhole(100), Money.applyRate(Money.ofWhole(100), Money.BASIS_POINTS));
+        long huge = Long.MAX_VALUE / 2;
+        assertEquals(huge / 10_000 * 3 + (huge % 10_000) * 3 / 10_000, Money.applyRate(huge, 3));
+    }
+
+    @Test
+    void basisPointsFromRates() {
+        assertEquals(500, Money.toBasisPoints(0.05));
+        assertEquals(1, Money.toBasisPoints(0.0001));
+        assertEquals(1_000, Money.toBasisPoints(0.1));
+        assertEquals(Money.BASIS_POINTS, Money.toBasisPoints(1.0));
+    }
+
+    @Test
+    void formatting() {
+        assertEquals("0", Money.format(0));
+        assertEquals("1,250", Money.format(Money.ofWhole(1_250)));
+        assertEquals("1,250.50", Money.format(125_050));
+        assertEquals("0.05", Money.format(5));
+        assertEquals("-12.30", Money.format(-1_230));
+    }
+}
@@ -0,0 +1,90 @@
+package com.simpleeconomy.economy;
+
+import com.simpleeconomy.data.TransactionLog;
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SettlementTest {
+
+    private static final UUID BUYER = new UUID(0, 1);
+    private static final UUID SELLER = new UUID(0, 2);
+
+    @Test
+    void purchaseWithTaxBalances() {
+        Settlement settlement = Settlement.builder()
+            .debit(BUYER, 1_000)
+            .credit(SELLER, 950)
+            .tax(50)
+            .build();
+        assertArrayEquals(new UUID[] {BUYER, SELLER}, settlement.players());
+        assertArrayEquals(new long[] {-1_000, 950}, settlement.deltas());
+        assertEquals(50, settlement.tax());
+    }
+
+    @Test
+    void unbalancedLegsAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> Settlement.builder().debit(BUYER, 1_000).credit(SELLER, 999).build());
+        assertThrows(IllegalArgumentException.class, () -> Settlement.builder().debit(BUYER, 1_000).credit(SELLER, 950).build());
+        assertThrows(IllegalArgumentException.class, () -> Settlement.builder().credit(SELLER, 1).build());
+    }
+
+    @Test
+    void negativeLegsAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> Settlement.builder().debit(BUYER, -1));
+        assertThrows(IllegalArgumentException.class, () -> Settlement.builder().credit(SELLER, -1));
+        assertThrows(IllegalArgumentException.class, () -> Settlement.builder().tax(-1));
+        assertThrows(IllegalArgumentException.class, () -> Settlement.builder().hold(-1));
+        assertThrows(IllegalArgumentException.class, () -> Settlement.builder().release(-1));
+    }
+
+    @Test
+    void escrowHoldsAndReleasesBalance() {
+        // Both stake 100; the pot is held, then paid out to the winner
+        Settlement stakes = Settlement.builder().debit(BUYER, 100).debit(SELLER, 100).hold(200).build();
+        assertArrayEquals(new long[] {-100, -100}, stakes.deltas());
+        Settlement payout = Settlement.builder().release(200).credit(SELLER, 200).build();
+        assertArrayEquals(new UUID[] {SELLER}, payout.players());
+        assertArrayEquals(new long[] {200}, payout.deltas());
+    }
+
+    @Test
+    void legsForOnePlayerAreNetted() {
+        Settlement settlement = Settlement.builder()
+            .debit(BUYER, 300)
+            .credit(BUYER, 100)
+            .credit(SELLER, 200)
+            .build();
+        assertArrayEquals(new long[] {-200, 200}, settlement.deltas());
+
+        // A player whose legs cancel out is left out altogether
+        Settlement wash = Settlement.builder().debit(BUYER, 50).credit(BUYER, 50).build();
+        assertEquals(0, wash.players().length);
+    }
+
+    @Test
+    void overflowingLegsAreRejected() {
+        Settlement.Builder builder = Settlement.builder().credit(SELLER, Long.MAX_VALUE);
+        assertThrows(ArithmeticException.class, () -> builder.credit(BUYER, 1));
+    }
+
+    @Test
+    void logIsKeptInOrder() {
+        TransactionLog.Transaction paid = TransactionLog.Transaction.adminRemove(1_000);
+        TransactionLog.Transaction received = TransactionLog.Transaction.adminAdd(1_000);
+        Settlement settlement = Settlement.builder()
+            .debit(BUYER, 1_000)
+            .credit(SELLER, 1_000)
+            .log(BUYER, paid)
+            .log(SELLER, received)
+            .build();
+        assertEquals(2, settlement.log().size());
+        assertTrue(settlement.log().get(0) instanceof TransactionLog.Entry entry && entry.player().equals(BUYER));
+        assertEquals(new TransactionLog.Entry(SELLER, received), settlement.log().get(1));
+    }
+}